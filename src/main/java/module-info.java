@@ -20,6 +20,8 @@ module ESManager {
 	requires ch.qos.logback.classic;
 	requires ch.qos.logback.core;
 	requires jdk.management;
+	requires java.net.http;
+	requires jdk.httpserver;
 	requires java.base;
 	requires java.sql;
 	requires org.apache.commons.codec;
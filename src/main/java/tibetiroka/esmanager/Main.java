@@ -88,6 +88,8 @@ public class Main {
 
 	public static void main(String[] args) {
 		AppConfiguration.loadLauncherConfiguration();
+		AppConfiguration.loadMirrorConfiguration();
+		AppConfiguration.loadPeerConfiguration();
 		configureThread(Thread.currentThread(), true);
 		if(AppConfiguration.isNativeImage()) {
 			log.warn("Running inside native image!");
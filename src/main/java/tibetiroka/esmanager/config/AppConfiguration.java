@@ -11,18 +11,16 @@
 package tibetiroka.esmanager.config;
 
 import javafx.application.Platform;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
+import org.jetbrains.annotations.NotNull;
 import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.audio.AudioPlayer;
 import tibetiroka.esmanager.instance.BuildHelper;
 import tibetiroka.esmanager.instance.GitSettings;
 import tibetiroka.esmanager.instance.Instance;
 import tibetiroka.esmanager.instance.InstanceUtils;
+import tibetiroka.esmanager.plugin.PluginIndex;
 import tibetiroka.esmanager.plugin.PluginManager;
-import tibetiroka.esmanager.plugin.RemotePlugin;
 import tibetiroka.esmanager.ui.MainController;
-import tibetiroka.esmanager.ui.PluginController;
 import tibetiroka.esmanager.utils.Statistics.GlobalStatistics;
 
 import java.io.*;
@@ -118,6 +116,18 @@ public class AppConfiguration {
 	 * @since 0.0.1
 	 */
 	private static final AtomicBoolean LAUNCHER_LOADED = new AtomicBoolean(false);
+	/**
+	 * Stores whether the mirror configuration has been loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final AtomicBoolean MIRRORS_LOADED = new AtomicBoolean(false);
+	/**
+	 * Stores whether the peer configuration has been loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final AtomicBoolean PEERS_LOADED = new AtomicBoolean(false);
 	/**
 	 * Stores whether the plugin configurations has been loaded.
 	 *
@@ -194,26 +204,19 @@ public class AppConfiguration {
 	}
 
 	/**
-	 * Discovers all remote plugins from the plugin index.
+	 * Discovers all remote plugins from the plugin index. The cached copy of the index is shown first, then the index is revalidated, and only the changed plugins are updated in the plugin list.
 	 *
 	 * @since 0.0.1
 	 */
 	public static void discoverPlugins() throws IOException {
+		PluginManager manager = PluginManager.getManager();
 		try {
-			PluginManager.getManager().loadRemotePlugins();
+			if(PluginIndex.isCached()) {
+				showPlugins(manager.loadCachedPlugins());
+			}
+			showPlugins(manager.loadRemotePlugins());
 		} finally {
-			Platform.runLater(() -> {
-				for(RemotePlugin remotePlugin : PluginManager.getManager().getRemotePlugins()) {
-					try {
-						FXMLLoader loader = new FXMLLoader(PluginController.class.getResource("plugin.fxml"));
-						Parent p = loader.load();
-						((PluginController) loader.getController()).initialize(remotePlugin);
-						MainController.getController().getPluginListBox().getChildren().add(p);
-					} catch(IOException e) {
-						throw new RuntimeException(e);
-					}
-				}
-			});
+			showPlugins(manager.loadMissingPlugins());
 		}
 	}
 
@@ -342,6 +345,30 @@ public class AppConfiguration {
 		}
 	}
 
+	/**
+	 * Loads the configuration of the download mirrors.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void loadMirrorConfiguration() {
+		if(!MIRRORS_LOADED.get()) {
+			loadConfigFile("mirrors.json", MirrorSettings.class, () -> MirrorSettings.getSettings() != null, MirrorSettings::new);
+			MIRRORS_LOADED.set(true);
+		}
+	}
+
+	/**
+	 * Loads the configuration of artifact sharing between launchers.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void loadPeerConfiguration() {
+		if(!PEERS_LOADED.get()) {
+			loadConfigFile("peers.json", PeerSettings.class, () -> PeerSettings.getSettings() != null, PeerSettings::new);
+			PEERS_LOADED.set(true);
+		}
+	}
+
 	/**
 	 * Loads the configuration of the installed plugins.
 	 *
@@ -381,6 +408,8 @@ public class AppConfiguration {
 		saveBuildConfiguration();
 		saveGitConfiguration();
 		saveLauncherConfiguration();
+		saveMirrorConfiguration();
+		savePeerConfiguration();
 		saveStatisticsConfiguration();
 	}
 
@@ -452,6 +481,34 @@ public class AppConfiguration {
 		}
 	}
 
+	/**
+	 * Saves the configuration of the download mirrors, if loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void saveMirrorConfiguration() {
+		if(Main.ERROR.get() || !MIRRORS_LOADED.get()) {
+			return;
+		}
+		if(MirrorSettings.getSettings() != null) {
+			saveConfigFile("mirrors.json", MirrorSettings.getSettings());
+		}
+	}
+
+	/**
+	 * Saves the configuration of artifact sharing between launchers, if loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void savePeerConfiguration() {
+		if(Main.ERROR.get() || !PEERS_LOADED.get()) {
+			return;
+		}
+		if(PeerSettings.getSettings() != null) {
+			saveConfigFile("peers.json", PeerSettings.getSettings());
+		}
+	}
+
 	/**
 	 * Saves the configuration of the installed plugins, if loaded.
 	 *
@@ -523,4 +580,22 @@ public class AppConfiguration {
 			throw new RuntimeException(e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Updates the plugin list to show the changes of the remote plugins. The list only creates rows for the visible plugins, and only the visible rows are refreshed.
+	 *
+	 * @param diff The changes of the remote plugins
+	 * @since 1.3.0
+	 */
+	private static void showPlugins(@NotNull PluginIndex.Diff diff) {
+		if(diff.isEmpty()) {
+			return;
+		}
+		Platform.runLater(() -> {
+			MainController.getController().filterPlugins();
+			if(!diff.getChanged().isEmpty()) {
+				MainController.getController().getPluginList().refresh();
+			}
+		});
+	}
+}
@@ -115,6 +115,27 @@ public class Launcher {
 	 */
 	@NotNull
 	private SimpleBooleanProperty logGameOutput = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("game.log"));
+	/**
+	 * Whether the launcher should work without using the network. Remote data is read from the local caches, and updates are postponed until offline mode is disabled. This value is stored in the configuration files.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private SimpleBooleanProperty offlineMode = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.offline"));
+	/**
+	 * Whether the data needed by instance creation and updates should be downloaded in advance. This value is stored in the configuration files.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private SimpleBooleanProperty prefetchUpdates = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.prefetch"));
+	/**
+	 * Whether background work should be slowed down while a game session is running. This value is stored in the configuration files.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private SimpleBooleanProperty throttleDuringSessions = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.throttle"));
 	/**
 	 * Stores the name of the theme file used in the launcher. This value is stored in the configuration files. The value of this property should never be null.
 	 *
@@ -122,6 +143,13 @@ public class Launcher {
 	 */
 	@NotNull
 	private SimpleStringProperty theme = new SimpleStringProperty((String) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.theme"));
+	/**
+	 * Stores whether to watch the local files used by instances, and update the instances when they change. This value is stored in the configuration files.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private SimpleBooleanProperty watchLocalSources = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("instance.watch"));
 
 	public Launcher() {
 		LAUNCHER = this;
@@ -456,6 +484,36 @@ public class Launcher {
 		return logGameOutput;
 	}
 
+	/**
+	 * Gets whether the launcher should work without using the network.
+	 *
+	 * @return {@link #offlineMode}
+	 * @since 1.3.0
+	 */
+	public @NotNull SimpleBooleanProperty offlineModeProperty() {
+		return offlineMode;
+	}
+
+	/**
+	 * Gets whether the data needed by instance creation and updates should be downloaded in advance.
+	 *
+	 * @return {@link #prefetchUpdates}
+	 * @since 1.3.0
+	 */
+	public @NotNull SimpleBooleanProperty prefetchUpdatesProperty() {
+		return prefetchUpdates;
+	}
+
+	/**
+	 * Gets whether background work should be slowed down while a game session is running.
+	 *
+	 * @return {@link #throttleDuringSessions}
+	 * @since 1.3.0
+	 */
+	public @NotNull SimpleBooleanProperty throttleDuringSessionsProperty() {
+		return throttleDuringSessions;
+	}
+
 	/**
 	 * Gets the name of the theme file used in the launcher.
 	 *
@@ -517,4 +575,14 @@ public class Launcher {
 			return new MessageFormat("");
 		}
 	}
+
+	/**
+	 * Gets whether the local files used by instances are watched for changes.
+	 *
+	 * @return {@link #watchLocalSources}
+	 * @since 1.3.0
+	 */
+	public @NotNull SimpleBooleanProperty watchLocalSourcesProperty() {
+		return watchLocalSources;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Stores the mirrors of the remote endpoints. Acts as a singleton.
+ * <p>Mirrors are configured in {@code mirrors.json} by the prefix of the original location, such as {@code https://github.com/endless-sky/endless-sky/releases/download/}, with an ordered list of replacement prefixes. A replacement can be an HTTP(S) URL, a {@code file:} URL, or the path of a local directory. The original location is always used as the last mirror.</p>
+ *
+ * @since 1.3.0
+ */
+public class MirrorSettings {
+	/**
+	 * The active settings instance.
+	 *
+	 * @since 1.3.0
+	 */
+	public static @Nullable MirrorSettings SETTINGS;
+	/**
+	 * The mirrors, by the prefix of the original location.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull ArrayList<@NotNull String>> mirrors = new HashMap<>();
+
+	public MirrorSettings() {
+		SETTINGS = this;
+	}
+
+	/**
+	 * Gets the active settings instance.
+	 *
+	 * @return {@link #SETTINGS}
+	 * @since 1.3.0
+	 */
+	public static @Nullable MirrorSettings getSettings() {
+		return SETTINGS;
+	}
+
+	/**
+	 * Finds the mirrors of a location. If several configured prefixes match the location, the longest one is used.
+	 *
+	 * @param location The original location
+	 * @return The matching prefix and its mirrors, or null if there are no mirrors for the location
+	 * @since 1.3.0
+	 */
+	public synchronized @Nullable Entry<@NotNull String, @NotNull List<@NotNull String>> findMirrors(@NotNull String location) {
+		Entry<String, ArrayList<String>> best = null;
+		for(Entry<String, ArrayList<String>> entry : mirrors.entrySet()) {
+			if(location.startsWith(entry.getKey()) && !entry.getValue().isEmpty() && (best == null || entry.getKey().length() > best.getKey().length())) {
+				best = entry;
+			}
+		}
+		return best == null ? null : Map.entry(best.getKey(), List.copyOf(best.getValue()));
+	}
+
+	/**
+	 * Gets the configured mirrors.
+	 *
+	 * @return {@link #mirrors}
+	 * @since 1.3.0
+	 */
+	public @NotNull HashMap<@NotNull String, @NotNull ArrayList<@NotNull String>> getMirrors() {
+		return mirrors;
+	}
+}
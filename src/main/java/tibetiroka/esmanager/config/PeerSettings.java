@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stores the settings of artifact sharing between launchers on the same network. Acts as a singleton.
+ * <p>Peers are configured in {@code peers.json} by their base URL, such as {@code http://192.168.1.20:28080}. They are queried for builds and downloads before building or downloading them locally. Downloads are only requested by the digest reported by GitHub. Builds are requested by the digest the peers report for them, unless a digest is {@link #builds pinned} here. If {@link #serve} is enabled, this launcher also shares its own builds and downloads on the configured {@link #address} and {@link #port}, to the {@link #clients allowed clients}.</p>
+ *
+ * @since 1.3.0
+ */
+public class PeerSettings {
+	/**
+	 * The active settings instance.
+	 *
+	 * @since 1.3.0
+	 */
+	public static @Nullable PeerSettings SETTINGS;
+	/**
+	 * The address to share artifacts on. Defaults to the loopback address, so sharing with other machines has to be enabled explicitly.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull String address = (String) AppConfiguration.DEFAULT_CONFIGURATION.get("peer.address");
+	/**
+	 * The pinned SHA-256 digests of builds, by build key. Optional; if a build is listed here, only a copy with this digest is accepted from peers, regardless of the digest they report.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull String> builds = new HashMap<>();
+	/**
+	 * The addresses of the clients allowed to request artifacts. If empty, every client that can reach the {@link #address} is allowed.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull ArrayList<@NotNull String> clients = new ArrayList<>();
+	/**
+	 * The base URLs of the peers to query.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull ArrayList<@NotNull String> peers = new ArrayList<>();
+	/**
+	 * The port to share artifacts on.
+	 *
+	 * @since 1.3.0
+	 */
+	private int port = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("peer.port")).intValue();
+	/**
+	 * Stores whether to share the builds and downloads of this launcher.
+	 *
+	 * @since 1.3.0
+	 */
+	private boolean serve = (Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("peer.serve");
+
+	public PeerSettings() {
+		SETTINGS = this;
+	}
+
+	/**
+	 * Gets the active settings instance.
+	 *
+	 * @return {@link #SETTINGS}
+	 * @since 1.3.0
+	 */
+	public static @Nullable PeerSettings getSettings() {
+		return SETTINGS;
+	}
+
+	/**
+	 * Gets the address to share artifacts on.
+	 *
+	 * @return {@link #address}
+	 * @since 1.3.0
+	 */
+	public @NotNull String getAddress() {
+		return address;
+	}
+
+	/**
+	 * Gets the pinned digest of a build.
+	 *
+	 * @param key The key of the build
+	 * @return The SHA-256 digest of the build, or null if not pinned
+	 * @since 1.3.0
+	 */
+	public synchronized @Nullable String getBuildDigest(@NotNull String key) {
+		return builds.get(key);
+	}
+
+	/**
+	 * Gets the addresses of the clients allowed to request artifacts.
+	 *
+	 * @return A copy of {@link #clients}
+	 * @since 1.3.0
+	 */
+	public synchronized @NotNull List<@NotNull String> getClients() {
+		return List.copyOf(clients);
+	}
+
+	/**
+	 * Gets the base URLs of the peers to query.
+	 *
+	 * @return A copy of {@link #peers}
+	 * @since 1.3.0
+	 */
+	public synchronized @NotNull List<@NotNull String> getPeers() {
+		return List.copyOf(peers);
+	}
+
+	/**
+	 * Gets the port to share artifacts on.
+	 *
+	 * @return {@link #port}
+	 * @since 1.3.0
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Checks whether the builds and downloads of this launcher are shared.
+	 *
+	 * @return {@link #serve}
+	 * @since 1.3.0
+	 */
+	public boolean isServing() {
+		return serve;
+	}
+}
@@ -14,6 +14,7 @@ import com.owlike.genson.annotation.JsonConverter;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
@@ -21,6 +22,8 @@ import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.config.GensonFactory.BuildSystemPropertyConverter;
 import tibetiroka.esmanager.instance.source.Source;
 import tibetiroka.esmanager.utils.LogUtils;
+import tibetiroka.esmanager.utils.PeerCache;
+import tibetiroka.esmanager.utils.ResourceGovernor;
 
 import java.io.File;
 import java.io.IOException;
@@ -83,6 +86,16 @@ public class BuildHelper {
 		}
 	}
 
+	/**
+	 * Gets the name of the platform builds are made for, which is also the name of its CMake preset.
+	 *
+	 * @return The name of the platform
+	 * @since 1.3.0
+	 */
+	private static @NotNull String getPlatform() {
+		return AppConfiguration.isWindows() ? "windows" : AppConfiguration.isLinux() ? "linux" : (System.getProperty("os.arch").contains("arm") || System.getProperty("os.arch").contains("aarch")) ? "macos-arm" : "macos";
+	}
+
 	/**
 	 * Returns a function that, when given a source, will determine the location of the built executable.
 	 *
@@ -118,7 +131,7 @@ public class BuildHelper {
 	}
 
 	/**
-	 * Starts the process described by the specified {@link ProcessBuilder} and redirects its output/error streams to the logger.
+	 * Starts the process described by the specified {@link ProcessBuilder} and redirects its output/error streams to the logger. The process is {@link ResourceGovernor#register(Process) registered} so its priority is lowered during game sessions.
 	 *
 	 * @param processBuilder The builder to start
 	 * @return The {@link Process}
@@ -127,6 +140,7 @@ public class BuildHelper {
 	 */
 	private static @NotNull Process start(@NotNull ProcessBuilder processBuilder) throws IOException {
 		Process process = processBuilder.start();
+		ResourceGovernor.register(process);
 		LogUtils.logAsync(process.getInputStream(), Level.DEBUG);
 		LogUtils.logAsync(process.getErrorStream(), Level.WARN);
 		return process;
@@ -164,7 +178,7 @@ public class BuildHelper {
 		 * @since 0.0.1
 		 */
 		CMAKE(source -> {
-			String preset = AppConfiguration.isWindows() ? "windows" : AppConfiguration.isLinux() ? "linux" : (System.getProperty("os.arch").contains("arm") || System.getProperty("os.arch").contains("aarch")) ? "macos-arm" : "macos";
+			String preset = getPlatform();
 			log.debug(localize("log.source.build.cmake.preset", preset));
 			try {
 				source.getInstance().getTracker().beginTask(0.5);
@@ -249,15 +263,38 @@ public class BuildHelper {
 		}
 
 		/**
-		 * Builds the specified source.
+		 * Builds the specified source. If a {@link PeerCache peer} has already built the same tree for this platform, its executable is used instead.
 		 *
 		 * @param source The source to build
 		 * @return The built executable
 		 * @since 0.0.1
 		 */
 		public @NotNull File build(@NotNull Source source) {
+			File built = executable.apply(source);
+			String key = getBuildKey(source);
+			if(key != null && PeerCache.fetchBuild(key, built)) {
+				return built;
+			}
 			builder.accept(source);
-			return executable.apply(source);
+			if(key != null) {
+				PeerCache.storeBuild(key, built);
+			}
+			return built;
+		}
+
+		/**
+		 * Gets the key identifying the builds of a source that can be shared with peers. Builds with system-specific optimizations are not shared, since they may not run on other machines.
+		 *
+		 * @param source The source to build
+		 * @return The key of the build, or null if it can't be shared
+		 * @since 1.3.0
+		 */
+		private @Nullable String getBuildKey(@NotNull Source source) {
+			String tree = source.getTreeHash();
+			if(tree == null || getBuilder().optimizeProperty().get()) {
+				return null;
+			}
+			return tree + "-" + getPlatform() + "-" + name().toLowerCase();
 		}
 	}
 }
\ No newline at end of file
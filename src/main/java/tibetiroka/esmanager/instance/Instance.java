@@ -29,11 +29,13 @@ import tibetiroka.esmanager.utils.UpdateProgressTracker;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
 
@@ -43,12 +45,24 @@ import static tibetiroka.esmanager.config.Launcher.localize;
  * @since 0.0.1
  */
 public class Instance {
+	/**
+	 * The name of the game's config directory of instances that don't {@link ConfigPolicy#SHARED share} it, relative to the {@link #getDirectory() directory} of the instance.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String CONFIG_DIRECTORY = "config";
 	/**
 	 * The list of managed instances.
 	 *
 	 * @since 0.0.1
 	 */
 	private static final @NotNull ArrayList<@NotNull Instance> INSTANCES = new ArrayList<>();
+	/**
+	 * The files and directories of the game's config directory that hold the saves and preferences. These are linked to the shared config directory for {@link ConfigPolicy#ISOLATED_PLUGINS} instances.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull List<@NotNull String> SHARED_DATA = List.of("saves", "preferences.txt", "keys.txt", "recent.txt");
 	private static final Logger log = LoggerFactory.getLogger(Instance.class);
 	/**
 	 * The progress tracker that is used to visually display the progress of a task.
@@ -57,6 +71,13 @@ public class Instance {
 	 */
 	@JsonIgnore
 	private transient final @NotNull UpdateProgressTracker tracker = new UpdateProgressTracker();
+	/**
+	 * Controls which parts of the game's config directory are shared with other instances.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private ConfigPolicy configPolicy = ConfigPolicy.SHARED;
 	/**
 	 * The Endless Sky executable. Never null after the instance has been created.
 	 *
@@ -191,6 +212,44 @@ public class Instance {
 		return Bindings.createStringBinding(source::getPublicVersion, source.getVersion(), Launcher.getLauncher().localeProperty(), tracker.isWorkingProperty(), tracker.updateProgressProperty());
 	}
 
+	/**
+	 * Gets the config directory the game uses when launched from this instance. This is where the game looks for plugins, saves and preferences.
+	 *
+	 * @return The shared {@link AppConfiguration#ES_DATA_HOME} for {@link ConfigPolicy#SHARED} instances, otherwise a directory of this instance
+	 * @since 1.3.0
+	 */
+	public @NotNull File getConfigDirectory() {
+		return configPolicy == ConfigPolicy.SHARED ? AppConfiguration.ES_DATA_HOME : new File(getDirectory(), CONFIG_DIRECTORY);
+	}
+
+	/**
+	 * Gets which parts of the game's config directory are shared with other instances.
+	 *
+	 * @return {@link #configPolicy}
+	 * @since 1.3.0
+	 */
+	public @NotNull ConfigPolicy getConfigPolicy() {
+		return configPolicy;
+	}
+
+	/**
+	 * Changes which parts of the game's config directory are shared with other instances. The config directory is prepared, and the enabled plugins are linked into it. The data of an isolated config directory is kept when switching to a different policy.
+	 *
+	 * @param configPolicy The new policy
+	 * @since 1.3.0
+	 */
+	public void setConfigPolicy(@NotNull ConfigPolicy configPolicy) {
+		this.configPolicy = configPolicy;
+		log.info(localize("log.instance.config.policy", getPublicName(), configPolicy.name()));
+		try {
+			prepareConfigDirectory();
+		} catch(IOException e) {
+			log.error(localize("log.instance.config.fail", getPublicName(), e.getMessage()), e);
+		}
+		PluginManager.getManager().installPluginsFor(this);
+		AppConfiguration.saveInstances();
+	}
+
 	/**
 	 * Gets the directory this instance is located within.
 	 *
@@ -278,6 +337,39 @@ public class Instance {
 		return tracker;
 	}
 
+	/**
+	 * Creates the config directory of this instance, if it doesn't {@link ConfigPolicy#SHARED share} the config directory. For {@link ConfigPolicy#ISOLATED_PLUGINS} instances, the saves and preferences are linked from the shared config directory, unless the instance already has its own. For {@link ConfigPolicy#ISOLATED} instances, these links are removed.
+	 *
+	 * @throws IOException If the directory could not be prepared
+	 * @since 1.3.0
+	 */
+	public void prepareConfigDirectory() throws IOException {
+		if(configPolicy == ConfigPolicy.SHARED) {
+			return;
+		}
+		File directory = getConfigDirectory();
+		Files.createDirectories(new File(directory, "plugins").toPath());
+		for(String name : SHARED_DATA) {
+			Path link = new File(directory, name).toPath();
+			if(configPolicy == ConfigPolicy.ISOLATED) {
+				if(Files.isSymbolicLink(link)) {
+					Files.delete(link);
+				}
+			} else if(Files.exists(link, LinkOption.NOFOLLOW_LINKS)) {
+				if(!Files.isSymbolicLink(link)) {
+					log.warn(localize("log.instance.config.shared.exists", getPublicName(), name));
+				}
+			} else {
+				File shared = new File(AppConfiguration.ES_DATA_HOME, name);
+				if(name.equals("saves")) {
+					//the target must exist, so the link is created as a link to a directory
+					shared.mkdirs();
+				}
+				Files.createSymbolicLink(link, shared.toPath());
+			}
+		}
+	}
+
 	/**
 	 * Removes this instance from the list of tracked instances and deletes all files associated with it.
 	 *
@@ -341,4 +433,40 @@ public class Instance {
 			throw e;
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The ways the game's config directory can be shared between instances. The config directory holds the plugins, saves and preferences of the game.
+	 *
+	 * @since 1.3.0
+	 */
+	public enum ConfigPolicy {
+		/**
+		 * Uses the shared config directory. The enabled plugins are linked into it when the instance is launched.
+		 *
+		 * @since 1.3.0
+		 */
+		SHARED,
+		/**
+		 * Uses a separate config directory with its own set of plugins, but the saves and preferences are shared with the other instances.
+		 *
+		 * @since 1.3.0
+		 */
+		ISOLATED_PLUGINS,
+		/**
+		 * Uses a separate config directory with its own plugins, saves and preferences.
+		 *
+		 * @since 1.3.0
+		 */
+		ISOLATED;
+
+		/**
+		 * Checks whether instances with this policy use the shared saves and preferences. At most one session of such instances can run at a time, since the game doesn't expect its saves to be changed by another process.
+		 *
+		 * @return True if the saves and preferences are shared
+		 * @since 1.3.0
+		 */
+		public boolean sharesGameData() {
+			return this != ISOLATED;
+		}
+	}
+}
@@ -78,6 +78,7 @@ public class InstanceUtils {
 			instance.getTracker().endAll();
 			//
 			AppConfiguration.saveInstances();
+			LocalSourceWatcher.refresh();
 			//
 			return instance;
 		} catch(Exception e) {
@@ -121,6 +122,7 @@ public class InstanceUtils {
 		try {
 			instance.remove();
 			AppConfiguration.saveInstances();
+			LocalSourceWatcher.refresh();
 		} finally {
 			if(instance.getSource().isGit()) {
 				GIT_SEMAPHORE.release();
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.instance;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
+import tibetiroka.esmanager.instance.source.FileSource;
+import tibetiroka.esmanager.instance.source.GitSource;
+import tibetiroka.esmanager.instance.source.MultiSource;
+import tibetiroka.esmanager.instance.source.Source;
+import tibetiroka.esmanager.instance.source.SourceType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Watches the local files used by instances, and updates the affected instances when these files change. Only {@link FileSource file sources} of type {@link SourceType#LOCAL_EXECUTABLE} and {@link GitSource git sources} using a local repository are watched. Bursts of changes (such as a rebuild or a rebase) are debounced, so each affected instance is only updated once the files have settled.
+ *
+ * @since 1.3.0
+ */
+public class LocalSourceWatcher {
+	/**
+	 * The time to wait after the last change before updating an instance, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long DEBOUNCE_DELAY = 2000;
+	/**
+	 * The lock guarding the state of the watcher.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Object LOCK = new Object();
+	/**
+	 * The pending updates of each instance, waiting for the changes to settle.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull HashMap<@NotNull Instance, @NotNull TimerTask> PENDING = new HashMap<>();
+	private static final Logger log = LoggerFactory.getLogger(LocalSourceWatcher.class);
+	/**
+	 * The watched directories and the files inside them each instance depends on.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull HashMap<@NotNull WatchKey, @NotNull List<@NotNull WatchTarget>> TARGETS = new HashMap<>();
+	/**
+	 * The timer used for scheduling debounced updates.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable Timer TIMER;
+	/**
+	 * The watch service used for the currently watched directories, or null if the watcher is not running.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable WatchService WATCH_SERVICE;
+
+	/**
+	 * Checks whether the watcher is running.
+	 *
+	 * @return True if running
+	 * @since 1.3.0
+	 */
+	public static boolean isRunning() {
+		synchronized(LOCK) {
+			return WATCH_SERVICE != null;
+		}
+	}
+
+	/**
+	 * Re-registers the watched files of all instances. Has no effect if the watcher is not running. Should be called whenever an instance is created or removed.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void refresh() {
+		synchronized(LOCK) {
+			if(WATCH_SERVICE == null) {
+				return;
+			}
+			for(WatchKey key : TARGETS.keySet()) {
+				key.cancel();
+			}
+			TARGETS.clear();
+			for(Instance instance : Instance.getInstances()) {
+				register(instance, instance.getSource());
+			}
+			log.debug(localize("log.instance.watch.refresh", TARGETS.size()));
+		}
+	}
+
+	/**
+	 * Starts watching the local files of all instances. Has no effect if the watcher is already running.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void start() {
+		synchronized(LOCK) {
+			if(WATCH_SERVICE != null) {
+				return;
+			}
+			try {
+				WATCH_SERVICE = FileSystems.getDefault().newWatchService();
+			} catch(IOException | UnsupportedOperationException e) {
+				log.warn(localize("log.instance.watch.unsupported", e.getMessage()));
+				return;
+			}
+			TIMER = new Timer("Local Source Watcher Timer", true);
+			WatchService service = WATCH_SERVICE;
+			Thread thread = new Thread(() -> {
+				Main.configureThread(Thread.currentThread(), false);
+				watch(service);
+			}, "Local Source Watcher Thread");
+			thread.setDaemon(true);
+			thread.start();
+			log.info(localize("log.instance.watch.start"));
+		}
+		refresh();
+	}
+
+	/**
+	 * Stops watching the local files of instances, and cancels any pending updates. Has no effect if the watcher is not running.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void stop() {
+		synchronized(LOCK) {
+			if(WATCH_SERVICE == null) {
+				return;
+			}
+			try {
+				WATCH_SERVICE.close();
+			} catch(IOException e) {
+				log.warn(e.getMessage(), e);
+			}
+			WATCH_SERVICE = null;
+			TARGETS.clear();
+			PENDING.clear();
+			if(TIMER != null) {
+				TIMER.cancel();
+				TIMER = null;
+			}
+			log.info(localize("log.instance.watch.stop"));
+		}
+	}
+
+	/**
+	 * Handles a change inside a watched directory by scheduling an update for the affected instances. New directories inside {@link WatchTarget#recursive() recursively} watched directories are registered as well.
+	 *
+	 * @param key     The key of the watched directory
+	 * @param name    The name of the changed file, relative to the directory
+	 * @param created True if the file was created
+	 * @since 1.3.0
+	 */
+	private static void onChange(@NotNull WatchKey key, @NotNull Path name, boolean created) {
+		synchronized(LOCK) {
+			List<WatchTarget> targets = TARGETS.get(key);
+			if(targets == null) {
+				return;
+			}
+			Path path = ((Path) key.watchable()).resolve(name);
+			boolean directory = created && Files.isDirectory(path);
+			for(WatchTarget target : List.copyOf(targets)) {
+				if(target.filter().test(name)) {
+					log.debug(localize("log.instance.watch.change", path, target.instance().getPublicName()));
+					if(directory && target.recursive()) {
+						registerTree(target.instance(), path);
+					}
+					scheduleUpdate(target.instance());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers the local files of the specified source, and any of its children.
+	 *
+	 * @param instance The instance using the source
+	 * @param source   The source to register
+	 * @since 1.3.0
+	 */
+	private static void register(@NotNull Instance instance, @NotNull Source source) {
+		if(source instanceof MultiSource multi) {
+			for(Source child : multi.getSources()) {
+				register(instance, child);
+			}
+		} else if(source instanceof FileSource file && file.getType() == SourceType.LOCAL_EXECUTABLE) {
+			Path target = toLocalPath(file.getRemoteURI());
+			if(target != null && target.getParent() != null) {
+				Path fileName = target.getFileName();
+				register(instance, target.getParent(), fileName::equals);
+			}
+		} else if(source instanceof GitSource git) {
+			Path repository = toLocalPath(git.getRemoteURI());
+			if(repository != null) {
+				File dotGit = new File(repository.toFile(), ".git");
+				Path gitDir = dotGit.isDirectory() ? dotGit.toPath() : repository;
+				//packed refs and HEAD are updated in the git directory itself
+				register(instance, gitDir, name -> name.toString().equals("packed-refs") || name.toString().equals("HEAD"));
+				//loose refs may be nested, e.g. refs/heads/feature/name
+				registerTree(instance, gitDir.resolve("refs").resolve("heads"));
+			}
+		}
+	}
+
+	/**
+	 * Registers a directory for the specified instance.
+	 *
+	 * @param instance  The instance depending on the directory
+	 * @param directory The directory to watch
+	 * @param filter    The filter for the names of the files inside the directory that affect the instance
+	 * @since 1.3.0
+	 */
+	private static void register(@NotNull Instance instance, @NotNull Path directory, @NotNull Predicate<@NotNull Path> filter) {
+		register(instance, directory, filter, false);
+	}
+
+	/**
+	 * Registers a directory for the specified instance.
+	 *
+	 * @param instance  The instance depending on the directory
+	 * @param directory The directory to watch
+	 * @param filter    The filter for the names of the files inside the directory that affect the instance
+	 * @param recursive True if directories created inside this directory should be watched as well
+	 * @since 1.3.0
+	 */
+	private static void register(@NotNull Instance instance, @NotNull Path directory, @NotNull Predicate<@NotNull Path> filter, boolean recursive) {
+		if(WATCH_SERVICE == null || !Files.isDirectory(directory)) {
+			return;
+		}
+		try {
+			WatchKey key = directory.register(WATCH_SERVICE, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			List<WatchTarget> targets = TARGETS.computeIfAbsent(key, k -> new ArrayList<>());
+			//a recreated directory may already be registered for this instance
+			if(!recursive || targets.stream().noneMatch(target -> target.recursive() && target.instance() == instance)) {
+				targets.add(new WatchTarget(instance, filter, recursive));
+			}
+		} catch(IOException e) {
+			log.warn(localize("log.instance.watch.register.fail", directory, instance.getPublicName(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Registers a directory and all directories inside it for the specified instance. Any file change inside these directories affects the instance, and directories created later are registered as well.
+	 *
+	 * @param instance  The instance depending on the directories
+	 * @param directory The root of the directories to watch
+	 * @since 1.3.0
+	 */
+	private static void registerTree(@NotNull Instance instance, @NotNull Path directory) {
+		if(!Files.isDirectory(directory)) {
+			return;
+		}
+		try(Stream<Path> stream = Files.walk(directory)) {
+			stream.filter(Files::isDirectory).forEach(dir -> register(instance, dir, name -> true, true));
+		} catch(IOException | UncheckedIOException e) {
+			log.warn(localize("log.instance.watch.register.fail", directory, instance.getPublicName(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Schedules an update for the specified instance, replacing any update that is still waiting for the changes to settle.
+	 *
+	 * @param instance The instance to update
+	 * @since 1.3.0
+	 */
+	private static void scheduleUpdate(@NotNull Instance instance) {
+		if(TIMER == null) {
+			return;
+		}
+		TimerTask previous = PENDING.remove(instance);
+		if(previous != null) {
+			previous.cancel();
+		}
+		TimerTask task = new TimerTask() {
+			@Override
+			public void run() {
+				synchronized(LOCK) {
+					if(PENDING.get(instance) != this) {
+						return;
+					}
+					PENDING.remove(instance);
+					if(instance.getTracker().isWorkingProperty().get()) {
+						//try again once the current update is done
+						scheduleUpdate(instance);
+						return;
+					}
+				}
+				new Thread(() -> {
+					Main.configureThread(Thread.currentThread(), false);
+					log.info(localize("log.instance.watch.update", instance.getPublicName()));
+					InstanceUtils.update(instance);
+				}, "Local source updater thread for " + instance.getPublicName()).start();
+			}
+		};
+		PENDING.put(instance, task);
+		TIMER.schedule(task, DEBOUNCE_DELAY);
+	}
+
+	/**
+	 * Converts the specified {@link URI} to a local path, if it refers to a local file.
+	 *
+	 * @param uri The {@link String} representation of the {@link URI}
+	 * @return The local path, or null if the {@link URI} is not local
+	 * @since 1.3.0
+	 */
+	private static @Nullable Path toLocalPath(@Nullable String uri) {
+		if(uri == null) {
+			return null;
+		}
+		try {
+			URI parsed = URI.create(uri);
+			if(!"file".equalsIgnoreCase(parsed.getScheme())) {
+				return null;
+			}
+			return Path.of(parsed).toAbsolutePath();
+		} catch(IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Processes the events of the specified watch service until it is closed.
+	 *
+	 * @param service The watch service
+	 * @since 1.3.0
+	 */
+	private static void watch(@NotNull WatchService service) {
+		while(true) {
+			WatchKey key;
+			try {
+				key = service.take();
+			} catch(InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			for(WatchEvent<?> event : key.pollEvents()) {
+				if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					//changes were lost, so every instance using this directory has to be checked
+					synchronized(LOCK) {
+						List<WatchTarget> targets = TARGETS.get(key);
+						if(targets != null) {
+							targets.forEach(target -> scheduleUpdate(target.instance()));
+						}
+					}
+				} else if(event.context() instanceof Path name) {
+					onChange(key, name, event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+				}
+			}
+			if(!key.reset()) {
+				synchronized(LOCK) {
+					TARGETS.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A set of files inside a watched directory that an instance depends on.
+	 *
+	 * @param instance  The instance depending on the files
+	 * @param filter    The filter for the names of the files
+	 * @param recursive True if directories created inside the watched directory are watched as well
+	 * @since 1.3.0
+	 */
+	private record WatchTarget(@NotNull Instance instance, @NotNull Predicate<@NotNull Path> filter, boolean recursive) {
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.instance;
+
+import javafx.application.Platform;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.Launcher;
+import tibetiroka.esmanager.instance.source.Source;
+import tibetiroka.esmanager.utils.NetworkMonitor;
+import tibetiroka.esmanager.utils.PeerCache;
+import tibetiroka.esmanager.utils.ResourceGovernor;
+
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Downloads the data that is likely to be needed soon, so creating or updating an instance finds it locally. Release assets are stored in the {@link PeerCache}, and git commits are fetched into the local repository; see {@link Source#prefetch()}.
+ * <p>There are two triggers. The new instance wizard {@link #speculate(Source) speculatively} prefetches the chosen source as soon as it is selected, before the instance is named. While the launcher is idle, the sources of all instances are prefetched {@link #start() periodically}. Prefetching only happens while the network is {@link NetworkMonitor#isOnline() usable}, and can be disabled in the {@link Launcher#prefetchUpdatesProperty() settings}.</p>
+ *
+ * @since 1.3.0
+ */
+public class PrefetchService {
+	/**
+	 * The time to wait after a selection in the wizard before prefetching it, in milliseconds. Avoids downloading every option the user scrolls through.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long DELAY = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("prefetch.delay")).longValue();
+	/**
+	 * Stores whether the instances are being prefetched.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull AtomicBoolean IDLE_RUNNING = new AtomicBoolean(false);
+	/**
+	 * The time between prefetching the instances, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long INTERVAL = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("prefetch.interval")).longValue();
+	/**
+	 * The lock guarding the speculative prefetching.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Object LOCK = new Object();
+	/**
+	 * The timer used for scheduling the prefetching.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Timer TIMER = new Timer("Prefetch Timer", true);
+	private static final Logger log = LoggerFactory.getLogger(PrefetchService.class);
+	/**
+	 * The speculative prefetch waiting for the selection to settle, or null if there is none.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable TimerTask PENDING;
+	/**
+	 * The thread running the speculative prefetch, or null if there is none.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable Thread SPECULATION;
+	/**
+	 * Stores whether the periodic prefetching is scheduled.
+	 *
+	 * @since 1.3.0
+	 */
+	private static boolean started = false;
+
+	/**
+	 * Checks whether prefetching is currently possible.
+	 *
+	 * @return True if prefetching is enabled and the network is usable
+	 * @since 1.3.0
+	 */
+	public static boolean isEnabled() {
+		return Launcher.getLauncher().prefetchUpdatesProperty().get() && NetworkMonitor.isOnline();
+	}
+
+	/**
+	 * Prefetches the source selected in the new instance wizard, once the selection settles. Any previous speculative prefetch is cancelled, since its source is no longer selected. Called on the JavaFX application thread, so the network is only {@link #isEnabled() checked} later, on the prefetching thread, as it may have to be probed.
+	 *
+	 * @param source The selected source, which is not yet part of an instance, or null to only cancel the previous prefetch
+	 * @since 1.3.0
+	 */
+	public static void speculate(@Nullable Source source) {
+		synchronized(LOCK) {
+			if(PENDING != null) {
+				PENDING.cancel();
+				PENDING = null;
+			}
+			if(SPECULATION != null) {
+				SPECULATION.interrupt();
+				SPECULATION = null;
+			}
+			if(source == null || !Launcher.getLauncher().prefetchUpdatesProperty().get()) {
+				return;
+			}
+			PENDING = new TimerTask() {
+				@Override
+				public void run() {
+					synchronized(LOCK) {
+						if(PENDING != this) {
+							return;
+						}
+						PENDING = null;
+						SPECULATION = new Thread(() -> {
+							Main.configureThread(Thread.currentThread(), false);
+							if(!isEnabled() || Thread.currentThread().isInterrupted()) {
+								return;
+							}
+							prefetch(source, source.getName());
+						}, "Speculative Prefetch Thread");
+						SPECULATION.start();
+					}
+				}
+			};
+			TIMER.schedule(PENDING, DELAY);
+		}
+	}
+
+	/**
+	 * Starts prefetching the sources of all instances periodically. Instances are skipped while a game session {@link ResourceGovernor#isThrottled() slows down} background work. Has no effect if already started.
+	 *
+	 * @since 1.3.0
+	 */
+	public static synchronized void start() {
+		if(started) {
+			return;
+		}
+		started = true;
+		TIMER.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				if(!isEnabled() || ResourceGovernor.isThrottled() || !IDLE_RUNNING.compareAndSet(false, true)) {
+					return;
+				}
+				new Thread(() -> {
+					Main.configureThread(Thread.currentThread(), false);
+					try {
+						prefetchInstances();
+					} finally {
+						IDLE_RUNNING.set(false);
+					}
+				}, "Prefetch Thread").start();
+			}
+		}, INTERVAL, INTERVAL);
+	}
+
+	/**
+	 * Prefetches a source. Failures are logged, but otherwise ignored.
+	 *
+	 * @param source The source to prefetch
+	 * @param name   The name of the source or its instance, used for logging
+	 * @since 1.3.0
+	 */
+	private static void prefetch(@NotNull Source source, @NotNull String name) {
+		try {
+			log.debug(localize("log.prefetch.begin", name));
+			source.prefetch();
+		} catch(Exception e) {
+			if(Thread.currentThread().isInterrupted()) {
+				log.debug(localize("log.prefetch.cancel", name));
+			} else {
+				log.info(localize("log.prefetch.fail", name, e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Prefetches the sources of all instances, stopping early if prefetching becomes impossible or a game session starts.
+	 *
+	 * @since 1.3.0
+	 */
+	private static void prefetchInstances() {
+		CompletableFuture<List<Instance>> future = new CompletableFuture<>();
+		Platform.runLater(() -> future.complete(List.copyOf(Instance.getInstances())));
+		List<Instance> instances;
+		try {
+			instances = future.get();
+		} catch(InterruptedException | ExecutionException e) {
+			return;
+		}
+		log.debug(localize("log.prefetch.instances", instances.size()));
+		for(Instance instance : instances) {
+			if(!isEnabled() || ResourceGovernor.isThrottled()) {
+				return;
+			}
+			prefetch(instance.getSource(), instance.getPublicName());
+		}
+	}
+}
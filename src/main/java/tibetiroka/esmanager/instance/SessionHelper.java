@@ -13,7 +13,11 @@ package tibetiroka.esmanager.instance;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableSet;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.util.Duration;
@@ -23,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.instance.Instance.ConfigPolicy;
 import tibetiroka.esmanager.instance.source.ReleaseSource;
 import tibetiroka.esmanager.plugin.PluginManager;
 import tibetiroka.esmanager.utils.LogUtils;
@@ -30,6 +35,8 @@ import tibetiroka.esmanager.utils.LogUtils;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import static tibetiroka.esmanager.config.Launcher.getLauncher;
 import static tibetiroka.esmanager.config.Launcher.localize;
@@ -46,18 +53,71 @@ public class SessionHelper {
 	 * @since 0.0.1
 	 */
 	public static final SimpleBooleanProperty ANY_RUNNING = new SimpleBooleanProperty(false);
+	/**
+	 * The instances with a running session. Updated on the JavaFX application thread.
+	 *
+	 * @since 1.3.0
+	 */
+	public static final ObservableSet<Instance> RUNNING_INSTANCES = FXCollections.observableSet();
+	/**
+	 * Stores whether a session that {@link ConfigPolicy#sharesGameData() shares the saves and preferences} is running. Updated on the JavaFX application thread.
+	 *
+	 * @since 1.3.0
+	 */
+	public static final SimpleBooleanProperty SHARED_RUNNING = new SimpleBooleanProperty(false);
+	/**
+	 * The config policies of the running sessions, by instance. Guarded by the lock of this class.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull HashMap<@NotNull Instance, @NotNull ConfigPolicy> SESSIONS = new HashMap<>();
 	private static final Logger log = LoggerFactory.getLogger(SessionHelper.class);
 
 	/**
-	 * Starts the specified instance. It is assumed that this method is not called while an instance is running.
+	 * Checks whether the instance can be started without conflicting with the running sessions. An instance can't run twice at the same time, and only one of the running sessions can {@link ConfigPolicy#sharesGameData() share the saves and preferences}; {@link ConfigPolicy#ISOLATED} instances can always run next to the others.
+	 *
+	 * @param instance The instance to start
+	 * @return True if the instance can be started
+	 * @since 1.3.0
+	 */
+	public static synchronized boolean canStart(@NotNull Instance instance) {
+		return !SESSIONS.containsKey(instance) && !(instance.getConfigPolicy().sharesGameData() && SESSIONS.values().stream().anyMatch(ConfigPolicy::sharesGameData));
+	}
+
+	/**
+	 * Creates a binding that is true while the instance {@link #canStart(Instance) can't be started}. The binding has to be {@link BooleanBinding#invalidate() invalidated} when the config policy of the instance changes.
+	 *
+	 * @param instance The instance to start
+	 * @return The binding
+	 * @since 1.3.0
+	 */
+	public static @NotNull BooleanBinding createBlockedBinding(@NotNull Instance instance) {
+		return Bindings.createBooleanBinding(() -> RUNNING_INSTANCES.contains(instance) || (instance.getConfigPolicy().sharesGameData() && SHARED_RUNNING.get()), RUNNING_INSTANCES, SHARED_RUNNING);
+	}
+
+	/**
+	 * Starts the specified instance, unless it {@link #canStart(Instance) conflicts} with a running session. Instances that don't {@link ConfigPolicy#SHARED share} the config directory of the game are started with their own, using the {@code --config} argument of the game.
 	 *
 	 * @param instance The instance to start
 	 * @param debug    Whether to start it in debug mode
 	 * @since 0.0.1
 	 */
 	public static void start(@NotNull Instance instance, boolean debug) {
-		Platform.runLater(() -> ANY_RUNNING.set(true));
+		ConfigPolicy policy = instance.getConfigPolicy();
+		synchronized(SessionHelper.class) {
+			if(!canStart(instance)) {
+				log.warn(localize("log.instance.play.blocked", instance.getPublicName()));
+				return;
+			}
+			SESSIONS.put(instance, policy);
+			publishSessions();
+		}
 		//
+		try {
+			instance.prepareConfigDirectory();
+		} catch(IOException e) {
+			log.error(localize("log.instance.config.fail", instance.getPublicName(), e.getMessage()), e);
+		}
 		PluginManager.getManager().installPluginsFor(instance);
 		//
 		ArrayList<String> commands = new ArrayList<>();
@@ -65,11 +125,16 @@ public class SessionHelper {
 			try {
 				commands.add(instance.getExecutable().toPath().toRealPath().toFile().getAbsolutePath());
 			} catch(IOException e) {
+				endSession(instance);
 				throw new RuntimeException(e);
 			}
 		} else {
 			commands.add(instance.getExecutable().getAbsolutePath());
 		}
+		if(policy != ConfigPolicy.SHARED) {
+			commands.add("--config");
+			commands.add(instance.getConfigDirectory().getAbsolutePath());
+		}
 		if(debug) {
 			commands.add("--debug");
 			log.info(localize("log.instance.play.debug", instance.getPublicName()));
@@ -105,10 +170,43 @@ public class SessionHelper {
 				throw new RuntimeException(e);
 			} finally {
 				log.info(localize("log.instance.play.end", instance.getPublicName()));
-				Platform.runLater(() -> ANY_RUNNING.set(false));
 				Platform.runLater(timer::stop);
-				PluginManager.MANAGER.installAllPlugins();
+				endSession(instance);
 			}
 		}, "Instance manager thread for " + instance.getInternalName()).start();
 	}
+
+	/**
+	 * Removes the session of the instance. If no session using the shared config directory remains, the plugins are {@link PluginManager#installAllPlugins() installed} into it again.
+	 *
+	 * @param instance The instance whose session ended
+	 * @since 1.3.0
+	 */
+	private static void endSession(@NotNull Instance instance) {
+		boolean sharedRunning;
+		synchronized(SessionHelper.class) {
+			SESSIONS.remove(instance);
+			publishSessions();
+			sharedRunning = SESSIONS.containsValue(ConfigPolicy.SHARED);
+		}
+		if(!sharedRunning) {
+			PluginManager.MANAGER.installAllPlugins();
+		}
+	}
+
+	/**
+	 * Copies the state of the running sessions into the properties observed by the UI. Must be called while holding the lock of this class, so the updates are posted in order.
+	 *
+	 * @since 1.3.0
+	 */
+	private static void publishSessions() {
+		HashSet<Instance> running = new HashSet<>(SESSIONS.keySet());
+		boolean shared = SESSIONS.values().stream().anyMatch(ConfigPolicy::sharesGameData);
+		Platform.runLater(() -> {
+			RUNNING_INSTANCES.retainAll(running);
+			RUNNING_INSTANCES.addAll(running);
+			SHARED_RUNNING.set(shared);
+			ANY_RUNNING.set(!running.isEmpty());
+		});
+	}
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.instance.source;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.utils.FileUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Describes how the workflow artifact of a {@link PullRequestSource} is packaged on each platform. GitHub always wraps artifacts in a zip file; some platforms have another archive inside it, which is {@link FileUtils#unpackZipNested(java.io.InputStream, java.io.File, java.util.function.Predicate, java.io.File) unpacked in place} without storing it on disk.
+ *
+ * @since 1.3.0
+ */
+public enum ArtifactLayout {
+	/**
+	 * The Windows build: a zip file containing the game files.
+	 *
+	 * @since 1.3.0
+	 */
+	WINDOWS("EndlessSky-win64-continuous.zip", "[^/]*\\.zip", "Endless Sky.exe"),
+	/**
+	 * The Linux build: a single AppImage.
+	 *
+	 * @since 1.3.0
+	 */
+	LINUX("Endless_Sky-continuous-x86_64.AppImage", null, "Endless_Sky-continuous-x86_64.AppImage"),
+	/**
+	 * The macOS build: a zip file containing the application bundle.
+	 *
+	 * @since 1.3.0
+	 */
+	MAC("EndlessSky-macOS-continuous.zip", "[^/]*\\.zip", "Endless Sky.app/Contents/MacOS/Endless Sky");
+	/**
+	 * The name of the file inside the artifact, used for finding the artifact.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull String fileName;
+	/**
+	 * The path of the executable, relative to the unpacked artifact.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull String executable;
+	/**
+	 * Matches the names of the entries that are archives to unpack in place, or null if there are none.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @Nullable Pattern nested;
+
+	ArtifactLayout(@NotNull String fileName, @Nullable String nested, @NotNull String executable) {
+		this.fileName = fileName;
+		this.nested = nested == null ? null : Pattern.compile(nested);
+		this.executable = executable;
+	}
+
+	/**
+	 * Gets the layout used on the current platform.
+	 *
+	 * @return The layout
+	 * @since 1.3.0
+	 */
+	public static @NotNull ArtifactLayout current() {
+		if(AppConfiguration.isWindows()) {
+			return WINDOWS;
+		} else if(AppConfiguration.isLinux()) {
+			return LINUX;
+		} else {
+			return MAC;
+		}
+	}
+
+	/**
+	 * Gets the path of the executable, relative to the unpacked artifact.
+	 *
+	 * @return {@link #executable}
+	 * @since 1.3.0
+	 */
+	public @NotNull String getExecutable() {
+		return executable;
+	}
+
+	/**
+	 * Gets the name of the file inside the artifact.
+	 *
+	 * @return {@link #fileName}
+	 * @since 1.3.0
+	 */
+	public @NotNull String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Checks whether an entry of the artifact is an archive to unpack in place.
+	 *
+	 * @param name The name of the entry
+	 * @return True if the entry should be unpacked in place
+	 * @since 1.3.0
+	 */
+	public boolean isNested(@NotNull String name) {
+		return nested != null && nested.matcher(name).matches();
+	}
+}
@@ -11,22 +11,20 @@
 package tibetiroka.esmanager.instance.source;
 
 import org.apache.commons.io.FileUtils;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.EditableSource;
+import tibetiroka.esmanager.utils.RemoteRefCache;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
@@ -190,9 +188,6 @@ public class DynamicRefSource extends MultiSource {
 	 * @since 1.0.0
 	 */
 	protected @NotNull Set<@NotNull String> listMatchingRefs() throws GitAPIException {
-		HashSet<String> refs = new HashSet<>(Git.lsRemoteRepository().setRemote(remoteURI).setHeads(true).setTags(true).callAsMap().keySet());
-		refs.addAll(Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(false).callAsMap().keySet());
-		Predicate<String> p = Pattern.compile(pattern).asMatchPredicate();
-		return refs.stream().filter(p).collect(Collectors.toSet());
+		return RemoteRefCache.lsRemote(remoteURI, false, false, pattern).stream().map(Ref::getName).collect(Collectors.toSet());
 	}
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.EditableSource;
 import tibetiroka.esmanager.instance.annotation.NonEditable;
 import tibetiroka.esmanager.instance.annotation.Validator;
+import tibetiroka.esmanager.utils.FileFingerprint;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,6 +38,13 @@ import static tibetiroka.esmanager.config.Launcher.localize;
 @EditableSource
 public class FileSource extends Source {
 	private static final Logger log = LoggerFactory.getLogger(FileSource.class);
+	/**
+	 * The fingerprint of the target file, used to detect changes without rehashing the file.
+	 *
+	 * @since 1.3.0
+	 */
+	@Nullable
+	private FileFingerprint fingerprint;
 	/**
 	 * The SHA-256 hash of the target file
 	 *
@@ -104,7 +112,8 @@ public class FileSource extends Source {
 					log.debug(localize("log.source.update.download.direct.done", remoteURI, downloaded.getName()));
 				}
 			}
-			hash = hash(getExecutable());
+			fingerprint = FileFingerprint.of(getExecutable());
+			hash = fingerprint.getHash();
 			lastUpdated = Date.from(Instant.now());
 			initialized = true;
 		} catch(IOException e) {
@@ -143,7 +152,24 @@ public class FileSource extends Source {
 	@Override
 	public boolean needsUpdate() {
 		return switch(type) {
-			case LOCAL_EXECUTABLE, DIRECT_DOWNLOAD -> !Objects.equals(hash, hash(getExecutable()));
+			case LOCAL_EXECUTABLE, DIRECT_DOWNLOAD -> {
+				if(fingerprint != null && fingerprint.matches(getExecutable())) {
+					FileFingerprint.remember(getExecutable(), fingerprint);
+					yield !Objects.equals(hash, fingerprint.getHash());
+				}
+				FileFingerprint current;
+				try {
+					current = FileFingerprint.of(getExecutable());
+				} catch(IOException e) {
+					throw new RuntimeException(e);
+				}
+				if(Objects.equals(hash, current.getHash())) {
+					//the file was touched or replaced by an identical copy; keep its new attributes, so the next check doesn't rehash it
+					fingerprint = current;
+					yield false;
+				}
+				yield true;
+			}
 			default -> throw new UnsupportedOperationException(localize("log.source.update.type.unsupported", getName(), type.name()));
 		};
 	}
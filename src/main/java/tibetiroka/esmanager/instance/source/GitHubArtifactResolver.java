@@ -0,0 +1,683 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.instance.source;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.GensonFactory;
+import tibetiroka.esmanager.utils.HttpUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Finds the workflow artifacts built for a commit using the GitHub API. Resolved artifacts are cached persistently, since the artifacts of a commit don't change. Workflow run lookups use conditional requests, which don't count against GitHub's rate limit when nothing has changed. The rate limit headers are respected, and requests are delayed until the limit is reset. The digests of release assets can also be {@link #findReleaseDigest(URL) looked up}.
+ *
+ * @since 1.3.0
+ */
+public class GitHubArtifactResolver {
+	/**
+	 * The file storing the cache of resolved artifacts.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File CACHE_FILE = new File(AppConfiguration.DATA_HOME, "github-artifacts.json");
+	/**
+	 * The lock guarding the {@link #resolver loaded resolver}, its caches and the {@link #rateLimitReset rate limit reset time}. It is never held while sending requests or waiting for the rate limit.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Object LOCK = new Object();
+	/**
+	 * The longest time to wait for the rate limit to be reset before giving up, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAX_RATE_LIMIT_WAIT = 60 * 1000;
+	/**
+	 * The maximum number of times a rate limited request is retried.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int MAX_RETRIES = 3;
+	/**
+	 * The number of items requested per page.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int PAGE_SIZE = 100;
+	/**
+	 * The name of the workflow that builds the artifacts.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String WORKFLOW_NAME = "CD";
+	private static final Logger log = LoggerFactory.getLogger(GitHubArtifactResolver.class);
+	/**
+	 * The loaded resolver, or null if not yet loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable GitHubArtifactResolver resolver;
+	/**
+	 * The time when requests can be sent again after hitting the rate limit, in epoch milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static long rateLimitReset = 0;
+	/**
+	 * The resolved artifacts, by {@link #getKey(String, String, String, String) owner, repository, commit and file name}.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull ResolvedArtifact> artifacts = new HashMap<>();
+	/**
+	 * The results of workflow run lookups, by query URL.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull RunLookup> runs = new HashMap<>();
+
+	public GitHubArtifactResolver() {
+	}
+
+	/**
+	 * Finds the SHA-256 digest of a release asset, as reported by GitHub. The digest is independent of any {@link tibetiroka.esmanager.utils.PeerCache peer} serving the asset, so it can be used to verify copies received from peers.
+	 *
+	 * @param url The download location of the asset, such as {@code https://github.com/<owner>/<repo>/releases/download/<tag>/<name>}
+	 * @return The digest as a hex string, or null if the location is not a release asset, or GitHub doesn't report its digest
+	 * @throws IOException If the release could not be queried
+	 * @since 1.3.0
+	 */
+	public static @Nullable String findReleaseDigest(@NotNull URL url) throws IOException {
+		String[] path = url.getPath().split("/");
+		if(!"github.com".equalsIgnoreCase(url.getHost()) || path.length != 7 || !path[3].equals("releases") || !path[4].equals("download")) {
+			return null;
+		}
+		String tag = URLDecoder.decode(path[5], StandardCharsets.UTF_8);
+		String fileName = URLDecoder.decode(path[6], StandardCharsets.UTF_8);
+		String query = ((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.release.query")).replace("${OWNER}", path[1]).replace("${REPO}", path[2]).replace("${TAG}", URLEncoder.encode(tag, StandardCharsets.UTF_8));
+		HttpResponse<InputStream> response = query(query, null);
+		checkResponse(response);
+		Release release;
+		try(InputStream input = response.body()) {
+			release = GensonFactory.GENSON.deserialize(input, Release.class);
+		}
+		for(ReleaseAsset asset : release.assets) {
+			if(fileName.equals(asset.name) && asset.digest != null && asset.digest.startsWith("sha256:")) {
+				return asset.digest.substring("sha256:".length());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Forgets the cached artifact of the specified commit. Used when the artifact could not be downloaded, such as when it has expired.
+	 *
+	 * @param owner    The owner of the repository
+	 * @param repo     The name of the repository
+	 * @param hash     The hash of the commit
+	 * @param fileName The name of the artifact
+	 * @since 1.3.0
+	 */
+	public static void invalidate(@NotNull String owner, @NotNull String repo, @NotNull String hash, @NotNull String fileName) {
+		synchronized(LOCK) {
+			GitHubArtifactResolver resolver = getResolver();
+			if(resolver.artifacts.remove(getKey(owner, repo, hash, fileName)) != null) {
+				resolver.save();
+			}
+		}
+	}
+
+	/**
+	 * Finds the artifact with the specified name, built by the {@value #WORKFLOW_NAME} workflow for the specified commit.
+	 *
+	 * @param owner    The owner of the repository
+	 * @param repo     The name of the repository
+	 * @param hash     The hash of the commit
+	 * @param fileName The name of the artifact
+	 * @return The artifact
+	 * @throws IOException If the artifact could not be found
+	 * @since 1.3.0
+	 */
+	public static @NotNull ResolvedArtifact resolve(@NotNull String owner, @NotNull String repo, @NotNull String hash, @NotNull String fileName) throws IOException {
+		GitHubArtifactResolver resolver;
+		String key = getKey(owner, repo, hash, fileName);
+		synchronized(LOCK) {
+			resolver = getResolver();
+			ResolvedArtifact artifact = resolver.artifacts.get(key);
+			if(artifact != null) {
+				log.debug(localize("log.github.artifact.cached", fileName, hash, artifact.getArtifactId()));
+				return artifact;
+			}
+		}
+		//the lookups send requests, so they run without the lock; concurrent lookups of the same commit store the same result
+		long runId = resolver.findWorkflowRun(owner, repo, hash);
+		ResolvedArtifact artifact = resolver.findArtifact(owner, repo, runId, fileName);
+		synchronized(LOCK) {
+			resolver.artifacts.put(key, artifact);
+			resolver.save();
+		}
+		return artifact;
+	}
+
+	/**
+	 * Appends the page size parameter to the query.
+	 *
+	 * @param query The query URL
+	 * @return The query with the page size
+	 * @since 1.3.0
+	 */
+	private static @NotNull String addPageSize(@NotNull String query) {
+		return query + (query.contains("?") ? "&" : "?") + "per_page=" + PAGE_SIZE;
+	}
+
+	/**
+	 * Gets the key used to store the artifact of a commit.
+	 *
+	 * @param owner    The owner of the repository
+	 * @param repo     The name of the repository
+	 * @param hash     The hash of the commit
+	 * @param fileName The name of the artifact
+	 * @return The key
+	 * @since 1.3.0
+	 */
+	private static @NotNull String getKey(@NotNull String owner, @NotNull String repo, @NotNull String hash, @NotNull String fileName) {
+		return owner + "/" + repo + "/" + hash + "/" + fileName;
+	}
+
+	/**
+	 * Gets the URL of the next page from the link header of the response.
+	 *
+	 * @param response The response
+	 * @return The URL of the next page, or null if this is the last page
+	 * @since 1.3.0
+	 */
+	private static @Nullable String getNextPage(@NotNull HttpResponse<?> response) {
+		for(String link : response.headers().firstValue("link").orElse("").split(",")) {
+			String[] parts = link.split(";");
+			if(parts.length >= 2 && parts[1].trim().equals("rel=\"next\"")) {
+				String url = parts[0].trim();
+				return url.substring(1, url.length() - 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the loaded resolver, loading it from the cache file if necessary. Must be called while holding {@link #LOCK}.
+	 *
+	 * @return The resolver
+	 * @since 1.3.0
+	 */
+	private static @NotNull GitHubArtifactResolver getResolver() {
+		if(resolver == null) {
+			if(CACHE_FILE.isFile()) {
+				try(InputStream input = new FileInputStream(CACHE_FILE)) {
+					resolver = GensonFactory.GENSON.deserialize(input, GitHubArtifactResolver.class);
+				} catch(Exception e) {
+					log.debug(localize("log.github.cache.load.fail", e.getMessage()));
+				}
+			}
+			if(resolver == null) {
+				resolver = new GitHubArtifactResolver();
+			}
+		}
+		return resolver;
+	}
+
+	/**
+	 * Reads the status code of the response, failing if it is neither {@code 200 OK} nor {@code 304 Not Modified}.
+	 *
+	 * @param response The response
+	 * @throws IOException If the request failed
+	 * @since 1.3.0
+	 */
+	private static void checkResponse(@NotNull HttpResponse<InputStream> response) throws IOException {
+		if(response.statusCode() != 200 && response.statusCode() != 304) {
+			try(InputStream input = response.body()) {
+				throw new IOException(localize("log.github.response.error", response.statusCode(), new String(input.readAllBytes())));
+			}
+		}
+	}
+
+	/**
+	 * Sends a request to the GitHub API. Rate limited requests are retried after the limit is reset.
+	 *
+	 * @param url  The URL of the query
+	 * @param etag The entity tag of the cached response, or null if not cached
+	 * @return The response
+	 * @throws IOException If the request failed
+	 * @since 1.3.0
+	 */
+	private static @NotNull HttpResponse<InputStream> query(@NotNull String url, @Nullable String etag) throws IOException {
+		for(int attempt = 0; ; attempt++) {
+			waitForRateLimit();
+			HttpRequest.Builder builder = HttpUtils.request(URI.create(url)).GET().header("accept", "application/vnd.github+json");
+			if(etag != null) {
+				builder.header("If-None-Match", etag);
+			}
+			HttpResponse<InputStream> response = HttpUtils.send(builder.build());
+			boolean limited = readRateLimit(response);
+			if(limited && attempt < MAX_RETRIES && (response.statusCode() == 403 || response.statusCode() == 429)) {
+				response.body().close();
+				continue;
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * Reads the rate limit headers of the response, and stores when requests can be sent again if the limit has been reached.
+	 *
+	 * @param response The response
+	 * @return True if the rate limit has been reached
+	 * @since 1.3.0
+	 */
+	private static boolean readRateLimit(@NotNull HttpResponse<?> response) {
+		long reset;
+		long retryAfter = response.headers().firstValueAsLong("retry-after").orElse(-1);
+		if(retryAfter >= 0) {
+			reset = System.currentTimeMillis() + retryAfter * 1000;
+		} else if(response.headers().firstValueAsLong("x-ratelimit-remaining").orElse(1) == 0) {
+			reset = response.headers().firstValueAsLong("x-ratelimit-reset").orElse(0) * 1000;
+		} else {
+			return false;
+		}
+		synchronized(LOCK) {
+			rateLimitReset = Math.max(rateLimitReset, reset);
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until the rate limit is reset, if it has been reached. The reset time is read under {@link #LOCK}, but the lock is not held while waiting.
+	 *
+	 * @throws IOException If the limit is not reset soon enough, or the thread was interrupted
+	 * @since 1.3.0
+	 */
+	private static void waitForRateLimit() throws IOException {
+		long reset;
+		synchronized(LOCK) {
+			reset = rateLimitReset;
+		}
+		long wait = reset - System.currentTimeMillis();
+		if(wait <= 0) {
+			return;
+		}
+		if(wait > MAX_RATE_LIMIT_WAIT) {
+			throw new IOException(localize("log.github.ratelimit.exceeded", Instant.ofEpochMilli(reset)));
+		}
+		log.info(localize("log.github.ratelimit.wait", wait / 1000));
+		try {
+			Thread.sleep(wait);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Finds the artifact with the specified name in the specified workflow run.
+	 *
+	 * @param owner    The owner of the repository
+	 * @param repo     The name of the repository
+	 * @param runId    The ID of the workflow run
+	 * @param fileName The name of the artifact
+	 * @return The artifact
+	 * @throws IOException If the artifact could not be found
+	 * @since 1.3.0
+	 */
+	private @NotNull ResolvedArtifact findArtifact(@NotNull String owner, @NotNull String repo, long runId, @NotNull String fileName) throws IOException {
+		String next = addPageSize(((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.workflow.artifact.list")).replace("${OWNER}", owner).replace("${REPO}", repo).replace("${ID}", String.valueOf(runId)));
+		while(next != null) {
+			HttpResponse<InputStream> response = query(next, null);
+			checkResponse(response);
+			ArtifactList list;
+			try(InputStream input = response.body()) {
+				list = GensonFactory.GENSON.deserialize(input, ArtifactList.class);
+			}
+			for(Artifact artifact : list.artifacts) {
+				if(artifact.name.equals(fileName) && !artifact.expired) {
+					return new ResolvedArtifact(runId, artifact.id, artifact.size_in_bytes);
+				}
+			}
+			next = getNextPage(response);
+		}
+		throw new IOException(localize("log.github.artifact.missing", fileName, runId));
+	}
+
+	/**
+	 * Finds the {@value #WORKFLOW_NAME} workflow run of the specified commit. If the previous lookup of the same commit is still valid, the cached result is used.
+	 *
+	 * @param owner The owner of the repository
+	 * @param repo  The name of the repository
+	 * @param hash  The hash of the commit
+	 * @return The ID of the workflow run
+	 * @throws IOException If the workflow run could not be found
+	 * @since 1.3.0
+	 */
+	private long findWorkflowRun(@NotNull String owner, @NotNull String repo, @NotNull String hash) throws IOException {
+		String first = addPageSize(((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.workflow.query")).replace("${OWNER}", owner).replace("${REPO}", repo).replace("${HASH}", hash));
+		RunLookup cached;
+		synchronized(LOCK) {
+			cached = runs.get(first);
+		}
+		String next = first;
+		String etag = null;
+		long runId = -1;
+		while(next != null) {
+			HttpResponse<InputStream> response = query(next, next.equals(first) && cached != null ? cached.etag : null);
+			checkResponse(response);
+			if(response.statusCode() == 304 && cached != null) {
+				response.body().close();
+				log.debug(localize("log.github.run.cached", hash, cached.runId));
+				return cached.runId;
+			}
+			if(next.equals(first)) {
+				etag = response.headers().firstValue("etag").orElse(null);
+			}
+			RunList list;
+			try(InputStream input = response.body()) {
+				list = GensonFactory.GENSON.deserialize(input, RunList.class);
+			}
+			for(WorkflowRun run : list.workflow_runs) {
+				if(WORKFLOW_NAME.equals(run.name)) {
+					runId = run.id;
+				}
+			}
+			next = getNextPage(response);
+		}
+		if(runId < 0) {
+			throw new IOException(localize("log.github.run.missing", hash));
+		}
+		if(etag != null) {
+			synchronized(LOCK) {
+				runs.put(first, new RunLookup(etag, runId));
+			}
+		}
+		return runId;
+	}
+
+	/**
+	 * Saves the cache into {@link #CACHE_FILE}. Must be called while holding {@link #LOCK}.
+	 *
+	 * @since 1.3.0
+	 */
+	private void save() {
+		try {
+			CACHE_FILE.getParentFile().mkdirs();
+			Files.writeString(CACHE_FILE.toPath(), GensonFactory.GENSON.serialize(this), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+		} catch(IOException e) {
+			log.warn(localize("log.github.cache.save.fail", e.getMessage()));
+		}
+	}
+
+	/**
+	 * An artifact found for a commit.
+	 *
+	 * @since 1.3.0
+	 */
+	public static class ResolvedArtifact {
+		/**
+		 * The ID of the artifact.
+		 *
+		 * @since 1.3.0
+		 */
+		private long artifactId;
+		/**
+		 * The size of the artifact, in bytes.
+		 *
+		 * @since 1.3.0
+		 */
+		private long size;
+		/**
+		 * The ID of the workflow run that created the artifact.
+		 *
+		 * @since 1.3.0
+		 */
+		private long workflowId;
+
+		public ResolvedArtifact() {
+		}
+
+		/**
+		 * Creates a new resolved artifact.
+		 *
+		 * @param workflowId The ID of the workflow run
+		 * @param artifactId The ID of the artifact
+		 * @param size       The size of the artifact
+		 * @since 1.3.0
+		 */
+		public ResolvedArtifact(long workflowId, long artifactId, long size) {
+			this.workflowId = workflowId;
+			this.artifactId = artifactId;
+			this.size = size;
+		}
+
+		/**
+		 * Gets the ID of the artifact.
+		 *
+		 * @return {@link #artifactId}
+		 * @since 1.3.0
+		 */
+		public long getArtifactId() {
+			return artifactId;
+		}
+
+		/**
+		 * Gets the size of the artifact, in bytes.
+		 *
+		 * @return {@link #size}
+		 * @since 1.3.0
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Gets the ID of the workflow run that created the artifact.
+		 *
+		 * @return {@link #workflowId}
+		 * @since 1.3.0
+		 */
+		public long getWorkflowId() {
+			return workflowId;
+		}
+	}
+
+	/**
+	 * An artifact, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class Artifact {
+		/**
+		 * Whether the artifact has expired.
+		 *
+		 * @since 1.3.0
+		 */
+		private boolean expired;
+		/**
+		 * The ID of the artifact.
+		 *
+		 * @since 1.3.0
+		 */
+		private long id;
+		/**
+		 * The name of the artifact.
+		 *
+		 * @since 1.3.0
+		 */
+		private String name;
+		/**
+		 * The size of the artifact, in bytes.
+		 *
+		 * @since 1.3.0
+		 */
+		private long size_in_bytes;
+
+		public Artifact() {
+		}
+	}
+
+	/**
+	 * A page of workflow artifacts, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class ArtifactList {
+		/**
+		 * The artifacts on this page.
+		 *
+		 * @since 1.3.0
+		 */
+		private @NotNull ArrayList<@NotNull Artifact> artifacts = new ArrayList<>();
+
+		public ArtifactList() {
+		}
+	}
+
+	/**
+	 * A release, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class Release {
+		/**
+		 * The assets of the release.
+		 *
+		 * @since 1.3.0
+		 */
+		private @NotNull ArrayList<@NotNull ReleaseAsset> assets = new ArrayList<>();
+
+		public Release() {
+		}
+	}
+
+	/**
+	 * An asset of a release, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class ReleaseAsset {
+		/**
+		 * The digest of the asset, such as {@code sha256:<hex>}. Not reported for older assets.
+		 *
+		 * @since 1.3.0
+		 */
+		private String digest;
+		/**
+		 * The name of the asset.
+		 *
+		 * @since 1.3.0
+		 */
+		private String name;
+
+		public ReleaseAsset() {
+		}
+	}
+
+	/**
+	 * A page of workflow runs, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class RunList {
+		/**
+		 * The workflow runs on this page.
+		 *
+		 * @since 1.3.0
+		 */
+		private @NotNull ArrayList<@NotNull WorkflowRun> workflow_runs = new ArrayList<>();
+
+		public RunList() {
+		}
+	}
+
+	/**
+	 * The stored result of a workflow run lookup.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class RunLookup {
+		/**
+		 * The entity tag of the first page of the response.
+		 *
+		 * @since 1.3.0
+		 */
+		private String etag;
+		/**
+		 * The ID of the found workflow run.
+		 *
+		 * @since 1.3.0
+		 */
+		private long runId;
+
+		public RunLookup() {
+		}
+
+		/**
+		 * Creates a new stored lookup.
+		 *
+		 * @param etag  The entity tag of the response
+		 * @param runId The ID of the found workflow run
+		 * @since 1.3.0
+		 */
+		public RunLookup(@NotNull String etag, long runId) {
+			this.etag = etag;
+			this.runId = runId;
+		}
+	}
+
+	/**
+	 * A workflow run, as returned by the GitHub API.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class WorkflowRun {
+		/**
+		 * The ID of the workflow run.
+		 *
+		 * @since 1.3.0
+		 */
+		private long id;
+		/**
+		 * The name of the workflow.
+		 *
+		 * @since 1.3.0
+		 */
+		private String name;
+
+		public WorkflowRun() {
+		}
+	}
+}
@@ -11,6 +11,7 @@
 package tibetiroka.esmanager.instance.source;
 
 import javafx.application.Platform;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -27,6 +28,8 @@ import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.EditableSource;
 import tibetiroka.esmanager.instance.annotation.NonEditable;
 import tibetiroka.esmanager.instance.annotation.Validator;
+import tibetiroka.esmanager.utils.MirrorResolver;
+import tibetiroka.esmanager.utils.RemoteRefCache;
 
 import java.net.URI;
 import java.time.Instant;
@@ -43,6 +46,12 @@ import static tibetiroka.esmanager.config.Launcher.localize;
 @EditableSource
 public class GitSource extends Source {
 	private static final Logger log = LoggerFactory.getLogger(GitSource.class);
+	/**
+	 * The prefix of the local refs storing {@link #prefetch() prefetched} commits. Keeping the commits referenced prevents them from being garbage collected, and lets later fetches skip them.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String PREFETCH_REF_PREFIX = "refs/prefetch/";
 	/**
 	 * The hash of the commit in the current version of this source.
 	 *
@@ -170,6 +179,17 @@ public class GitSource extends Source {
 		}
 	}
 
+	@Override
+	public void prefetch() throws GitAPIException {
+		if(GIT == null || (initialized && type == SourceType.COMMIT)) {
+			return;
+		}
+		String target = getRemoteRefName();
+		String local = PREFETCH_REF_PREFIX + DigestUtils.sha1Hex(remoteURI + "#" + target);
+		MirrorResolver.withFailover(remoteURI, false, remote -> GIT.fetch().setRemote(remote).setRefSpecs(new RefSpec("+" + target + ":" + local)).call());
+		log.debug(localize("log.git.prefetch", getName(), remoteURI, target));
+	}
+
 	@Override
 	public void update() {
 		create();
@@ -234,7 +254,7 @@ public class GitSource extends Source {
 	 * @since 0.0.1
 	 */
 	protected @NotNull FetchResult fetch(@NotNull String target, boolean dryRun) throws GitAPIException {
-		return GIT.fetch().setRemote(remoteURI).setDryRun(dryRun).setRefSpecs(new RefSpec(target + ":" + getBranchName())).call();
+		return MirrorResolver.withFailover(remoteURI, false, remote -> GIT.fetch().setRemote(remote).setDryRun(dryRun).setRefSpecs(new RefSpec(target + ":" + getBranchName())).call());
 	}
 
 	/**
@@ -251,7 +271,7 @@ public class GitSource extends Source {
 			case COMMIT -> targetName;
 			case LATEST_RELEASE -> {
 				try {
-					yield GIT.lsRemote().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst()).get();
+					yield RemoteRefCache.lsRemote(remoteURI, false, true).stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst()).get();
 				} catch(GitAPIException e) {
 					throw new RuntimeException(e);
 				}
@@ -30,6 +30,7 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
@@ -168,6 +169,13 @@ public class MultiSource extends Source {
 		return false;
 	}
 
+	@Override
+	public void prefetch() throws IOException, GitAPIException {
+		for(Source source : List.copyOf(sources)) {
+			source.prefetch();
+		}
+	}
+
 	@Override
 	public void update() {
 		for(Source source : sources) {
@@ -10,8 +10,6 @@
 
 package tibetiroka.esmanager.instance.source;
 
-import com.owlike.genson.Genson;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -22,17 +20,17 @@ import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.EditableSource;
 import tibetiroka.esmanager.instance.annotation.NonEditable;
 import tibetiroka.esmanager.instance.annotation.Validator;
+import tibetiroka.esmanager.instance.source.GitHubArtifactResolver.ResolvedArtifact;
 import tibetiroka.esmanager.utils.FileUtils;
+import tibetiroka.esmanager.utils.RemoteRefCache;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
 import static tibetiroka.esmanager.instance.annotation.Validator.NOT_BLANK_STRING;
@@ -112,48 +110,14 @@ public class PullRequestSource extends Source {
 			}
 			//get the sha of the head
 			getInstance().getTracker().beginTask(0.25);
-			String hash = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(false).call().stream().filter(r -> r.getName().equals("refs/pull/" + targetName + "/head")).findAny().get().getObjectId().getName();
+			String hash = RemoteRefCache.lsRemote(remoteURI, false, false, Pattern.quote("refs/pull/" + targetName + "/head")).stream().findAny().get().getObjectId().getName();
 			getInstance().getTracker().endTask();
-			//query workflows for pr
-			getInstance().getTracker().beginTask(0.25);
-			{
-				String query = ((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.workflow.query")).replace("${OWNER}", owner).replace("${REPO}", repo).replace("${HASH}", hash);
-				URL url = new URL(query);
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-				connection.setRequestMethod("GET");
-				connection.setRequestProperty("accept", "application/vnd.github+json");
-				connection.connect();
-				if(connection.getResponseCode() != 200) {
-					throw new IOException(localize("log.github.response.error", connection.getResponseCode(), new String(connection.getInputStream().readAllBytes())));
-				}
-				HashMap<?, ?> map = new Genson().deserialize(connection.getInputStream(), HashMap.class);
-				for(Map<?, ?> run : ((Iterable<Map<?, ?>>) map.get("workflow_runs"))) {
-					if(run.get("name").equals("CD")) {
-						workflowId = (long) run.get("id");
-					}
-				}
-			}
-			getInstance().getTracker().endTask();
-			//query workflow artifacts
-			getInstance().getTracker().beginTask(0.5);
+			//find the workflow artifact of the commit
+			getInstance().getTracker().beginTask(0.75);
 			String fileName = getFileName();
-			{
-				String query = ((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.workflow.artifact.list")).replace("${OWNER}", owner).replace("${REPO}", repo).replace("${ID}", String.valueOf(workflowId));
-				URL url = new URL(query);
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-				connection.setRequestMethod("GET");
-				connection.setRequestProperty("accept", "application/vnd.github+json");
-				connection.connect();
-				if(connection.getResponseCode() != 200) {
-					throw new IOException(localize("log.github.response.error", connection.getResponseCode(), new String(connection.getInputStream().readAllBytes())));
-				}
-				HashMap<?, ?> map = new Genson().deserialize(connection.getInputStream(), HashMap.class);
-				for(Map<?, ?> run : ((Iterable<Map<?, ?>>) map.get("artifacts"))) {
-					if(run.get("name").equals(fileName)) {
-						artifactId = (long) run.get("id");
-					}
-				}
-			}
+			ResolvedArtifact artifact = GitHubArtifactResolver.resolve(owner, repo, hash, fileName);
+			workflowId = artifact.getWorkflowId();
+			artifactId = artifact.getArtifactId();
 			getInstance().getTracker().endTask();
 			//download workflow artifact
 			String query = ((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.github.workflow.artifact.download"));
@@ -163,20 +127,23 @@ public class PullRequestSource extends Source {
 			getInstance().getTracker().endTask();
 			//
 			getInstance().getTracker().beginTask(0.5);
-			File downloaded = new File(getDirectory(), fileName);
+			ArtifactLayout layout = ArtifactLayout.current();
+			File executable = new File(getDirectory(), layout.getExecutable());
 			{
 				getInstance().getTracker().beginTask(0.8);
-				FileUtils.unpackZipTracked(downloadUrl, downloaded.getParentFile(), getInstance().getTracker());
+				try {
+					FileUtils.unpackZipNested(downloadUrl, getDirectory(), layout::isNested, getManifestFile("artifact"), getInstance().getTracker());
+				} catch(IOException e) {
+					//the artifact might have expired since it was resolved
+					GitHubArtifactResolver.invalidate(owner, repo, hash, fileName);
+					throw e;
+				}
 				getInstance().getTracker().endTask();
-				if(!downloaded.exists()) {
+				if(!executable.exists()) {
 					throw new RuntimeException();
 				}
 				getInstance().getTracker().beginTask(0.2);
-				if(AppConfiguration.isWindows()) {
-					FileUtils.unpackZipTracked(downloaded.toURI().toURL(), downloaded.getParentFile(), getInstance().getTracker());
-					downloaded = new File(downloaded.getParentFile(), "Endless Sky.exe");
-				}
-				symlinkExecutable(downloaded);
+				symlinkExecutable(executable);
 				getInstance().getTracker().endTask();
 			}
 			getInstance().getTracker().endTask();
@@ -219,7 +186,7 @@ public class PullRequestSource extends Source {
 	@Override
 	public boolean needsUpdate() {
 		try {
-			return !Objects.equals(lastCommit, Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(false).call().stream().filter(r -> r.getName().equals("refs/pull/" + targetName + "/head")).findAny().get().getObjectId().getName());
+			return !Objects.equals(lastCommit, RemoteRefCache.lsRemote(remoteURI, false, false, Pattern.quote("refs/pull/" + targetName + "/head")).stream().findAny().get().getObjectId().getName());
 		} catch(GitAPIException e) {
 			throw new RuntimeException(e);
 		}
@@ -237,12 +204,6 @@ public class PullRequestSource extends Source {
 	 * @since 0.0.1
 	 */
 	private String getFileName() {
-		if(AppConfiguration.isWindows()) {
-			return "EndlessSky-win64-continuous.zip";
-		} else if(AppConfiguration.isLinux()) {
-			return "Endless_Sky-continuous-x86_64.AppImage";
-		} else {
-			return "EndlessSky-macOS-continuous.zip";
-		}
+		return ArtifactLayout.current().getFileName();
 	}
 }
\ No newline at end of file
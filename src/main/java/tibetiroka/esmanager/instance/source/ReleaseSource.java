@@ -11,21 +11,27 @@
 package tibetiroka.esmanager.instance.source;
 
 import javafx.application.Platform;
-import org.eclipse.jgit.api.Git;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Ref;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.instance.ReleaseUtils;
+import tibetiroka.esmanager.instance.SessionHelper;
 import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.EditableSource;
 import tibetiroka.esmanager.instance.annotation.NonEditable;
 import tibetiroka.esmanager.instance.annotation.Validator;
 import tibetiroka.esmanager.utils.FileUtils;
+import tibetiroka.esmanager.utils.PeerCache;
+import tibetiroka.esmanager.utils.RemoteRefCache;
 import tibetiroka.esmanager.utils.VersioningUtils;
+import tibetiroka.esmanager.utils.ZipManifest;
 
 import java.io.File;
 import java.io.IOException;
@@ -33,7 +39,10 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -55,6 +64,18 @@ public class ReleaseSource extends Source {
 	 */
 	private static final String OFFICIAL_REMOTE_URI;
 	private static final Logger log = LoggerFactory.getLogger(ReleaseSource.class);
+	/**
+	 * The prefix of the directories used for staging downloaded releases. Staging directories are created inside the {@link #getDirectory() directory} of the source.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final String STAGING_PREFIX = ".staging-";
+	/**
+	 * The name of the directory storing the downloaded versions of {@link SourceType#LATEST_RELEASE LATEST_RELEASE} sources, relative to the {@link #getDirectory() directory} of the source.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final String VERSIONS_DIRECTORY = "versions";
 
 	static {
 		try {
@@ -122,45 +143,59 @@ public class ReleaseSource extends Source {
 			case LATEST_RELEASE -> {
 				try {
 					getInstance().getTracker().beginTask(0.25);
-					Optional<String> branch = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst());
+					Optional<String> branch = RemoteRefCache.lsRemote(remoteURI, false, true).stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst());
 					getInstance().getTracker().endTask();
 					if(branch.isPresent()) {
 						String b = branch.get();
 						String release = b.substring("refs/tags/".length());
 						//
 						getInstance().getTracker().beginTask(0.25);
-						File temp = Files.createTempDirectory(getDirectory().getName()).toFile();
-						File downloaded = new File(temp, getFileName(release));
+						//staged inside the source directory, so it is on the same file system and can be moved atomically
+						File staging = new File(getDirectory(), STAGING_PREFIX + release);
+						if(staging.exists()) {
+							forceDelete(staging);
+						}
+						staging.mkdirs();
+						File downloaded = new File(staging, getFileName(release));
 						if(AppConfiguration.isWindows()) {
-							FileUtils.unpackZipTracked(new URL(getDownloadURL(release)), downloaded.getParentFile(), getInstance().getTracker());
+							File current = getCurrentExecutable();
+							FileUtils.unpackZipIncremental(new URL(getDownloadURL(release)), downloaded.getParentFile(), current == null ? null : current.getParentFile(), getManifestFile("release"), getInstance().getTracker());
+						} else if(isAppImage(downloaded)) {
+							FileUtils.copyTrackedDelta(new URL(getDownloadURL(release)), getCurrentExecutable(), downloaded, getInstance().getTracker());
 						} else {
 							FileUtils.copyTracked(new URL(getDownloadURL(release)), downloaded, getInstance().getTracker());
 						}
 						getInstance().getTracker().endTask();
 						getInstance().getTracker().beginTask(0.25);
-						// local copy
-						File backup = new File(getDirectory().getParent(), getDirectory().getName() + "-backup");
+						File versions = new File(getDirectory(), VERSIONS_DIRECTORY);
+						versions.mkdirs();
+						File version = new File(versions, release);
+						for(int i = 1; version.exists(); i++) {
+							version = new File(versions, release + "-" + i);
+						}
 						try {
-							getDirectory().renameTo(backup);
-							org.apache.commons.io.FileUtils.copyDirectory(temp, getDirectory());
-							forceDelete(backup);
-							symlinkExecutable(new File(getDirectory(), AppConfiguration.isWindows() ? "Endless Sky.exe" : downloaded.getName()));
-						} catch(Exception e) {
-							if(backup.exists()) {
-								if(getDirectory().exists() && backup.exists()) {
-									forceDelete(getDirectory());
-								}
-								backup.renameTo(getDirectory());
+							try {
+								Files.move(staging.toPath(), version.toPath(), StandardCopyOption.ATOMIC_MOVE);
+							} catch(AtomicMoveNotSupportedException e) {
+								Files.move(staging.toPath(), version.toPath());
+							}
+							if(AppConfiguration.isWindows()) {
+								ZipManifest manifest = ZipManifest.load(getManifestFile("release"));
+								manifest.setDirectory(version);
+								manifest.save(getManifestFile("release"));
 							}
+							//the previous version stays launchable until the link is switched
+							symlinkExecutable(new File(version, AppConfiguration.isWindows() ? "Endless Sky.exe" : downloaded.getName()));
 						} finally {
-							if(temp.exists()) {
-								forceDelete(temp);
+							if(staging.exists()) {
+								forceDelete(staging);
 							}
 						}
+						cleanupReleases(version);
 						//
 						getInstance().getTracker().endTask();
 						getInstance().getTracker().beginTask(0.25);
-						Ref ref = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().filter(r -> r.getName().equals(b)).findAny().get();
+						Ref ref = RemoteRefCache.lsRemote(remoteURI, false, true).stream().filter(r -> r.getName().equals(b)).findAny().get();
 						targetName = ref.getName().substring("refs/tags/".length());
 						commitHash = ref.getObjectId().getName();
 						getInstance().getTracker().endTask();
@@ -178,12 +213,14 @@ public class ReleaseSource extends Source {
 					getInstance().getTracker().beginTask(0.5);
 					File downloaded = new File(getDirectory(), getFileName(targetName));
 					if(AppConfiguration.isWindows()) {
-						FileUtils.unpackZipTracked(new URL(getDownloadURL(targetName)), downloaded.getParentFile(), getInstance().getTracker());
+						FileUtils.unpackZipIncremental(new URL(getDownloadURL(targetName)), downloaded.getParentFile(), downloaded.getParentFile(), getManifestFile("release"), getInstance().getTracker());
 						downloaded = new File(downloaded.getParentFile(), "Endless Sky.exe");
 					} else if(!AppConfiguration.isLinux() && !AppConfiguration.isWindows() && "continuous".equals(targetName)) {
 						//mac on continuous gives a zip of an app
-						FileUtils.unpackZipTracked(new URL(getDownloadURL(targetName)), downloaded.getParentFile(), getInstance().getTracker());
+						FileUtils.unpackZipIncremental(new URL(getDownloadURL(targetName)), downloaded.getParentFile(), downloaded.getParentFile(), getManifestFile("release"), getInstance().getTracker());
 						downloaded = new File(new File(new File(new File(downloaded.getParentFile(), "Endless Sky.app"), "Contents"), "MacOS"), "Endless Sky");
+					} else if(isAppImage(downloaded)) {
+						FileUtils.copyTrackedDelta(new URL(getDownloadURL(targetName)), getCurrentExecutable(), downloaded, getInstance().getTracker());
 					} else {
 						FileUtils.copyTracked(new URL(getDownloadURL(targetName)), downloaded, getInstance().getTracker());
 					}
@@ -192,7 +229,7 @@ public class ReleaseSource extends Source {
 					symlinkExecutable(downloaded);
 					//
 					getInstance().getTracker().beginTask(0.5);
-					Ref ref = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().filter(r -> r.getName().equals("refs/tags/" + targetName)).findAny().get();
+					Ref ref = RemoteRefCache.lsRemote(remoteURI, false, true).stream().filter(r -> r.getName().equals("refs/tags/" + targetName)).findAny().get();
 					getInstance().getTracker().endTask();
 					commitHash = ref.getObjectId().getName();
 					Platform.runLater(() -> getVersion().set(targetName));
@@ -256,11 +293,11 @@ public class ReleaseSource extends Source {
 			case LATEST_RELEASE -> {
 				try {
 					getInstance().getTracker().beginTask(0.5);
-					Optional<String> branch = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst());
+					Optional<String> branch = RemoteRefCache.lsRemote(remoteURI, false, true).stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst());
 					getInstance().getTracker().endTask();
 					if(branch.isPresent()) {
 						getInstance().getTracker().beginTask(0.5);
-						Ref ref = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().filter(r -> r.getName().equals(branch.get())).findAny().get();
+						Ref ref = RemoteRefCache.lsRemote(remoteURI, false, true).stream().filter(r -> r.getName().equals(branch.get())).findAny().get();
 						getInstance().getTracker().endTask();
 						yield !Objects.equals(ref.getObjectId().name(), commitHash);
 					} else {
@@ -272,7 +309,7 @@ public class ReleaseSource extends Source {
 			}
 			case RELEASE -> {
 				try {
-					Ref ref = Git.lsRemoteRepository().setRemote(remoteURI).setHeads(false).setTags(true).call().stream().filter(r -> r.getName().equals("refs/tags/" + targetName)).findAny().get();
+					Ref ref = RemoteRefCache.lsRemote(remoteURI, false, true).stream().filter(r -> r.getName().equals("refs/tags/" + targetName)).findAny().get();
 					yield !Objects.equals(commitHash, ref.getObjectId().name());
 				} catch(GitAPIException e) {
 					throw new RuntimeException(e);
@@ -282,6 +319,21 @@ public class ReleaseSource extends Source {
 		};
 	}
 
+	@Override
+	public void prefetch() throws IOException, GitAPIException {
+		String release = switch(type) {
+			case LATEST_RELEASE -> RemoteRefCache.lsRemote(remoteURI, false, true).stream().map(Ref::getName).filter(r -> r.startsWith("refs/tags/")).min(ReleaseUtils.latestFirst()).map(r -> r.substring("refs/tags/".length())).orElse(null);
+			case RELEASE -> initialized ? null : targetName;
+			default -> null;
+		};
+		if(release == null || (initialized && release.equals(targetName))) {
+			return;
+		}
+		if(PeerCache.prefetch(new URL(getDownloadURL(release)))) {
+			log.debug(localize("log.source.release.prefetch", getName(), release));
+		}
+	}
+
 	@Override
 	public void update() {
 		create();
@@ -337,6 +389,57 @@ public class ReleaseSource extends Source {
 		this.targetName = targetName;
 	}
 
+	/**
+	 * Deletes the files of previously downloaded versions in a background thread. While a game session is {@link SessionHelper#ANY_RUNNING running}, the cleanup is deferred until it ends, since the session may still use a previous version. The version the executable currently points to is always kept. Files that cannot be deleted are kept until the next update.
+	 *
+	 * @param current The directory of the current version
+	 * @since 1.3.0
+	 */
+	protected void cleanupReleases(@NotNull File current) {
+		Platform.runLater(() -> {
+			if(!SessionHelper.ANY_RUNNING.get()) {
+				deleteOldReleases(current);
+				return;
+			}
+			log.debug(localize("log.source.release.cleanup.defer", getName()));
+			SessionHelper.ANY_RUNNING.addListener(new ChangeListener<>() {
+				@Override
+				public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean running) {
+					if(!running) {
+						observable.removeListener(this);
+						cleanupReleases(current);
+					}
+				}
+			});
+		});
+	}
+
+	/**
+	 * Gets the file the executable of this source currently points to. This is used as the seed of delta downloads.
+	 *
+	 * @return The current executable, or null if there is none
+	 * @since 1.3.0
+	 */
+	protected @Nullable File getCurrentExecutable() {
+		try {
+			File current = getExecutable().toPath().toRealPath().toFile();
+			return current.isFile() ? current : null;
+		} catch(IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the specified release artifact is an AppImage. AppImages publish zsync control files, so they can be updated using delta downloads.
+	 *
+	 * @param file The release artifact
+	 * @return True if AppImage
+	 * @since 1.3.0
+	 */
+	protected boolean isAppImage(@NotNull File file) {
+		return file.getName().endsWith(".AppImage");
+	}
+
 	/**
 	 * Gets whether this release is an official release, or is from a fork.
 	 *
@@ -347,6 +450,50 @@ public class ReleaseSource extends Source {
 		return Objects.equals(remoteURI, OFFICIAL_REMOTE_URI);
 	}
 
+	/**
+	 * Deletes the files of previously downloaded versions in a background thread. Both the specified version and the version the executable currently points to are kept.
+	 *
+	 * @param current The directory of the current version
+	 * @since 1.3.0
+	 */
+	private void deleteOldReleases(@NotNull File current) {
+		File directory = getDirectory();
+		File executable = getExecutable();
+		File versionsDirectory = new File(directory, VERSIONS_DIRECTORY);
+		new Thread(() -> {
+			Main.configureThread(Thread.currentThread(), false);
+			//a later update may have switched to another version since the cleanup was requested
+			File linked = getCurrentExecutable();
+			while(linked != null && !versionsDirectory.equals(linked.getParentFile())) {
+				linked = linked.getParentFile();
+			}
+			ArrayList<File> obsolete = new ArrayList<>();
+			File[] children = directory.listFiles();
+			if(children != null) {
+				for(File child : children) {
+					if(!child.equals(executable) && !child.getName().equals(VERSIONS_DIRECTORY) && !child.getName().startsWith(STAGING_PREFIX)) {
+						obsolete.add(child);
+					}
+				}
+			}
+			File[] versions = versionsDirectory.listFiles();
+			if(versions != null) {
+				for(File version : versions) {
+					if(!version.equals(current) && !version.equals(linked)) {
+						obsolete.add(version);
+					}
+				}
+			}
+			for(File file : obsolete) {
+				try {
+					forceDelete(file);
+				} catch(IOException e) {
+					log.debug(localize("log.source.release.cleanup.fail", getName(), file.getAbsolutePath(), e.getMessage()));
+				}
+			}
+		}, "Release cleanup thread for " + getName()).start();
+	}
+
 	/**
 	 * Gets the {@link String} representation of the URL the release artifact can be downloaded from.
 	 *
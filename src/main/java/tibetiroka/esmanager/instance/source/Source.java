@@ -16,6 +16,7 @@ import org.apache.commons.codec.binary.Base32;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -26,21 +27,21 @@ import tibetiroka.esmanager.instance.BuildHelper;
 import tibetiroka.esmanager.instance.Instance;
 import tibetiroka.esmanager.instance.annotation.Editable;
 import tibetiroka.esmanager.instance.annotation.NonEditable;
+import tibetiroka.esmanager.utils.FileFingerprint;
+import tibetiroka.esmanager.utils.MirrorResolver;
 import tibetiroka.esmanager.utils.ProgressUtils;
 import tibetiroka.esmanager.utils.ProgressUtils.FakeTask;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
 import java.util.Date;
 import java.util.Random;
 
@@ -165,25 +166,16 @@ public abstract class Source {
 	}
 
 	/**
-	 * Calculates the SHA-256 hash of the specified file
+	 * Calculates the SHA-256 hash of the specified file. The hash is only recalculated if the file has changed since it was last hashed.
 	 *
 	 * @param file The file to calculate the hash for
 	 * @return The hash
+	 * @see FileFingerprint
 	 */
 	protected static @NotNull String hash(@NotNull File file) {
 		try {
-			byte[] buffer = new byte[8192];
-			int count;
-			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
-			while((count = bis.read(buffer)) > 0) {
-				digest.update(buffer, 0, count);
-			}
-			bis.close();
-
-			byte[] hash = digest.digest();
-			return new String(Base64.getEncoder().encode(hash));
-		} catch(NoSuchAlgorithmException | IOException e) {
+			return FileFingerprint.of(file).getHash();
+		} catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -296,6 +288,17 @@ public abstract class Source {
 		return new File(AppConfiguration.DATA_HOME + "/instances/" + instance.getInternalName() + "/sources/" + internalID);
 	}
 
+	/**
+	 * Gets the file storing the {@link tibetiroka.esmanager.utils.ZipManifest manifest} of an archive extracted by this source. Manifests are stored next to the {@link #getDirectory() directory} of the source.
+	 *
+	 * @param name The name of the extracted archive, unique within this source
+	 * @return The manifest file
+	 * @since 1.3.0
+	 */
+	protected @NotNull File getManifestFile(@NotNull String name) {
+		return new File(getDirectory().getParentFile(), internalID + "-" + name + ".manifest.json");
+	}
+
 	/**
 	 * Gets the Endless Sky executable of this source. The file may not exist.
 	 *
@@ -362,6 +365,24 @@ public abstract class Source {
 	 */
 	public abstract @NotNull String getPublicVersion();
 
+	/**
+	 * Gets the hash of the tree on the branch of this source, which identifies the files the executable is built from.
+	 *
+	 * @return The hash of the tree, or null if not available
+	 * @since 1.3.0
+	 */
+	public @Nullable String getTreeHash() {
+		if(GIT == null || branchName == null) {
+			return null;
+		}
+		try {
+			ObjectId tree = GIT.getRepository().resolve(branchName + "^{tree}");
+			return tree == null ? null : tree.getName();
+		} catch(IOException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the type of this source.
 	 *
@@ -418,6 +439,16 @@ public abstract class Source {
 	 */
 	public abstract boolean needsUpdate();
 
+	/**
+	 * Downloads the data the next creation or update of this source is likely to need into the local caches, without changing this source. Has no effect by default. This call might take several minutes to complete.
+	 *
+	 * @throws IOException     If a download failed
+	 * @throws GitAPIException If a git operation failed
+	 * @since 1.3.0
+	 */
+	public void prefetch() throws IOException, GitAPIException {
+	}
+
 	/**
 	 * Updates this source. This call might take several seconds to complete.
 	 *
@@ -437,7 +468,10 @@ public abstract class Source {
 				log.info(localize("log.git.clone", repo, name));
 				FakeTask task = ProgressUtils.startFakeTimeTask(getInstance().getTracker());
 				task.start(1);
-				GIT = Git.cloneRepository().setDirectory(getRepository()).setURI(new URL(repo).toURI().toString()).call();
+				GIT = MirrorResolver.withFailover(new URL(repo).toURI().toString(), false, remote -> {
+					FileUtils.deleteQuietly(getRepository());
+					return Git.cloneRepository().setDirectory(getRepository()).setURI(remote).call();
+				});
 				task.end();
 				log.info(localize("log.git.clone.done", repo, name));
 				StoredConfig config = GIT.getRepository().getConfig();
@@ -514,21 +548,25 @@ public abstract class Source {
 	}
 
 	/**
-	 * Creates a symbolic link ({@link #getExecutable()}) to the specified target. Both files are given executable permissions.
+	 * Creates a symbolic link ({@link #getExecutable()}) to the specified target. Both files are given executable permissions. If the link already exists, it is replaced atomically where supported, so the executable is always available during the switch.
 	 *
 	 * @param target The target file
 	 */
 	protected void symlinkExecutable(File target) {
 		try {
-			if(getExecutable().exists()) {
-				if(Files.isSymbolicLink(getExecutable().toPath())) {
-					getExecutable().delete();
-				} else {
-					log.warn(localize("log.source.symlink.regular", name, instance.getInternalName(), getExecutable().getAbsolutePath()));
-					return;
-				}
+			Path link = getExecutable().toPath();
+			if(Files.exists(link, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(link)) {
+				log.warn(localize("log.source.symlink.regular", name, instance.getInternalName(), getExecutable().getAbsolutePath()));
+				return;
+			}
+			Path temp = link.resolveSibling(link.getFileName() + ".new");
+			Files.deleteIfExists(temp);
+			Files.createSymbolicLink(temp, target.toPath());
+			try {
+				Files.move(temp, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, link, StandardCopyOption.REPLACE_EXISTING);
 			}
-			Files.createSymbolicLink(getExecutable().toPath(), target.toPath());
 			if(!target.setExecutable(true) || !getExecutable().setExecutable(true)) {
 				log.warn(localize("log.source.symlink.executable.fail"));
 			}
@@ -10,8 +10,10 @@
 
 package tibetiroka.esmanager.launcher;
 
-import org.eclipse.jgit.api.Git;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -19,17 +21,28 @@ import org.slf4j.LoggerFactory;
 import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.config.GensonFactory;
 import tibetiroka.esmanager.launcher.UpdateConfiguration.Migration;
+import tibetiroka.esmanager.utils.FileUtils;
+import tibetiroka.esmanager.utils.HttpUtils;
+import tibetiroka.esmanager.utils.RemoteRefCache;
+import tibetiroka.esmanager.utils.UpdateProgressTracker;
 import tibetiroka.esmanager.utils.VersioningUtils;
+import tibetiroka.esmanager.utils.Zsync;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
 
@@ -39,6 +52,12 @@ import static tibetiroka.esmanager.config.Launcher.localize;
  * @since 0.0.1
  */
 public class SelfUpdater {
+	/**
+	 * The tracker of the progress of the launcher update.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull UpdateProgressTracker TRACKER = new UpdateProgressTracker();
 	private static final Logger log = LoggerFactory.getLogger(SelfUpdater.class);
 
 	/**
@@ -59,6 +78,16 @@ public class SelfUpdater {
 		return false;
 	}
 
+	/**
+	 * Gets the tracker of the progress of the launcher update.
+	 *
+	 * @return {@link #TRACKER}
+	 * @since 1.3.0
+	 */
+	public static @NotNull UpdateProgressTracker getTracker() {
+		return TRACKER;
+	}
+
 	/**
 	 * Checks whether the launcher needs an update.
 	 *
@@ -83,7 +112,7 @@ public class SelfUpdater {
 			UpdateConfiguration[] configs = null;
 			{
 				try {
-					configs = GensonFactory.createGenson().deserialize(new URL((String) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.autoupdate.config.remote")).openStream(), UpdateConfiguration[].class);
+					configs = GensonFactory.createGenson().deserialize(HttpUtils.openStream(new URL((String) AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.autoupdate.config.remote"))), UpdateConfiguration[].class);
 				} catch(Exception e) {
 					log.warn(localize("log.launcher.update.config.remote.error", e.getMessage()));
 				}
@@ -97,13 +126,23 @@ public class SelfUpdater {
 			//
 			downloadPath += currentExec.getName();
 			//
-			Path temp = Files.createTempFile("launcherDownload", null);
-			Files.copy(new URL(downloadPath).openStream(), temp, StandardCopyOption.REPLACE_EXISTING);
+			//staged next to the executable, so it is on the same file system and can be moved atomically
+			File staged = new File(currentExec.getParentFile(), "." + downloadedExec.getName() + ".download");
+			try {
+				download(new URL(downloadPath), currentExec, staged);
+			} catch(IOException e) {
+				org.apache.commons.io.FileUtils.deleteQuietly(staged);
+				throw e;
+			}
 			//
 			for(int i = 0; i < 5; i++) {
 				try {
 					log.warn(localize("log.launcher.update.replace.attempt", i + 1, 5));
-					Files.move(temp, downloadedExec.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					try {
+						Files.move(staged.toPath(), downloadedExec.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					} catch(AtomicMoveNotSupportedException e) {
+						Files.move(staged.toPath(), downloadedExec.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					}
 					downloadedExec.setExecutable(true);
 					if(!currentExec.equals(downloadedExec)) {
 						currentExec.delete();
@@ -118,11 +157,49 @@ public class SelfUpdater {
 					}
 				}
 			}
-			Files.delete(temp);
+			Files.deleteIfExists(staged.toPath());
 			throw new IOException(localize("log.launcher.update.replace.fail"));
 		}
 	}
 
+	/**
+	 * Downloads the new version of the launcher. Jar files are assembled from the unchanged entries of the current version and the changed entries of the new one, and AppImages are updated using their zsync control files. If the delta transfer fails, the whole file is downloaded. Jars and AppImages are verified before they are used: jars by reading every entry, and AppImages against the SHA-1 hash listed in their zsync control file, regardless of whether the delta transfer succeeded.
+	 *
+	 * @param source  The location of the new version
+	 * @param current The current version of the launcher
+	 * @param target  The file to download into
+	 * @throws IOException If the new version could not be downloaded, or is corrupted
+	 * @since 1.3.0
+	 */
+	private static void download(@NotNull URL source, @NotNull File current, @NotNull File target) throws IOException {
+		TRACKER.reset();
+		TRACKER.setWorking(true);
+		AtomicInteger logged = new AtomicInteger(0);
+		ChangeListener<Number> listener = (observable, oldValue, newValue) -> {
+			int percent = (int) (newValue.doubleValue() * 10) * 10;
+			if(percent > logged.get()) {
+				logged.set(percent);
+				log.info(localize("log.launcher.update.progress", percent));
+			}
+		};
+		Platform.runLater(() -> TRACKER.updateProgressProperty().addListener(listener));
+		try {
+			if(current.getName().endsWith(".jar")) {
+				FileUtils.copyTrackedZipDelta(source, current, target, TRACKER);
+				verifyZip(target);
+			} else if(current.getName().endsWith(".AppImage")) {
+				FileUtils.copyTrackedDelta(source, current, target, TRACKER);
+				verifyAppImage(source, target);
+			} else {
+				FileUtils.copyTracked(source, target, TRACKER);
+			}
+		} finally {
+			TRACKER.endAll();
+			TRACKER.setWorking(false);
+			Platform.runLater(() -> TRACKER.updateProgressProperty().removeListener(listener));
+		}
+	}
+
 	/**
 	 * Finds the latest available release for this application.
 	 *
@@ -130,7 +207,7 @@ public class SelfUpdater {
 	 * @since 0.0.1
 	 */
 	private static @NotNull Optional<@NotNull String> findLatest() throws GitAPIException {
-		return Git.lsRemoteRepository().setHeads(false).setTags(true).setRemote((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.launcher.remoteRepository")).callAsMap().keySet().stream().map(s -> s.substring("refs/tags/".length())).min(VersioningUtils.semVerComparator());
+		return RemoteRefCache.lsRemote((String) AppConfiguration.DEFAULT_CONFIGURATION.get("source.launcher.remoteRepository"), false, true).stream().map(Ref::getName).map(s -> s.substring("refs/tags/".length())).min(VersioningUtils.semVerComparator());
 	}
 
 	/**
@@ -177,4 +254,42 @@ public class SelfUpdater {
 		}
 		return workingName;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Verifies a downloaded AppImage against the SHA-1 hash listed in its zsync control file.
+	 *
+	 * @param source The location the AppImage was downloaded from
+	 * @param file   The downloaded AppImage
+	 * @throws IOException If the control file is not available, or the AppImage doesn't match it
+	 * @since 1.3.0
+	 */
+	private static void verifyAppImage(@NotNull URL source, @NotNull File file) throws IOException {
+		try {
+			Zsync.verify(source, file);
+		} catch(IOException e) {
+			throw new IOException(localize("log.launcher.update.verify.fail", file.getName(), e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Verifies a zip file by reading all of its entries. The checksum of every entry is checked while reading.
+	 *
+	 * @param file The zip file
+	 * @throws IOException If the file is not a valid zip file
+	 * @since 1.3.0
+	 */
+	private static void verifyZip(@NotNull File file) throws IOException {
+		int count = 0;
+		try(ZipInputStream input = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			for(ZipEntry entry = input.getNextEntry(); entry != null; entry = input.getNextEntry()) {
+				input.transferTo(OutputStream.nullOutputStream());
+				count++;
+			}
+		} catch(IOException e) {
+			throw new IOException(localize("log.launcher.update.verify.fail", file.getName(), e.getMessage()), e);
+		}
+		if(count == 0) {
+			throw new IOException(localize("log.launcher.update.verify.fail", file.getName(), "empty"));
+		}
+	}
+}
@@ -10,6 +10,7 @@
 
 package tibetiroka.esmanager.plugin;
 
+import com.owlike.genson.annotation.JsonIgnore;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -21,8 +22,18 @@ import tibetiroka.esmanager.utils.Statistics.PluginStatistics;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
@@ -33,6 +44,18 @@ import static tibetiroka.esmanager.config.Launcher.localize;
  * @since 0.0.1
  */
 public class LocalPlugin {
+	/**
+	 * The number of previous versions kept for {@link #rollback() rollback}.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int KEEP_VERSIONS = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.versions.keep")).intValue();
+	/**
+	 * The name of the directory storing the installed versions of the plugin, relative to its {@link #getInstallLocation() install location}.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final String VERSIONS_DIRECTORY = "versions";
 	private static final Logger log = LoggerFactory.getLogger(LocalPlugin.class);
 	/**
 	 * The name of instances this plugin is enabled for. When null, the plugin is enabled for all instances.
@@ -41,6 +64,13 @@ public class LocalPlugin {
 	 */
 	@Nullable
 	private HashSet<String> instances = null;
+	/**
+	 * The known state of the symbolic links of this plugin, by the config directory containing them. The value is the version the link points to, or null if the plugin is not linked. Links of directories missing from this map are in an unknown state; links are only inspected or changed when their state is unknown, or differs from the wanted one.
+	 *
+	 * @since 1.3.0
+	 */
+	@JsonIgnore
+	private final transient @NotNull HashMap<@NotNull File, @Nullable String> linkedVersions = new HashMap<>();
 	/**
 	 * The name of the plugin. This is the same as the name of this plugin in the plugin index, and is unique to each plugin. Never null after the installation of this plugin is finished.
 	 *
@@ -48,6 +78,12 @@ public class LocalPlugin {
 	 */
 	@NotNull
 	private String name;
+	/**
+	 * The previously installed versions that are kept for {@link #rollback() rollback}, starting with the most recent.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull ArrayList<@NotNull String> previousVersions = new ArrayList<>();
 	/**
 	 * Statistics about this plugin.
 	 *
@@ -76,6 +112,16 @@ public class LocalPlugin {
 		this.name = name;
 	}
 
+	/**
+	 * Checks whether there is a previous version of this plugin to {@link #rollback() roll back} to.
+	 *
+	 * @return True if a previous version is kept
+	 * @since 1.3.0
+	 */
+	public synchronized boolean canRollback() {
+		return !previousVersions.isEmpty() && getVersionLocation(previousVersions.get(0)).isDirectory();
+	}
+
 	/**
 	 * Disables this plugin for the specified instance. No-op if the plugin is already {@link #isEnabledFor(Instance) disabled for this instance}.
 	 *
@@ -124,7 +170,7 @@ public class LocalPlugin {
 	}
 
 	/**
-	 * Gets the directory the plugin is installed within. This directory usually contains a single directory representing the installed version of the plugin.
+	 * Gets the directory the plugin is installed within. This directory contains the {@link #getVersionLocation(String) kept versions} of the plugin. Plugins installed before versions were kept contain a single directory representing the installed version instead.
 	 *
 	 * @return The installation location
 	 * @since 0.0.1
@@ -133,6 +179,16 @@ public class LocalPlugin {
 		return new File(new File(AppConfiguration.DATA_HOME, "plugins"), name);
 	}
 
+	/**
+	 * Gets the file storing the checksums of the installed files of this plugin. Used to detect which files have changed when the plugin is updated.
+	 *
+	 * @return The manifest file; might not exist
+	 * @since 1.3.0
+	 */
+	public @NotNull File getManifestFile() {
+		return new File(new File(AppConfiguration.DATA_HOME, "plugins"), name + ".manifest.json");
+	}
+
 	/**
 	 * Gets the name of this plugin. Never null after the plugin is installed.
 	 *
@@ -173,6 +229,21 @@ public class LocalPlugin {
 		this.version = version;
 	}
 
+	/**
+	 * Gets the directory storing the specified version of the plugin. Each version is installed into its own directory, so the installed version is never modified by an update.
+	 *
+	 * @param version The version of the plugin
+	 * @return The directory of the version; might not exist
+	 * @since 1.3.0
+	 */
+	public @NotNull File getVersionLocation(@NotNull String version) {
+		String directory = URLEncoder.encode(version, StandardCharsets.UTF_8).replace("*", "%2A");
+		if(directory.startsWith(".")) {
+			directory = "%2E" + directory.substring(1);
+		}
+		return new File(new File(getInstallLocation(), VERSIONS_DIRECTORY), directory);
+	}
+
 	/**
 	 * Checks whether the plugin is enabled for the specified instance.
 	 *
@@ -200,12 +271,24 @@ public class LocalPlugin {
 	 * @since 0.0.1
 	 */
 	public void remove() throws IOException {
-		File symlink = getSymlink();
-		if(Files.isSymbolicLink(symlink.toPath())) {
-			Files.delete(symlink.toPath());
+		HashSet<File> directories = new HashSet<>();
+		synchronized(this) {
+			directories.addAll(linkedVersions.keySet());
+			linkedVersions.clear();
+		}
+		directories.add(AppConfiguration.ES_DATA_HOME);
+		for(Instance instance : List.copyOf(Instance.getInstances())) {
+			directories.add(instance.getConfigDirectory());
+		}
+		for(File directory : directories) {
+			File symlink = getSymlink(directory);
+			if(Files.isSymbolicLink(symlink.toPath())) {
+				Files.delete(symlink.toPath());
+			}
 		}
 		FileUtils.deleteDirectory(getInstallLocation());
-		PluginManager.getManager().getInstalledPlugins().remove(this);
+		Files.deleteIfExists(getManifestFile().toPath());
+		PluginManager.getManager().removeInstalledPlugin(this);
 		AppConfiguration.savePluginConfiguration();
 		RemotePlugin r = findRemote();
 		if(r != null) {
@@ -215,28 +298,28 @@ public class LocalPlugin {
 	}
 
 	/**
-	 * Creates a symbolic link to this plugin in Endless Sky's data directory, allowing the game to load this plugin.
+	 * Switches this plugin back to the most recent {@link #previousVersions previous version}. The version that was replaced is kept, so the plugin can be updated to it again without downloading it.
+	 *
+	 * @throws IllegalStateException If there is no version to {@link #canRollback() roll back} to
+	 * @since 1.3.0
+	 */
+	public synchronized void rollback() {
+		if(!canRollback()) {
+			throw new IllegalStateException("No previous version to roll back to!");
+		}
+		String previous = previousVersions.get(0);
+		log.info(localize("log.plugin.rollback", name, version, previous));
+		activateVersion(previous);
+		AppConfiguration.savePluginConfiguration();
+	}
+
+	/**
+	 * Creates a symbolic link to this plugin in Endless Sky's data directory, allowing the game to load this plugin. If the link already exists, it is replaced atomically where supported, so the game always sees a complete version of the plugin.
 	 *
 	 * @since 0.0.1
 	 */
 	public void symlinkPlugin() {
-		File symlinkDir = getSymlink().getParentFile();
-		if(!symlinkDir.exists()) {
-			symlinkDir.mkdirs();
-		}
-		try {
-			if(getSymlink().exists()) {
-				if(Files.isSymbolicLink(getSymlink().toPath()) || !PluginManager.getManager().getPreservePlugins().get()) {
-					FileUtils.forceDelete(getSymlink());
-				} else {
-					log.warn(localize("log.plugin.symlink.regular", name));
-					return;
-				}
-			}
-			Files.createSymbolicLink(getSymlink().toPath(), getInstallLocation().listFiles()[0].toPath());
-		} catch(IOException e) {
-			log.error(localize("log.plugin.symlink.fail", e.getMessage(), name), e);
-		}
+		symlinkPlugin(AppConfiguration.ES_DATA_HOME);
 	}
 
 	/**
@@ -263,6 +346,49 @@ public class LocalPlugin {
 		}
 	}
 
+	/**
+	 * Switches this plugin to the specified installed version, and updates its symbolic link. The replaced version is kept for {@link #rollback() rollback}, and the versions exceeding the retention limit are deleted.
+	 *
+	 * @param version The version to switch to; its {@link #getVersionLocation(String) directory} must exist
+	 * @since 1.3.0
+	 */
+	protected synchronized void activateVersion(@NotNull String version) {
+		String replaced = this.version;
+		this.version = version;
+		previousVersions.remove(version);
+		if(replaced != null && !replaced.equals(version) && getVersionLocation(replaced).isDirectory()) {
+			previousVersions.add(0, replaced);
+		}
+		while(previousVersions.size() > KEEP_VERSIONS) {
+			previousVersions.remove(previousVersions.size() - 1);
+		}
+		symlinkPlugin();
+		//links in other config directories would keep pointing to the replaced version
+		for(File directory : List.copyOf(linkedVersions.keySet())) {
+			if(linkedVersions.get(directory) != null && !directory.equals(AppConfiguration.ES_DATA_HOME)) {
+				symlinkPlugin(directory);
+			}
+		}
+		cleanupVersions();
+	}
+
+	/**
+	 * Gets the directory containing the files of the installed version of this plugin.
+	 *
+	 * @return The {@link #getVersionLocation(String) version directory}, the install location for plugins installed before versions were kept, or null if the plugin is not installed
+	 * @since 1.3.0
+	 */
+	protected @Nullable File getCurrentLocation() {
+		if(version != null) {
+			File location = getVersionLocation(version);
+			if(location.isDirectory()) {
+				return location;
+			}
+		}
+		File[] files = getInstallLocation().listFiles(file -> !file.getName().equals(VERSIONS_DIRECTORY));
+		return files == null || files.length == 0 ? null : getInstallLocation();
+	}
+
 	/**
 	 * Gets where the symbolic link to this plugin should be located in Endless Sky's data directory.
 	 *
@@ -270,6 +396,138 @@ public class LocalPlugin {
 	 * @since 0.0.1
 	 */
 	protected @NotNull File getSymlink() {
-		return new File(new File(AppConfiguration.ES_DATA_HOME, "plugins"), name);
+		return getSymlink(AppConfiguration.ES_DATA_HOME);
+	}
+
+	/**
+	 * Gets where the symbolic link to this plugin should be located in the specified config directory of the game.
+	 *
+	 * @param configDirectory The config directory of the game
+	 * @return The location of the symbolic link; might not exist
+	 * @since 1.3.0
+	 */
+	protected @NotNull File getSymlink(@NotNull File configDirectory) {
+		return new File(new File(configDirectory, "plugins"), name);
+	}
+
+	/**
+	 * Links or unlinks this plugin in the specified config directory of the game, if its link is not already in the wanted state. The state of the link is remembered, so the file system is only inspected the first time, and only changed when the wanted state differs. Manually installed plugins are never removed.
+	 *
+	 * @param configDirectory The config directory of the game
+	 * @param linked          True to link the installed version of the plugin, false to remove the link
+	 * @return True if the link was changed
+	 * @since 1.3.0
+	 */
+	protected synchronized boolean setLinked(@NotNull File configDirectory, boolean linked) {
+		String wanted = linked ? version : null;
+		boolean known = linkedVersions.containsKey(configDirectory);
+		if(known && Objects.equals(linkedVersions.get(configDirectory), wanted)) {
+			return false;
+		}
+		Path link = getSymlink(configDirectory).toPath();
+		boolean isLink = Files.isSymbolicLink(link);
+		if(!known) {
+			//the link might already be correct from a previous run
+			try {
+				if(isLink ? linked && Files.readSymbolicLink(link).equals(getLinkTarget()) : !linked) {
+					linkedVersions.put(configDirectory, wanted);
+					return false;
+				}
+			} catch(IOException e) {
+				log.debug(localize("log.plugin.symlink.read.fail", name, e.getMessage()));
+			}
+		}
+		if(linked) {
+			symlinkPlugin(configDirectory);
+		} else {
+			if(isLink) {
+				FileUtils.deleteQuietly(link.toFile());
+			}
+			linkedVersions.put(configDirectory, null);
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a symbolic link to this plugin in the specified config directory of the game. If the link already exists, it is replaced atomically where supported, so the game always sees a complete version of the plugin.
+	 *
+	 * @param configDirectory The config directory of the game
+	 * @since 1.3.0
+	 */
+	protected synchronized void symlinkPlugin(@NotNull File configDirectory) {
+		linkedVersions.remove(configDirectory);
+		File symlinkDir = getSymlink(configDirectory).getParentFile();
+		if(!symlinkDir.exists()) {
+			symlinkDir.mkdirs();
+		}
+		try {
+			Path link = getSymlink(configDirectory).toPath();
+			if(Files.exists(link, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(link)) {
+				if(PluginManager.getManager().getPreservePlugins().get()) {
+					log.warn(localize("log.plugin.symlink.regular", name));
+					return;
+				}
+				FileUtils.forceDelete(link.toFile());
+			}
+			Path target = getLinkTarget();
+			if(target == null) {
+				throw new IOException(localize("log.plugin.symlink.missing", name));
+			}
+			//hidden, so the game doesn't load it as a plugin while it exists
+			Path temp = link.resolveSibling("." + link.getFileName() + ".new");
+			Files.deleteIfExists(temp);
+			Files.createSymbolicLink(temp, target);
+			try {
+				Files.move(temp, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, link, StandardCopyOption.REPLACE_EXISTING);
+			}
+			linkedVersions.put(configDirectory, version);
+		} catch(IOException e) {
+			log.error(localize("log.plugin.symlink.fail", e.getMessage(), name), e);
+		}
+	}
+
+	/**
+	 * Deletes the versions of this plugin that are neither installed nor kept for rollback, including the files of plugins installed before versions were kept. Files that cannot be deleted (such as the files of a running game on some systems) are kept until the next cleanup.
+	 *
+	 * @since 1.3.0
+	 */
+	private void cleanupVersions() {
+		File installLocation = getInstallLocation();
+		HashSet<File> kept = new HashSet<>();
+		kept.add(new File(installLocation, VERSIONS_DIRECTORY));
+		kept.add(getVersionLocation(version));
+		previousVersions.forEach(v -> kept.add(getVersionLocation(v)));
+		ArrayList<File> obsolete = new ArrayList<>();
+		for(File directory : new File[]{installLocation, new File(installLocation, VERSIONS_DIRECTORY)}) {
+			File[] children = directory.listFiles();
+			if(children != null) {
+				for(File child : children) {
+					if(!kept.contains(child)) {
+						obsolete.add(child);
+					}
+				}
+			}
+		}
+		for(File file : obsolete) {
+			try {
+				FileUtils.forceDelete(file);
+			} catch(IOException e) {
+				log.debug(localize("log.plugin.version.cleanup.fail", name, file.getAbsolutePath(), e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Gets the directory the symbolic link of this plugin should point to: the plugin directory within the {@link #getCurrentLocation() installed version}.
+	 *
+	 * @return The target of the link, or null if the files of the plugin are missing
+	 * @since 1.3.0
+	 */
+	private @Nullable Path getLinkTarget() {
+		File current = getCurrentLocation();
+		File[] files = current == null ? null : current.listFiles(file -> !file.getName().equals(VERSIONS_DIRECTORY));
+		return files == null || files.length == 0 ? null : files[0].toPath();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A collection of plugins, indexed by their name. Plugins can be looked up in constant time, and the catalog can be read from any thread without locking.
+ * <p>The catalog is copy-on-write: every change publishes a new, immutable list and name index. Readers always see a consistent version, even while another thread changes the catalog. Changes are rare compared to lookups, so copying is cheaper than locking every read.</p>
+ *
+ * @param <P> The type of the plugins
+ * @since 1.3.0
+ */
+public class PluginCatalog<P> {
+	/**
+	 * Gets the name of a plugin.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull Function<@NotNull P, @NotNull String> naming;
+	/**
+	 * The order of the plugins in the list.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull Comparator<@NotNull P> order;
+	/**
+	 * The current version of the catalog.
+	 *
+	 * @since 1.3.0
+	 */
+	private volatile @NotNull Snapshot<P> snapshot = new Snapshot<>(Map.of(), List.of());
+
+	/**
+	 * Creates a new, empty catalog. Plugins are listed in the case-insensitive order of their names.
+	 *
+	 * @param naming Gets the name of a plugin
+	 * @since 1.3.0
+	 */
+	public PluginCatalog(@NotNull Function<@NotNull P, @NotNull String> naming) {
+		this.naming = naming;
+		this.order = Comparator.comparing(p -> naming.apply(p).toLowerCase());
+	}
+
+	/**
+	 * Adds a plugin to the catalog, replacing the plugin with the same name.
+	 *
+	 * @param plugin The plugin to add
+	 * @since 1.3.0
+	 */
+	public synchronized void add(@NotNull P plugin) {
+		HashMap<String, P> map = new HashMap<>(snapshot.byName);
+		map.put(naming.apply(plugin), plugin);
+		publish(map);
+	}
+
+	/**
+	 * Checks whether there is a plugin with the specified name.
+	 *
+	 * @param name The name of the plugin
+	 * @return True if found
+	 * @since 1.3.0
+	 */
+	public boolean contains(@NotNull String name) {
+		return snapshot.byName.containsKey(name);
+	}
+
+	/**
+	 * Finds the plugin with the specified name.
+	 *
+	 * @param name The name of the plugin
+	 * @return The plugin, or null if not found
+	 * @since 1.3.0
+	 */
+	public @Nullable P get(@NotNull String name) {
+		return snapshot.byName.get(name);
+	}
+
+	/**
+	 * Gets the plugins in the catalog. The list is not affected by later changes to the catalog.
+	 *
+	 * @return The immutable list of plugins, in order
+	 * @since 1.3.0
+	 */
+	public @NotNull List<@NotNull P> getPlugins() {
+		return snapshot.plugins;
+	}
+
+	/**
+	 * Removes a plugin from the catalog. Has no effect if a different plugin is stored with the same name.
+	 *
+	 * @param plugin The plugin to remove
+	 * @return True if the plugin was removed
+	 * @since 1.3.0
+	 */
+	public synchronized boolean remove(@NotNull P plugin) {
+		String name = naming.apply(plugin);
+		if(snapshot.byName.get(name) != plugin) {
+			return false;
+		}
+		HashMap<String, P> map = new HashMap<>(snapshot.byName);
+		map.remove(name);
+		publish(map);
+		return true;
+	}
+
+	/**
+	 * Replaces the contents of the catalog. If multiple plugins have the same name, the last one is kept.
+	 *
+	 * @param plugins The new plugins
+	 * @since 1.3.0
+	 */
+	public synchronized void setAll(@NotNull Collection<? extends @NotNull P> plugins) {
+		HashMap<String, P> map = new HashMap<>();
+		for(P plugin : plugins) {
+			map.put(naming.apply(plugin), plugin);
+		}
+		publish(map);
+	}
+
+	/**
+	 * Gets the number of plugins in the catalog.
+	 *
+	 * @return The number of plugins
+	 * @since 1.3.0
+	 */
+	public int size() {
+		return snapshot.plugins.size();
+	}
+
+	/**
+	 * Publishes a new version of the catalog.
+	 *
+	 * @param map The plugins by their name; not modified after this call
+	 * @since 1.3.0
+	 */
+	private void publish(@NotNull HashMap<@NotNull String, @NotNull P> map) {
+		ArrayList<P> list = new ArrayList<>(map.values());
+		list.sort(order);
+		snapshot = new Snapshot<>(Collections.unmodifiableMap(map), Collections.unmodifiableList(list));
+	}
+
+	/**
+	 * An immutable version of the catalog. The list and the name index are published together, so readers never see them out of sync.
+	 *
+	 * @param byName  The plugins by their name
+	 * @param plugins The plugins, in order
+	 * @param <P>     The type of the plugins
+	 * @since 1.3.0
+	 */
+	private record Snapshot<P>(@NotNull Map<@NotNull String, @NotNull P> byName, @NotNull List<@NotNull P> plugins) {
+	}
+}
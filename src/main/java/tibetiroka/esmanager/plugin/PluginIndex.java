@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import com.owlike.genson.JsonBindingException;
+import org.apache.commons.io.input.TeeInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.GensonFactory;
+import tibetiroka.esmanager.utils.CacheValidators;
+import tibetiroka.esmanager.utils.HttpUtils;
+import tibetiroka.esmanager.utils.MirrorResolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Downloads and caches the plugin index. The last downloaded copy is kept on disk, and revalidated using conditional requests: when the index hasn't changed, the server responds with {@code 304 Not Modified}, and the cached copy is used without downloading it again. The index is parsed while it is being downloaded, without keeping the whole document in memory.
+ * <p>The plugins of a new index are {@link Diff#compute(Collection, Collection) compared} with the loaded ones, so only the plugins that were added, removed or changed have to be updated.</p>
+ *
+ * @since 1.3.0
+ */
+public class PluginIndex {
+	/**
+	 * The last downloaded copy of the plugin index.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File CACHE_FILE = new File(AppConfiguration.DATA_HOME, "plugins-index.json");
+	/**
+	 * The file storing the validators of the cached copy.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File VALIDATOR_FILE = new File(AppConfiguration.DATA_HOME, "plugins-index-validators.json");
+	private static final Logger log = LoggerFactory.getLogger(PluginIndex.class);
+
+	/**
+	 * Downloads the plugin index, unless the cached copy is still valid. The downloaded index replaces the cached copy.
+	 *
+	 * @return The plugins in the index, or null if the cached copy is up-to-date
+	 * @throws IOException If the index could not be downloaded or parsed
+	 * @since 1.3.0
+	 */
+	public static @NotNull RemotePlugin @Nullable [] fetch() throws IOException {
+		CacheValidators validators = isCached() ? CacheValidators.load(VALIDATOR_FILE) : new CacheValidators();
+		String location = (String) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.index.remote");
+		//the validators are issued by the server, so local mirrors are not used
+		HttpResponse<InputStream> response = MirrorResolver.withFailover(location, true, mirror -> HttpUtils.send(validators.apply(HttpUtils.request(URI.create(mirror)).GET()).build()));
+		if(response.statusCode() == 304) {
+			response.body().close();
+			log.debug(localize("log.plugin.index.unchanged"));
+			return null;
+		}
+		HttpUtils.expectStatus(response, 200);
+		CACHE_FILE.getParentFile().mkdirs();
+		File download = new File(CACHE_FILE.getParentFile(), "." + CACHE_FILE.getName() + ".download");
+		RemotePlugin[] plugins;
+		try(InputStream input = new TeeInputStream(response.body(), new FileOutputStream(download), true)) {
+			plugins = GensonFactory.createGenson().deserialize(input, RemotePlugin[].class);
+			//reading the rest of the body, so the cached copy is complete
+			input.transferTo(OutputStream.nullOutputStream());
+		} catch(IOException | JsonBindingException e) {
+			Files.deleteIfExists(download.toPath());
+			throw e instanceof IOException io ? io : new IOException(e);
+		}
+		try {
+			Files.move(download.toPath(), CACHE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(download.toPath(), CACHE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		new CacheValidators(response).save(VALIDATOR_FILE);
+		return plugins;
+	}
+
+	/**
+	 * Checks whether there is a cached copy of the plugin index.
+	 *
+	 * @return True if cached
+	 * @since 1.3.0
+	 */
+	public static boolean isCached() {
+		return CACHE_FILE.isFile();
+	}
+
+	/**
+	 * Reads the cached copy of the plugin index.
+	 *
+	 * @return The plugins in the index
+	 * @throws IOException If there is no cached copy, or it could not be parsed
+	 * @since 1.3.0
+	 */
+	public static @NotNull RemotePlugin @NotNull [] readCached() throws IOException {
+		if(!isCached()) {
+			throw new IOException(localize("log.plugin.index.missing"));
+		}
+		try(InputStream input = new FileInputStream(CACHE_FILE)) {
+			return GensonFactory.createGenson().deserialize(input, RemotePlugin[].class);
+		} catch(JsonBindingException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * The differences between two versions of the plugin index. Plugins are identified by their name.
+	 *
+	 * @since 1.3.0
+	 */
+	public static class Diff {
+		/**
+		 * The plugins that are only in the new version.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull List<@NotNull RemotePlugin> added = new ArrayList<>();
+		/**
+		 * The plugins whose entries have changed. These are the instances of the old version.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull List<@NotNull RemotePlugin> changed = new ArrayList<>();
+		/**
+		 * The plugins that are only in the old version.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull List<@NotNull RemotePlugin> removed = new ArrayList<>();
+
+		/**
+		 * Compares two versions of the plugin index.
+		 *
+		 * @param previous The plugins of the old version
+		 * @param current  The plugins of the new version
+		 * @return The differences
+		 * @since 1.3.0
+		 */
+		public static @NotNull Diff compute(@NotNull Collection<@NotNull RemotePlugin> previous, @NotNull Collection<@NotNull RemotePlugin> current) {
+			Diff diff = new Diff();
+			HashMap<String, RemotePlugin> old = new HashMap<>();
+			for(RemotePlugin plugin : previous) {
+				old.put(plugin.getName(), plugin);
+			}
+			for(RemotePlugin plugin : current) {
+				RemotePlugin match = old.remove(plugin.getName());
+				if(match == null) {
+					diff.added.add(plugin);
+				} else if(!match.isSameEntry(plugin)) {
+					diff.changed.add(match);
+				}
+			}
+			diff.removed.addAll(old.values());
+			return diff;
+		}
+
+		/**
+		 * Gets the plugins that are only in the new version.
+		 *
+		 * @return {@link #added}
+		 * @since 1.3.0
+		 */
+		public @NotNull List<@NotNull RemotePlugin> getAdded() {
+			return added;
+		}
+
+		/**
+		 * Gets the plugins whose entries have changed. These are the instances of the old version.
+		 *
+		 * @return {@link #changed}
+		 * @since 1.3.0
+		 */
+		public @NotNull List<@NotNull RemotePlugin> getChanged() {
+			return changed;
+		}
+
+		/**
+		 * Gets the plugins that are only in the old version.
+		 *
+		 * @return {@link #removed}
+		 * @since 1.3.0
+		 */
+		public @NotNull List<@NotNull RemotePlugin> getRemoved() {
+			return removed;
+		}
+
+		/**
+		 * Checks whether the two versions are the same.
+		 *
+		 * @return True if nothing was added, removed or changed
+		 * @since 1.3.0
+		 */
+		public boolean isEmpty() {
+			return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+		}
+	}
+}
@@ -12,21 +12,19 @@ package tibetiroka.esmanager.plugin;
 
 import com.owlike.genson.annotation.JsonIgnore;
 import javafx.beans.property.SimpleBooleanProperty;
-import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.config.AppConfiguration;
-import tibetiroka.esmanager.config.GensonFactory;
 import tibetiroka.esmanager.instance.Instance;
+import tibetiroka.esmanager.utils.NetworkMonitor;
+import tibetiroka.esmanager.utils.ResourceGovernor;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.nio.file.Files;
 import java.util.*;
-import java.util.concurrent.Phaser;
+import java.util.function.Predicate;
 
 import static tibetiroka.esmanager.config.Launcher.localize;
 
@@ -49,6 +47,12 @@ public class PluginManager {
 	 * @since 0.0.1
 	 */
 	public static @NotNull PluginManager MANAGER;
+	/**
+	 * The executor running the current plugin updates, or null if no update is running.
+	 *
+	 * @since 1.3.0
+	 */
+	private static volatile @Nullable PluginUpdateExecutor UPDATER;
 	/**
 	 * Stores whether to update plugins on startup.
 	 *
@@ -57,12 +61,33 @@ public class PluginManager {
 	@NotNull
 	private SimpleBooleanProperty autoUpdatePlugins = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.autoupdate"));
 	/**
-	 * The list of installed plugins.
+	 * Stores whether {@link #remotePlugins} contains the plugins of the plugin index, as opposed to only the installed plugins.
+	 *
+	 * @since 1.3.0
+	 */
+	@JsonIgnore
+	private transient volatile boolean indexLoaded = false;
+	/**
+	 * The catalog of installed plugins. Filled from {@link #installedPlugins} on first use, since that is only set after this instance is created.
+	 *
+	 * @since 1.3.0
+	 */
+	@JsonIgnore
+	private final transient @NotNull PluginCatalog<@NotNull LocalPlugin> installed = new PluginCatalog<>(LocalPlugin::getName);
+	/**
+	 * Stores whether {@link #installed} has been filled from {@link #installedPlugins}.
+	 *
+	 * @since 1.3.0
+	 */
+	@JsonIgnore
+	private transient volatile boolean installedLoaded = false;
+	/**
+	 * The list of installed plugins. This is the saved copy of {@link #installed}, replaced whenever the catalog changes; it is never modified, so it can be saved while plugins are installed.
 	 *
 	 * @since 0.0.1
 	 */
 	@NotNull
-	private ArrayList<@NotNull LocalPlugin> installedPlugins = new ArrayList<>();
+	private volatile ArrayList<@NotNull LocalPlugin> installedPlugins = new ArrayList<>();
 	/**
 	 * Stores whether to preserve existing installations of plugins in the Endless Sky data directory.
 	 *
@@ -71,17 +96,36 @@ public class PluginManager {
 	@NotNull
 	private SimpleBooleanProperty preservePlugins = new SimpleBooleanProperty((Boolean) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.preserve"));
 	/**
-	 * The list of remote plugins queried from the plugin index.
+	 * The catalog of remote plugins queried from the plugin index.
 	 *
 	 * @since 0.0.1
 	 */
 	@JsonIgnore
-	private transient @NotNull ArrayList<@NotNull RemotePlugin> remotePlugins = new ArrayList<>();
+	private final transient @NotNull PluginCatalog<@NotNull RemotePlugin> remotePlugins = new PluginCatalog<>(RemotePlugin::getName);
+	/**
+	 * The full-text index of {@link #remotePlugins}, updated with every change to the catalog.
+	 *
+	 * @since 1.3.0
+	 */
+	@JsonIgnore
+	private final transient @NotNull PluginSearchIndex<@NotNull RemotePlugin> searchIndex = new PluginSearchIndex<>(plugin -> Arrays.asList(plugin.getName(), plugin.getShortDescription(), plugin.getDescription(), plugin.getAuthors()));
 
 	public PluginManager() {
 		MANAGER = this;
 	}
 
+	/**
+	 * Cancels the running plugin updates. The plugins that were not updated are updated again the next time {@link #updatePlugins()} is called.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void cancelUpdates() {
+		PluginUpdateExecutor updater = UPDATER;
+		if(updater != null) {
+			updater.cancel();
+		}
+	}
+
 	/**
 	 * Finds a locally installed plugin with the specified name.
 	 *
@@ -90,8 +134,7 @@ public class PluginManager {
 	 * @since 0.0.1
 	 */
 	public static @Nullable LocalPlugin findLocal(@NotNull String name) {
-		Optional<LocalPlugin> plugin = MANAGER.installedPlugins.stream().filter(p -> Objects.equals(p.getName(), name)).findAny();
-		return plugin.orElse(null);
+		return MANAGER.getInstalledCatalog().get(name);
 	}
 
 	/**
@@ -102,8 +145,7 @@ public class PluginManager {
 	 * @since 0.0.1
 	 */
 	public static @Nullable RemotePlugin findRemote(@NotNull String name) {
-		Optional<RemotePlugin> plugin = MANAGER.remotePlugins.stream().filter(p -> Objects.equals(p.getName(), name)).findAny();
-		return plugin.orElse(null);
+		return MANAGER.remotePlugins.get(name);
 	}
 
 	/**
@@ -125,27 +167,59 @@ public class PluginManager {
 	}
 
 	/**
-	 * Updates all plugins. While plugins are updated in parallel, this method doesn't exit until all update are finished and all plugin updater threads have finished execution.
+	 * Updates all plugins. Plugins are updated in parallel by a {@link PluginUpdateExecutor}, with a limited number of threads; this method doesn't exit until all updates are finished. Only the plugins whose installed version differs from the loaded plugin index are checked.
+	 * <p>Plugins enabled for the most frequently launched instance are updated first, since that instance is the most likely to be launched next. The other plugins are ordered by how often they were launched.</p>
 	 *
 	 * @since 0.0.1
 	 */
 	public static void updatePlugins() {
 		UPDATE_IN_PROGRESS.set(true);
-		Phaser phaser = new Phaser(1);
-		for(LocalPlugin local : MANAGER.installedPlugins) {
-			phaser.register();
-			new Thread(() -> {
-				Main.configureThread(Thread.currentThread(), false);
+		PluginUpdateExecutor executor = new PluginUpdateExecutor();
+		Instance next = Instance.getInstances().stream().max(Comparator.comparingLong(instance -> instance.getStatistics().getLaunches().get())).orElse(null);
+		for(LocalPlugin local : MANAGER.getInstalledPlugins()) {
+			RemotePlugin remote = local.findRemote();
+			if(remote != null && !remote.needsUpdate()) {
+				log.debug(localize("log.plugin.update.skip", local.getName()));
+				continue;
+			}
+			String host = remote == null || remote.getUrl() == null ? null : remote.getUrl().getHost();
+			long priority = local.getStatistics().getLaunches().get();
+			if(next != null && local.isEnabledFor(next)) {
+				priority += Integer.MAX_VALUE;
+			}
+			executor.submit(local.getName(), host, priority, () -> {
 				try {
+					ResourceGovernor.awaitIdle();
 					local.updateIfRequired();
-				} finally {
-					phaser.arriveAndDeregister();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
 				}
-			}, "Plugin updater thread for " + local.getName()).start();
+			});
+		}
+		UPDATER = executor;
+		try {
+			executor.run();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			UPDATER = null;
+			AppConfiguration.savePluginConfiguration();
+			UPDATE_IN_PROGRESS.set(false);
+		}
+	}
+
+	/**
+	 * Registers an installed plugin, replacing the plugin with the same name.
+	 *
+	 * @param plugin The installed plugin
+	 * @since 1.3.0
+	 */
+	public void addInstalledPlugin(@NotNull LocalPlugin plugin) {
+		PluginCatalog<LocalPlugin> catalog = getInstalledCatalog();
+		synchronized(catalog) {
+			catalog.add(plugin);
+			installedPlugins = new ArrayList<>(catalog.getPlugins());
 		}
-		phaser.arriveAndAwaitAdvance();
-		AppConfiguration.savePluginConfiguration();
-		UPDATE_IN_PROGRESS.set(false);
 	}
 
 	/**
@@ -158,12 +232,13 @@ public class PluginManager {
 	}
 
 	/**
-	 * The list of installed plugins.
+	 * Gets the installed plugins. The list is not affected by plugins installed or removed later.
 	 *
+	 * @return The immutable list of installed plugins, ordered by name
 	 * @since 0.0.1
 	 */
-	public @NotNull ArrayList<@NotNull LocalPlugin> getInstalledPlugins() {
-		return installedPlugins;
+	public @NotNull List<@NotNull LocalPlugin> getInstalledPlugins() {
+		return getInstalledCatalog().getPlugins();
 	}
 
 	/**
@@ -176,74 +251,234 @@ public class PluginManager {
 	}
 
 	/**
-	 * The list of remote plugins queried from the plugin index.
+	 * Gets the remote plugins queried from the plugin index. The list is not affected by later changes to the index.
 	 *
+	 * @return The immutable list of remote plugins, ordered by name
 	 * @since 0.0.1
 	 */
-	public @NotNull ArrayList<@NotNull RemotePlugin> getRemotePlugins() {
-		return remotePlugins;
+	public @NotNull List<@NotNull RemotePlugin> getRemotePlugins() {
+		return remotePlugins.getPlugins();
 	}
 
 	/**
-	 * Installs all downloaded plugins. This only changes how the game sees installed plugins, and doesn't affect the internal mechanics of the launcher.
+	 * Installs all downloaded plugins. This only changes how the game sees installed plugins, and doesn't affect the internal mechanics of the launcher. Only the links that are not already installed are changed.
 	 */
 	public void installAllPlugins() {
-		for(LocalPlugin plugin : installedPlugins) {
-			managePlugin(plugin, true);
+		activatePlugins(AppConfiguration.ES_DATA_HOME, plugin -> true);
+	}
+
+	/**
+	 * Installs the enabled plugins of the instances that don't {@link Instance.ConfigPolicy#SHARED share} the game's config directory. These instances keep their own set of plugins, which is updated when the plugins are installed, or enabled or disabled for the instances.
+	 *
+	 * @since 1.3.0
+	 */
+	public void installIsolatedPlugins() {
+		for(Instance instance : List.copyOf(Instance.getInstances())) {
+			if(instance.getConfigPolicy() != Instance.ConfigPolicy.SHARED) {
+				installPluginsFor(instance);
+			}
 		}
 	}
 
 	/**
-	 * Installs all enabled plugins for this instance, and uninstalls all disabled ones. This only changes how the game sees installed plugins, and doesn't affect the internal mechanics of the launcher.
+	 * Installs all enabled plugins for this instance, and uninstalls all disabled ones, in the {@link Instance#getConfigDirectory() config directory} of the instance. This only changes how the game sees installed plugins, and doesn't affect the internal mechanics of the launcher. Only the plugins whose state differs from the current one are changed, so launching instances with the same plugins doesn't touch the file system.
 	 *
 	 * @param instance The instance to configure plugins for
 	 * @since 1.1.0
 	 */
 	public void installPluginsFor(@NotNull Instance instance) {
-		for(LocalPlugin plugin : installedPlugins) {
-			managePlugin(plugin, plugin.isEnabledFor(instance));
+		activatePlugins(instance.getConfigDirectory(), plugin -> plugin.isEnabledFor(instance));
+	}
+
+	/**
+	 * Loads the remote plugins from the cached copy of the plugin index, without using the network. Failures are logged, but otherwise ignored. See {@link #loadRemotePlugins()}.
+	 *
+	 * @return The changes to the remote plugin list
+	 * @since 1.3.0
+	 */
+	public @NotNull PluginIndex.Diff loadCachedPlugins() {
+		try {
+			return applyIndex(PluginIndex.readCached());
+		} catch(IOException e) {
+			log.warn(localize("log.plugin.index.cache.fail", e.getMessage()));
+			return new PluginIndex.Diff();
 		}
 	}
 
 	/**
-	 * Loads all remote plugins from the plugin index. Any currently loaded remote plugins are cleared from the remote plugin list.
+	 * Adds the installed plugins that are missing from the remote plugin list, such as when the plugin index could not be loaded.
+	 *
+	 * @return The changes to the remote plugin list
+	 * @since 1.3.0
+	 */
+	public @NotNull PluginIndex.Diff loadMissingPlugins() {
+		return apply(new ArrayList<>(remotePlugins.getPlugins()));
+	}
+
+	/**
+	 * Loads the remote plugins from the plugin index. If the network is {@link NetworkMonitor#isOnline() usable}, the cached copy of the index is revalidated, and only downloaded if it has changed; otherwise, or if the download fails, the cached copy is used. The remote plugin list is updated in place: plugins whose index entry has changed keep their instance, so their state is preserved.
 	 *
+	 * @return The changes to the remote plugin list
+	 * @throws IOException If the index could not be downloaded, and there is no cached copy
 	 * @since 0.0.1
 	 */
-	public void loadRemotePlugins() throws IOException {
-		remotePlugins.clear();
-		try {
-			remotePlugins.addAll(new ArrayList<>(Arrays.asList(GensonFactory.createGenson().deserialize(new URL((String) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.index.remote")).openStream(), RemotePlugin[].class))));
-			remotePlugins.sort(Comparator.comparing(p -> p.getName().toLowerCase()));
-		} finally {
-			for(LocalPlugin plugin : installedPlugins) {
-				if(plugin.findRemote() == null) {
-					RemotePlugin remote = new RemotePlugin(plugin.getName(), plugin.getVersion());
-					remotePlugins.add(remote);
+	public @NotNull PluginIndex.Diff loadRemotePlugins() throws IOException {
+		RemotePlugin[] index = null;
+		if(NetworkMonitor.isOnline()) {
+			try {
+				index = PluginIndex.fetch();
+			} catch(IOException e) {
+				if(!PluginIndex.isCached()) {
+					throw e;
 				}
+				log.warn(localize("log.plugin.index.fallback", e.getMessage()));
+			}
+		}
+		if(index == null) {
+			if(indexLoaded) {
+				return new PluginIndex.Diff();
+			}
+			index = PluginIndex.readCached();
+		}
+		PluginIndex.Diff diff = applyIndex(index);
+		log.info(localize("log.plugin.index.loaded", diff.getAdded().size(), diff.getRemoved().size(), diff.getChanged().size()));
+		return diff;
+	}
+
+	/**
+	 * Unregisters an installed plugin. Has no effect if a different plugin is registered with the same name.
+	 *
+	 * @param plugin The removed plugin
+	 * @since 1.3.0
+	 */
+	public void removeInstalledPlugin(@NotNull LocalPlugin plugin) {
+		PluginCatalog<LocalPlugin> catalog = getInstalledCatalog();
+		synchronized(catalog) {
+			if(catalog.remove(plugin)) {
+				installedPlugins = new ArrayList<>(catalog.getPlugins());
 			}
 		}
-		for(RemotePlugin remotePlugin : remotePlugins) {
-			remotePlugin.updateInstalledStatus();
+	}
+
+	/**
+	 * Searches the remote plugins. Every word of the query must be the beginning of a word in the name, description or authors of the plugin.
+	 *
+	 * @param query The search query
+	 * @return The immutable list of matching plugins, ordered by name; all remote plugins if the query is blank
+	 * @see #getRemotePlugins()
+	 * @since 1.3.0
+	 */
+	public @NotNull List<@NotNull RemotePlugin> searchRemotePlugins(@NotNull String query) {
+		return List.copyOf(searchIndex.filter(remotePlugins.getPlugins(), query));
+	}
+
+	/**
+	 * Installs the plugins accepted by the filter into the config directory, and uninstalls the others. Only the plugins whose state differs from the wanted one are changed.
+	 *
+	 * @param configDirectory The config directory of the game
+	 * @param enabled         Accepts the plugins to install
+	 * @since 1.3.0
+	 */
+	private synchronized void activatePlugins(@NotNull File configDirectory, @NotNull Predicate<@NotNull LocalPlugin> enabled) {
+		int changed = 0;
+		List<LocalPlugin> plugins = getInstalledPlugins();
+		for(LocalPlugin plugin : plugins) {
+			if(managePlugin(plugin, configDirectory, enabled.test(plugin))) {
+				changed++;
+			}
 		}
+		log.debug(localize("log.instance.plugin.activate", changed, plugins.size() - changed));
+	}
+
+	/**
+	 * Replaces the remote plugin list with the specified plugins. Installed plugins that are not in the list are kept with only their name and version.
+	 *
+	 * @param plugins The new remote plugins
+	 * @return The changes to the remote plugin list
+	 * @since 1.3.0
+	 */
+	private synchronized @NotNull PluginIndex.Diff apply(@NotNull ArrayList<@NotNull RemotePlugin> plugins) {
+		HashMap<String, RemotePlugin> byName = new HashMap<>();
+		for(RemotePlugin plugin : plugins) {
+			byName.put(plugin.getName(), plugin);
+		}
+		for(LocalPlugin plugin : getInstalledPlugins()) {
+			if(!byName.containsKey(plugin.getName())) {
+				RemotePlugin stub = new RemotePlugin(plugin.getName(), plugin.getVersion());
+				plugins.add(stub);
+				byName.put(stub.getName(), stub);
+			}
+		}
+		PluginIndex.Diff diff = PluginIndex.Diff.compute(remotePlugins.getPlugins(), plugins);
+		for(RemotePlugin plugin : diff.getChanged()) {
+			plugin.copyFrom(byName.get(plugin.getName()));
+		}
+		//keeping the existing instances, so their state is preserved
+		ArrayList<RemotePlugin> merged = new ArrayList<>(plugins.size());
+		for(RemotePlugin plugin : plugins) {
+			RemotePlugin existing = remotePlugins.get(plugin.getName());
+			merged.add(existing == null ? plugin : existing);
+		}
+		remotePlugins.setAll(merged);
+		for(RemotePlugin plugin : diff.getRemoved()) {
+			searchIndex.remove(plugin);
+		}
+		for(RemotePlugin plugin : diff.getAdded()) {
+			searchIndex.add(plugin);
+			plugin.updateInstalledStatus();
+		}
+		for(RemotePlugin plugin : diff.getChanged()) {
+			searchIndex.add(plugin);
+			plugin.updateInstalledStatus();
+		}
+		return diff;
+	}
+
+	/**
+	 * Replaces the remote plugin list with the plugins of the index.
+	 *
+	 * @param index The plugins in the index
+	 * @return The changes to the remote plugin list
+	 * @see #apply(ArrayList)
+	 * @since 1.3.0
+	 */
+	private @NotNull PluginIndex.Diff applyIndex(@NotNull RemotePlugin @NotNull [] index) {
+		indexLoaded = true;
+		return apply(new ArrayList<>(Arrays.asList(index)));
+	}
+
+	/**
+	 * Gets the catalog of installed plugins, filling it from the saved list on first use.
+	 *
+	 * @return {@link #installed}
+	 * @since 1.3.0
+	 */
+	private @NotNull PluginCatalog<@NotNull LocalPlugin> getInstalledCatalog() {
+		if(!installedLoaded) {
+			synchronized(installed) {
+				if(!installedLoaded) {
+					installed.setAll(installedPlugins);
+					installedLoaded = true;
+				}
+			}
+		}
+		return installed;
 	}
 
 	/**
 	 * Installs/uninstalls the specified plugin to/from the game's plugin directory. Doesn't delete or download plugins. This only changes how the game sees installed plugins, and doesn't affect the internal mechanics of the launcher.
 	 *
-	 * @param plugin  The plugin to install/uninstall
-	 * @param install True to install the plugin, false to uninstall
+	 * @param plugin          The plugin to install/uninstall
+	 * @param configDirectory The config directory of the game
+	 * @param install         True to install the plugin, false to uninstall
+	 * @return True if the plugin was installed/uninstalled, false if it was already in the wanted state
 	 * @since 1.1.1
 	 */
-	private void managePlugin(@NotNull LocalPlugin plugin, boolean install) {
-		if(install) {
-			plugin.symlinkPlugin();
-			log.debug(localize("log.instance.plugin.install", plugin.getName(), plugin.getVersion()));
-		} else {
-			if(plugin.getSymlink().exists() && Files.isSymbolicLink(plugin.getSymlink().toPath())) {
-				FileUtils.deleteQuietly(plugin.getSymlink());
-				log.debug(localize("log.instance.plugin.uninstall", plugin.getName(), plugin.getVersion()));
-			}
+	private boolean managePlugin(@NotNull LocalPlugin plugin, @NotNull File configDirectory, boolean install) {
+		if(!plugin.setLinked(configDirectory, install)) {
+			return false;
 		}
+		log.debug(localize(install ? "log.instance.plugin.install" : "log.instance.plugin.uninstall", plugin.getName(), plugin.getVersion()));
+		return true;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A full-text index of plugins, used for searching the plugin list as the user types. The texts of every plugin are split into lowercase words, and each word points to the plugins containing it.
+ * <p>A query matches the plugins that contain every word of the query, either as a whole word or as the beginning of one. Since the words are kept in order, the words starting with a prefix form a single range of the index. Every plugin has a small numeric id, and the plugins of a word are stored as a set of ids, so combining the matches of several words only takes a few bitwise operations. The index is updated one plugin at a time, so changes to the plugin list don't require rebuilding it.</p>
+ *
+ * @param <P> The type of the plugins
+ * @since 1.3.0
+ */
+public class PluginSearchIndex<P> {
+	/**
+	 * The characters separating words.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	/**
+	 * The indexed plugins by their id. Removed plugins leave an empty slot, which is reused by the next added plugin.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull ArrayList<@Nullable P> byId = new ArrayList<>();
+	/**
+	 * The id and words of each indexed plugin, as they were when the plugin was indexed.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull IdentityHashMap<@NotNull P, @NotNull Entry> entries = new IdentityHashMap<>();
+	/**
+	 * The unused ids.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull BitSet free = new BitSet();
+	/**
+	 * The ids of the plugins containing each word.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull TreeMap<@NotNull String, @NotNull BitSet> postings = new TreeMap<>();
+	/**
+	 * Gets the searchable texts of a plugin. Missing texts are null.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull Function<@NotNull P, @NotNull Collection<String>> texts;
+
+	/**
+	 * Creates a new, empty index.
+	 *
+	 * @param texts Gets the searchable texts of a plugin, such as its name and description; missing texts can be null
+	 * @since 1.3.0
+	 */
+	public PluginSearchIndex(@NotNull Function<@NotNull P, @NotNull Collection<String>> texts) {
+		this.texts = texts;
+	}
+
+	/**
+	 * Splits a text into lowercase words.
+	 *
+	 * @param text The text to split
+	 * @return The distinct words of the text
+	 * @since 1.3.0
+	 */
+	public static @NotNull Set<@NotNull String> tokenize(@NotNull String text) {
+		Set<String> tokens = new HashSet<>();
+		for(String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+			if(!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Adds a plugin to the index. If the plugin is already indexed, it is re-indexed with its current texts.
+	 *
+	 * @param plugin The plugin to add
+	 * @since 1.3.0
+	 */
+	public synchronized void add(@NotNull P plugin) {
+		remove(plugin);
+		Set<String> tokens = new HashSet<>();
+		for(String text : texts.apply(plugin)) {
+			if(text != null) {
+				tokens.addAll(tokenize(text));
+			}
+		}
+		int id = free.nextSetBit(0);
+		if(id < 0) {
+			id = byId.size();
+			byId.add(plugin);
+		} else {
+			free.clear(id);
+			byId.set(id, plugin);
+		}
+		entries.put(plugin, new Entry(id, tokens));
+		for(String token : tokens) {
+			postings.computeIfAbsent(token, t -> new BitSet()).set(id);
+		}
+	}
+
+	/**
+	 * Filters the plugins by a query, keeping their order. Plugins that are not indexed never match, unless the query is blank.
+	 *
+	 * @param plugins The plugins to filter
+	 * @param query   The search query
+	 * @return The matching plugins, or all plugins if the query is blank
+	 * @since 1.3.0
+	 */
+	public synchronized @NotNull List<@NotNull P> filter(@NotNull List<@NotNull P> plugins, @NotNull String query) {
+		if(query.isBlank()) {
+			return plugins;
+		}
+		BitSet matches = match(query);
+		ArrayList<P> filtered = new ArrayList<>(Math.min(plugins.size(), matches.cardinality()));
+		for(P plugin : plugins) {
+			Entry entry = entries.get(plugin);
+			if(entry != null && matches.get(entry.id)) {
+				filtered.add(plugin);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Removes a plugin from the index. Has no effect if the plugin is not indexed.
+	 *
+	 * @param plugin The plugin to remove
+	 * @since 1.3.0
+	 */
+	public synchronized void remove(@NotNull P plugin) {
+		Entry entry = entries.remove(plugin);
+		if(entry == null) {
+			return;
+		}
+		for(String token : entry.words) {
+			BitSet ids = postings.get(token);
+			ids.clear(entry.id);
+			if(ids.isEmpty()) {
+				postings.remove(token);
+			}
+		}
+		byId.set(entry.id, null);
+		free.set(entry.id);
+	}
+
+	/**
+	 * Finds the plugins matching a query. Every word of the query must be the beginning of a word of the plugin.
+	 *
+	 * @param query The search query
+	 * @return The matching plugins, in no particular order; every indexed plugin if the query has no words
+	 * @since 1.3.0
+	 */
+	public synchronized @NotNull Set<@NotNull P> search(@NotNull String query) {
+		Set<P> result = Collections.newSetFromMap(new IdentityHashMap<>());
+		BitSet matches = match(query);
+		for(int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+			result.add(byId.get(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of indexed plugins.
+	 *
+	 * @return The number of plugins
+	 * @since 1.3.0
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Finds the ids of the plugins matching a query.
+	 *
+	 * @param query The search query
+	 * @return The ids of the matching plugins; every id in use if the query has no words
+	 * @since 1.3.0
+	 */
+	private @NotNull BitSet match(@NotNull String query) {
+		BitSet result = null;
+		for(String token : tokenize(query)) {
+			BitSet matches = new BitSet(byId.size());
+			for(BitSet ids : postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+				matches.or(ids);
+			}
+			if(result == null) {
+				result = matches;
+			} else {
+				result.and(matches);
+			}
+			if(result.isEmpty()) {
+				return result;
+			}
+		}
+		if(result == null) {
+			result = new BitSet(byId.size());
+			result.set(0, byId.size());
+			result.andNot(free);
+		}
+		return result;
+	}
+
+	/**
+	 * The indexed state of a plugin.
+	 *
+	 * @param id    The id of the plugin
+	 * @param words The words of the plugin
+	 * @since 1.3.0
+	 */
+	private record Entry(int id, @NotNull Set<@NotNull String> words) {
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.utils.HttpUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Runs plugin updates on a fixed number of threads. Jobs are started in the order of their priority, but a job is skipped while too many jobs are running against the same host, so a slow host doesn't occupy every thread while other hosts are idle.
+ * <p>The progress and the download throughput are logged after every finished job. Once {@link #cancel() cancelled}, the waiting jobs are dropped and the running ones are interrupted.</p>
+ *
+ * @since 1.3.0
+ */
+public class PluginUpdateExecutor {
+	/**
+	 * The maximum number of jobs running against the same host.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int HOST_THREADS = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.update.threads.host")).intValue();
+	/**
+	 * The maximum number of jobs running at once.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int THREADS = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.update.threads")).intValue();
+	private static final Logger log = LoggerFactory.getLogger(PluginUpdateExecutor.class);
+	/**
+	 * The number of running jobs, by host.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull HashMap<@NotNull String, @NotNull Integer> busyHosts = new HashMap<>();
+	/**
+	 * The jobs waiting to be started, ordered by priority.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull ArrayList<@NotNull Job> pending = new ArrayList<>();
+	/**
+	 * The threads running the jobs.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull ArrayList<@NotNull Thread> workers = new ArrayList<>();
+	/**
+	 * Stores whether the executor was cancelled.
+	 *
+	 * @since 1.3.0
+	 */
+	private boolean cancelled = false;
+	/**
+	 * The number of finished jobs.
+	 *
+	 * @since 1.3.0
+	 */
+	private int finished = 0;
+	/**
+	 * The number of bytes {@link HttpUtils#getReceivedBytes() received} before the first job started.
+	 *
+	 * @since 1.3.0
+	 */
+	private long startBytes;
+	/**
+	 * The time the first job started at, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private long startTime;
+	/**
+	 * The number of submitted jobs.
+	 *
+	 * @since 1.3.0
+	 */
+	private int total = 0;
+
+	/**
+	 * Stops the executor. Waiting jobs are never started, and running jobs are interrupted.
+	 *
+	 * @since 1.3.0
+	 */
+	public synchronized void cancel() {
+		if(cancelled) {
+			return;
+		}
+		cancelled = true;
+		log.info(localize("log.plugin.update.cancel", pending.size()));
+		pending.clear();
+		for(Thread worker : workers) {
+			worker.interrupt();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Checks whether the executor was cancelled.
+	 *
+	 * @return True if cancelled
+	 * @since 1.3.0
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Runs the submitted jobs, and waits until all of them have finished.
+	 *
+	 * @throws InterruptedException If interrupted while waiting; the executor is cancelled
+	 * @since 1.3.0
+	 */
+	public void run() throws InterruptedException {
+		List<Thread> started;
+		synchronized(this) {
+			startBytes = HttpUtils.getReceivedBytes();
+			startTime = System.currentTimeMillis();
+			for(int i = 0; i < Math.min(THREADS, pending.size()); i++) {
+				workers.add(new Thread(() -> {
+					Main.configureThread(Thread.currentThread(), false);
+					for(Job job = take(); job != null; job = take()) {
+						try {
+							job.task.run();
+						} finally {
+							finish(job);
+						}
+					}
+				}, "Plugin Updater Thread"));
+			}
+			started = List.copyOf(workers);
+		}
+		started.forEach(Thread::start);
+		try {
+			for(Thread worker : started) {
+				worker.join();
+			}
+		} catch(InterruptedException e) {
+			cancel();
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a job to the executor. Jobs with a higher priority are started first; jobs with the same priority are started in the order they were submitted. Must be called before {@link #run()}.
+	 *
+	 * @param name     The name of the updated plugin
+	 * @param host     The host the job downloads from, or null if unknown
+	 * @param priority The priority of the job
+	 * @param task     The job
+	 * @since 1.3.0
+	 */
+	public synchronized void submit(@NotNull String name, @Nullable String host, long priority, @NotNull Runnable task) {
+		pending.add(new Job(name, String.valueOf(host), priority, total++, task));
+		pending.sort(Comparator.comparingLong(Job::priority).reversed().thenComparingLong(Job::order));
+	}
+
+	/**
+	 * Marks a job as finished, and logs the progress of the executor.
+	 *
+	 * @param job The finished job
+	 * @since 1.3.0
+	 */
+	private synchronized void finish(@NotNull Job job) {
+		busyHosts.merge(job.host, -1, Integer::sum);
+		finished++;
+		long bytes = HttpUtils.getReceivedBytes() - startBytes;
+		long time = Math.max(1, System.currentTimeMillis() - startTime);
+		log.info(localize("log.plugin.update.progress", finished, total, job.name, FileUtils.byteCountToDisplaySize(bytes), FileUtils.byteCountToDisplaySize(bytes * 1000 / time)));
+		notifyAll();
+	}
+
+	/**
+	 * Waits for the next job that can be started. A job can be started if its host is running fewer than the maximum number of jobs.
+	 *
+	 * @return The job, or null if there are no jobs left or the executor was cancelled
+	 * @since 1.3.0
+	 */
+	private synchronized @Nullable Job take() {
+		while(!cancelled && !pending.isEmpty()) {
+			for(int i = 0; i < pending.size(); i++) {
+				Job job = pending.get(i);
+				if(busyHosts.getOrDefault(job.host, 0) < HOST_THREADS) {
+					pending.remove(i);
+					busyHosts.merge(job.host, 1, Integer::sum);
+					return job;
+				}
+			}
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A plugin update waiting to be started.
+	 *
+	 * @param name     The name of the updated plugin
+	 * @param host     The host the job downloads from
+	 * @param priority The priority of the job
+	 * @param order    The number of jobs submitted before this job
+	 * @param task     The job
+	 * @since 1.3.0
+	 */
+	private record Job(@NotNull String name, @NotNull String host, long priority, long order, @NotNull Runnable task) {
+	}
+}
@@ -15,16 +15,34 @@ import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.utils.MirrorResolver;
 import tibetiroka.esmanager.utils.Statistics.GlobalStatistics;
 import tibetiroka.esmanager.utils.UpdateProgressTracker;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Objects;
 
+import static tibetiroka.esmanager.config.Launcher.localize;
+
 /**
  * Representation of an entry in the <a href="https://raw.githubusercontent.com/endless-sky/endless-sky-plugins/master/generated/plugins.json">Endless Sky Plugin Index</a>. Remote plugins are also created for local plugins that are no longer present in the remote - in this case, the instance will have otherwise non-null fields (such as {@link #autoupdate} with null values. Only the {@link #name} and {@link #version} fields are guaranteed to be non-null.
  * <p>For more information about the plugin index's specification, see the <a href="https://github.com/endless-sky/rfcs/blob/main/rfcs/0001-plugin-index.md">RFC</a>.</p>
@@ -32,6 +50,19 @@ import java.util.Objects;
  * @since 0.0.1
  */
 public class RemotePlugin {
+	/**
+	 * The local reference the commit of the plugin is fetched into, in repositories of plugins that are {@link #updateFromRepository(LocalPlugin, File, File) maintained with git}.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String FETCHED_REF = "refs/esmanager/plugin";
+	/**
+	 * The suffix of the directories used for staging new versions of plugins. Staging directories are created next to the {@link LocalPlugin#getInstallLocation() install location} of the plugin, so they can be moved into place atomically.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String STAGING_SUFFIX = ".staging";
+	private static final Logger log = LoggerFactory.getLogger(RemotePlugin.class);
 	/**
 	 * Stores whether this plugin is being updated.
 	 *
@@ -139,6 +170,58 @@ public class RemotePlugin {
 		this.version = version;
 	}
 
+	/**
+	 * Checks out the specified commit of a plugin repository, fetching it with a depth of one. Not every server serves commits that are not the tip of a reference; if the fetch is refused, the tip of the branch is checked out instead. The branch may have moved past the commit, so the checked out commit is returned, and a mismatch is logged.
+	 *
+	 * @param git        The local repository of the plugin
+	 * @param repository The location of the remote repository
+	 * @param name       The name of the plugin, used for logging
+	 * @param version    The hash of the commit to check out; if it is not a full hash, the branch is used
+	 * @param branch     The remote reference of the branch containing the commit
+	 * @return The checked out commit
+	 * @throws GitAPIException If neither the commit nor the branch could be fetched or checked out
+	 * @throws IOException     If the fetched commit could not be resolved
+	 * @since 1.3.0
+	 */
+	static @NotNull ObjectId checkoutCommit(@NotNull Git git, @NotNull String repository, @NotNull String name, @NotNull String version, @NotNull String branch) throws GitAPIException, IOException {
+		if(!ObjectId.isId(version)) {
+			return checkoutFetched(git, repository, branch);
+		}
+		ObjectId checkedOut;
+		try {
+			checkedOut = checkoutFetched(git, repository, version);
+		} catch(GitAPIException e) {
+			log.info(localize("log.plugin.git.commit.refused", name, version, branch, e.getMessage()));
+			checkedOut = checkoutFetched(git, repository, branch);
+		}
+		if(!checkedOut.getName().equals(version)) {
+			log.warn(localize("log.plugin.git.commit.mismatch", name, version, checkedOut.getName()));
+		}
+		return checkedOut;
+	}
+
+	/**
+	 * Fetches the specified reference of a plugin repository with a depth of one, and resets the working tree to the fetched commit. Files deleted from the plugin are removed, while files added by the user are kept.
+	 *
+	 * @param git        The local repository of the plugin
+	 * @param repository The location of the remote repository
+	 * @param ref        The remote reference or commit hash to fetch
+	 * @return The checked out commit
+	 * @throws GitAPIException If the reference could not be fetched or checked out
+	 * @throws IOException     If the fetched commit could not be resolved
+	 * @since 1.3.0
+	 */
+	private static @NotNull ObjectId checkoutFetched(@NotNull Git git, @NotNull String repository, @NotNull String ref) throws GitAPIException, IOException {
+		MirrorResolver.withFailover(repository, false, remote -> git.fetch().setRemote(remote).setRefSpecs(new RefSpec("+" + ref + ":" + FETCHED_REF)).setDepth(1).setTagOpt(TagOpt.NO_TAGS).call());
+		//commits fetched by their hash don't update the destination reference
+		ObjectId commit = git.getRepository().resolve((ObjectId.isId(ref) ? ref : FETCHED_REF) + "^{commit}");
+		if(commit == null) {
+			throw new IOException(localize("log.plugin.git.ref.missing", ref));
+		}
+		git.reset().setMode(ResetType.HARD).setRef(commit.getName()).call();
+		return commit;
+	}
+
 	/**
 	 * Gets whether this plugin is being updated.
 	 *
@@ -269,7 +352,7 @@ public class RemotePlugin {
 	}
 
 	/**
-	 * Installs this plugin. Fails if the plugin is already installed.
+	 * Installs this plugin, and registers it as installed. Fails if the plugin is already installed.
 	 *
 	 * @return The installed plugin
 	 * @since 0.0.1
@@ -279,7 +362,8 @@ public class RemotePlugin {
 			throw new IllegalStateException("Plugin already exists!");
 		}
 		LocalPlugin local = new LocalPlugin(name);
-		download(local);
+		installVersion(local);
+		PluginManager.getManager().addInstalledPlugin(local);
 		GlobalStatistics.getGlobalStatistics().advancePluginDownloadCounter();
 		AppConfiguration.savePluginConfiguration();
 		return local;
@@ -307,7 +391,7 @@ public class RemotePlugin {
 	}
 
 	/**
-	 * Updates the locally installed version of this plugin. This method assumes the installed version is out of date.
+	 * Updates the locally installed version of this plugin. This method assumes the installed version is out of date. The installed version stays usable until the update is complete, and is kept for {@link LocalPlugin#rollback() rollback} afterwards.
 	 *
 	 * @since 0.0.1
 	 */
@@ -316,13 +400,40 @@ public class RemotePlugin {
 		if(local == null) {
 			throw new IllegalStateException("Plugin doesn't exist!");
 		}
-		FileUtils.deleteDirectory(local.getInstallLocation());
-		local.getSymlink().delete();
-		local.getInstallLocation().mkdirs();
-		download(local);
+		installVersion(local);
 		AppConfiguration.savePluginConfiguration();
 	}
 
+	/**
+	 * Replaces the index entry of this plugin with the entry of another instance of the same plugin. The download state of this instance is kept, so it can be updated while it is in use.
+	 *
+	 * @param other The plugin with the new entry
+	 * @since 1.3.0
+	 */
+	protected void copyFrom(@NotNull RemotePlugin other) {
+		authors = other.authors;
+		autoupdate = other.autoupdate;
+		description = other.description;
+		homepage = other.homepage;
+		iconUrl = other.iconUrl;
+		license = other.license;
+		shortDescription = other.shortDescription;
+		url = other.url;
+		version = other.version;
+	}
+
+	/**
+	 * Checks whether another instance of this plugin has the same index entry.
+	 *
+	 * @param other The other plugin
+	 * @return True if all fields of the entries are the same
+	 * @since 1.3.0
+	 */
+	protected boolean isSameEntry(@NotNull RemotePlugin other) {
+		//URL#equals resolves the host names, so the addresses are compared as text
+		return Objects.equals(name, other.name) && Objects.equals(version, other.version) && Objects.equals(authors, other.authors) && Objects.equals(autoupdate, other.autoupdate) && Objects.equals(description, other.description) && Objects.equals(Objects.toString(homepage, null), Objects.toString(other.homepage, null)) && Objects.equals(Objects.toString(iconUrl, null), Objects.toString(other.iconUrl, null)) && Objects.equals(license, other.license) && Objects.equals(shortDescription, other.shortDescription) && Objects.equals(Objects.toString(url, null), Objects.toString(other.url, null));
+	}
+
 	/**
 	 * Checks whether this plugin is installed, and updates {@link #installed} accordingly.
 	 *
@@ -333,22 +444,147 @@ public class RemotePlugin {
 	}
 
 	/**
-	 * Downloads this remote plugin into the installation directory of the specified local plugin. The target directory should be empty.
+	 * Gets the location of the git repository of this plugin, from its {@link #autoupdate} entry. The {@link PluginAutoUpdate#getUpdate_url() update URL} is used if present, otherwise the {@link #homepage}. GitHub locations are trimmed to the repository, so links to its pages can be used as well.
+	 *
+	 * @return The location of the repository, or null if the plugin is not distributed with git
+	 * @since 1.3.0
+	 */
+	private @Nullable String getRepositoryUrl() {
+		if(autoupdate == null || autoupdate.getType() == null) {
+			return null;
+		}
+		String location = autoupdate.getUpdate_url() != null ? autoupdate.getUpdate_url() : homepage == null ? null : homepage.toString();
+		if(location == null) {
+			return null;
+		}
+		try {
+			URI uri = new URI(location);
+			if("github.com".equalsIgnoreCase(uri.getHost())) {
+				String[] path = uri.getPath().split("/");
+				if(path.length < 3) {
+					return null;
+				}
+				return "https://github.com/" + path[1] + "/" + path[2];
+			}
+			return uri.isAbsolute() ? location : null;
+		} catch(URISyntaxException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Installs the {@link #version} of this plugin for the specified local plugin, and switches the plugin to it. The files are prepared in a staging directory, which is moved into the {@link LocalPlugin#getVersionLocation(String) directory of the version} once complete. The symbolic link of the plugin is only switched afterwards, so the game always sees a complete version of the plugin, even if the download fails. Versions that are still kept for rollback are switched to without downloading.
+	 * <p>The files are taken from the git repository of the plugin if possible, then from the changed entries of the zip, and finally from the full zip. The installed files are always recorded as the requested {@link #version}, even if git had to fall back to a different commit, so the plugin isn't reported as outdated until the index changes.</p>
 	 *
 	 * @param local The local plugin
 	 * @throws IOException If the plugin could not be installed
-	 * @since 0.0.1
+	 * @since 1.3.0
 	 */
-	private void download(@NotNull LocalPlugin local) throws IOException {
+	private void installVersion(@NotNull LocalPlugin local) throws IOException {
+		File target = local.getVersionLocation(version);
 		Platform.runLater(() -> downloadInProgress.set(true));
+		try {
+			if(target.isDirectory()) {
+				log.info(localize("log.plugin.version.reuse", name, version));
+				local.activateVersion(version);
+			} else {
+				File previous = local.getCurrentLocation();
+				File staging = new File(local.getInstallLocation().getParentFile(), name + STAGING_SUFFIX);
+				FileUtils.deleteDirectory(staging);
+				try {
+					if(!updateFromRepository(local, staging, previous) && !updateIncrementally(local, staging, previous)) {
+						FileUtils.deleteDirectory(staging);
+						Files.deleteIfExists(local.getManifestFile().toPath());
+						progressTracker.reset();
+						tibetiroka.esmanager.utils.FileUtils.unpackZipTracked(url, staging, progressTracker);
+					}
+					target.getParentFile().mkdirs();
+					try {
+						Files.move(staging.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					} catch(AtomicMoveNotSupportedException e) {
+						Files.move(staging.toPath(), target.toPath());
+					}
+					local.activateVersion(version);
+				} finally {
+					FileUtils.deleteQuietly(staging);
+				}
+			}
+		} finally {
+			Platform.runLater(() -> downloadInProgress.set(false));
+		}
+		Platform.runLater(() -> installed.set(true));
+	}
+
+	/**
+	 * Prepares the files of the specified local plugin from the git repository of the plugin, if its {@link #autoupdate} entry declares one. The plugin is kept as a shallow clone with only the installed commit. If the previous version is a clone, it is linked into the staging directory, so an update only fetches the objects that changed since the installed commit. Git replaces the files it changes instead of modifying them, so the previous version is left intact.
+	 * <p>Commit-based plugins are updated to the commit of their {@link #version}; see {@link #checkoutCommit(Git, String, String, String, String)}. Tag-based plugins are updated to the tag of their {@link #version}.</p>
+	 *
+	 * @param local    The local plugin
+	 * @param staging  The directory to prepare the new version in; must not exist
+	 * @param previous The directory of the installed version, or null if not installed
+	 * @return True if the staging directory was prepared, false if the plugin is not distributed with git or the repository could not be used, and the zip should be downloaded instead
+	 * @since 1.3.0
+	 */
+	private boolean updateFromRepository(@NotNull LocalPlugin local, @NotNull File staging, @Nullable File previous) {
+		String repository = getRepositoryUrl();
+		if(repository == null) {
+			return false;
+		}
+		boolean commit = autoupdate.getType() != PluginAutoUpdate.UpdateType.tag;
+		String branch = autoupdate.getBranch() == null ? Constants.HEAD : Constants.R_HEADS + autoupdate.getBranch();
+		String ref = !commit ? Constants.R_TAGS + version : ObjectId.isId(version) ? version : branch;
+		File[] files = previous == null ? null : previous.listFiles();
+		boolean cloned = files != null && files.length == 1 && new File(files[0], Constants.DOT_GIT).isDirectory();
 		progressTracker.reset();
-		tibetiroka.esmanager.utils.FileUtils.unpackZipTracked(url, local.getInstallLocation(), progressTracker);
-		local.symlinkPlugin();
-		local.setVersion(version);
-		Platform.runLater(() -> {
-			downloadInProgress.set(false);
-			installed.set(true);
-		});
+		progressTracker.setProgress(-1);
+		try {
+			File directory = new File(staging, cloned ? files[0].getName() : name);
+			if(cloned) {
+				log.info(localize("log.plugin.git.fetch", name, repository, ref));
+				tibetiroka.esmanager.utils.FileUtils.linkDirectory(files[0], directory);
+			} else {
+				log.info(localize("log.plugin.git.clone", name, repository, ref));
+			}
+			try(Git git = cloned ? Git.open(directory) : Git.init().setDirectory(directory).call()) {
+				if(commit) {
+					checkoutCommit(git, repository, name, version, branch);
+				} else {
+					checkoutFetched(git, repository, ref);
+				}
+			}
+			Files.deleteIfExists(local.getManifestFile().toPath());
+		} catch(IOException | GitAPIException e) {
+			log.warn(localize("log.plugin.git.fail", name, e.getMessage()));
+			FileUtils.deleteQuietly(staging);
+			return false;
+		}
+		progressTracker.setProgress(1);
+		return true;
+	}
+
+	/**
+	 * Prepares the files of the specified local plugin by only downloading the zip entries that have changed. The files of the previous version are linked into the staging directory, and only the changed entries are fetched using HTTP range requests, so the previous version is left intact; see {@link tibetiroka.esmanager.utils.FileUtils#unpackZipRemote(URL, File, File, File, File, UpdateProgressTracker)}.
+	 *
+	 * @param local    The local plugin
+	 * @param staging  The directory to prepare the new version in; must not exist
+	 * @param previous The directory of the installed version, or null if not installed
+	 * @return True if the staging directory was prepared, false if there is no previous version or the remote doesn't support partial downloads, and the full zip should be downloaded instead
+	 * @since 1.3.0
+	 */
+	private boolean updateIncrementally(@NotNull LocalPlugin local, @NotNull File staging, @Nullable File previous) {
+		File[] files = previous == null ? null : previous.listFiles();
+		if(url == null || files == null || files.length == 0) {
+			return false;
+		}
+		progressTracker.reset();
+		try {
+			tibetiroka.esmanager.utils.FileUtils.unpackZipRemote(url, staging, previous, local.getManifestFile(), local.getVersionLocation(version), progressTracker);
+		} catch(IOException e) {
+			log.warn(localize("log.plugin.update.partial.fail", name, e.getMessage()));
+			FileUtils.deleteQuietly(staging);
+			return false;
+		}
+		return true;
 	}
 
 	/**
@@ -393,6 +629,17 @@ public class RemotePlugin {
 		@NotNull
 		private String url;
 
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) {
+				return true;
+			}
+			if(!(o instanceof PluginAutoUpdate that)) {
+				return false;
+			}
+			return Objects.equals(branch, that.branch) && Objects.equals(iconUrl, that.iconUrl) && type == that.type && Objects.equals(update_url, that.update_url) && Objects.equals(url, that.url);
+		}
+
 		/**
 		 * Gets the name of the branch the commits are queried from. Only used with {@link UpdateType#commit}.
 		 *
@@ -443,6 +690,11 @@ public class RemotePlugin {
 			return url;
 		}
 
+		@Override
+		public int hashCode() {
+			return Objects.hash(branch, iconUrl, type, update_url, url);
+		}
+
 		/**
 		 * The supported methods for distributing plugin updates.
 		 *
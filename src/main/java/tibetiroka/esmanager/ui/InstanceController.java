@@ -10,6 +10,9 @@
 
 package tibetiroka.esmanager.ui;
 
+import javafx.application.Platform;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.binding.Bindings;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -21,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.instance.Instance;
+import tibetiroka.esmanager.instance.Instance.ConfigPolicy;
 import tibetiroka.esmanager.instance.InstanceUtils;
 import tibetiroka.esmanager.instance.SessionHelper;
 import tibetiroka.esmanager.instance.SystemUtils;
@@ -32,6 +36,12 @@ import static tibetiroka.esmanager.config.Launcher.localize;
 public class InstanceController {
 	private static final Logger log = LoggerFactory.getLogger(InstanceController.class);
 	@FXML
+	protected RadioMenuItem configIsolated;
+	@FXML
+	protected RadioMenuItem configIsolatedPlugins;
+	@FXML
+	protected RadioMenuItem configShared;
+	@FXML
 	public ContextMenu contextMenu;
 	@FXML
 	protected HBox container;
@@ -50,6 +60,17 @@ public class InstanceController {
 	@FXML
 	protected BorderPane warningNode;
 	private Instance instance;
+	private BooleanBinding playBlocked;
+
+	@FXML
+	public void changeConfigPolicy() {
+		ConfigPolicy policy = configIsolated.isSelected() ? ConfigPolicy.ISOLATED : configIsolatedPlugins.isSelected() ? ConfigPolicy.ISOLATED_PLUGINS : ConfigPolicy.SHARED;
+		new Thread(() -> {
+			Main.configureThread(Thread.currentThread(), false);
+			instance.setConfigPolicy(policy);
+			Platform.runLater(playBlocked::invalidate);
+		}, "Config policy thread for " + instance.getPublicName()).start();
+	}
 
 	public void delete() {
 		//Removing this visual element will cause the instance.remove() method to be called.
@@ -99,9 +120,19 @@ public class InstanceController {
 		progressIndicator.visibleProperty().bind(instance.getTracker().hasUpdatedProperty());
 		progressIndicator.progressProperty().bind(instance.getTracker().updateProgressProperty());
 		LAUNCHER.disableLocalization(progressIndicator);
-		playButton.disableProperty().bind(SessionHelper.ANY_RUNNING);
+		playBlocked = SessionHelper.createBlockedBinding(instance);
+		playButton.disableProperty().bind(playBlocked);
+		BooleanBinding running = Bindings.createBooleanBinding(() -> SessionHelper.RUNNING_INSTANCES.contains(instance), SessionHelper.RUNNING_INSTANCES);
+		configShared.disableProperty().bind(running);
+		configIsolatedPlugins.disableProperty().bind(running);
+		configIsolated.disableProperty().bind(running);
 		MainApplication.setContextMenu(container, contextMenu);
 		sourceEdit.setDisable(!instance.getSource().getClass().isAnnotationPresent(EditableSource.class));
+		switch(instance.getConfigPolicy()) {
+			case SHARED -> configShared.setSelected(true);
+			case ISOLATED_PLUGINS -> configIsolatedPlugins.setSelected(true);
+			case ISOLATED -> configIsolated.setSelected(true);
+		}
 	}
 
 	@FXML
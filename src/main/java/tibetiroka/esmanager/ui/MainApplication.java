@@ -41,9 +41,14 @@ import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.config.Launcher;
 import tibetiroka.esmanager.instance.Instance;
 import tibetiroka.esmanager.instance.InstanceUtils;
+import tibetiroka.esmanager.instance.LocalSourceWatcher;
+import tibetiroka.esmanager.instance.PrefetchService;
 import tibetiroka.esmanager.launcher.SelfUpdater;
 import tibetiroka.esmanager.plugin.PluginManager;
 import tibetiroka.esmanager.utils.FileUtils;
+import tibetiroka.esmanager.utils.NetworkMonitor;
+import tibetiroka.esmanager.utils.PeerServer;
+import tibetiroka.esmanager.utils.ResourceGovernor;
 import tibetiroka.esmanager.utils.Statistics.GlobalStatistics;
 
 import java.io.File;
@@ -259,8 +264,9 @@ public class MainApplication extends Application {
 			primaryStage.setMinWidth(200);
 			primaryStage.setOnCloseRequest(event -> {
 				event.consume();
-				//prevent exiting if updates are in progress
+				//prevent exiting if updates are in progress; plugin updates are cancelled, so the next attempt can exit
 				if(PluginManager.updateInProgressProperty().get()) {
+					PluginManager.cancelUpdates();
 					return;
 				}
 				for(Instance instance : Instance.getInstances()) {
@@ -278,7 +284,7 @@ public class MainApplication extends Application {
 			//
 			primaryStage.show();
 			//
-			MainController.getController().getPluginListBox().setDisable(true);
+			MainController.getController().getPluginList().setDisable(true);
 			//loading data
 			AppConfiguration.discoverInstances();
 			AppConfiguration.loadPluginConfiguration();
@@ -293,10 +299,34 @@ public class MainApplication extends Application {
 			GitSettingsController.bind();
 			AppConfiguration.loadAudioPlayer();
 			AudioSettingsController.bind();
+			if(LAUNCHER.watchLocalSourcesProperty().get()) {
+				LocalSourceWatcher.start();
+			}
+			ResourceGovernor.init();
+			PrefetchService.start();
+			try {
+				PeerServer.start();
+			} catch(IOException e) {
+				log.warn(localize("log.peer.server.fail", e.getMessage()), e);
+			}
+			LAUNCHER.watchLocalSourcesProperty().addListener((observable, oldValue, newValue) -> {
+				if(newValue) {
+					LocalSourceWatcher.start();
+				} else {
+					LocalSourceWatcher.stop();
+				}
+			});
+			LAUNCHER.offlineModeProperty().addListener((observable, oldValue, newValue) -> {
+				if(!newValue) {
+					new Thread(() -> {
+						Main.configureThread(Thread.currentThread(), false);
+						NetworkMonitor.probe();
+					}, "Network Probe Thread").start();
+				}
+			});
 			//background tasks: plugin loading, audio, updating
 			//Launcher updates are always done before instance updates to prevent messing up the launcher in the middle of an instance update
-			new Thread(() -> {
-				Main.configureThread(Thread.currentThread(), false);
+			NetworkMonitor.whenOnline("Launcher Updater Thread", () -> {
 				try {
 					if(SelfUpdater.areUpdatesSupported()) {
 						if(SelfUpdater.needsUpdate() && createDialog("launcher.update.ask", true)) {
@@ -318,6 +348,11 @@ public class MainApplication extends Application {
 					Platform.runLater(() -> {
 						for(Instance instance : Instance.getInstances()) {
 							new Thread(() -> {
+								try {
+									ResourceGovernor.awaitIdle();
+								} catch(InterruptedException e) {
+									return;
+								}
 								log.info(localize("log.launcher.autoupdate.instance.begin", instance.getPublicName()));
 								InstanceUtils.update(instance);
 								log.info(localize("log.launcher.autoupdate.instance.end", instance.getPublicName()));
@@ -325,7 +360,7 @@ public class MainApplication extends Application {
 						}
 					});
 				}
-			}, "Launcher Updater Thread").start();
+			});
 			Platform.runLater(AudioPlayer::autoPlay);
 			new Thread(() -> {
 				Main.configureThread(Thread.currentThread(), false);
@@ -334,10 +369,10 @@ public class MainApplication extends Application {
 				} catch(Exception e) {
 					log.warn(localize("plugin.discover.fail", e.getMessage()), e);
 				}
+				Platform.runLater(() -> MainController.getController().getPluginList().setDisable(false));
 				if(PluginManager.getManager().getAutoUpdatePlugins().get()) {
-					PluginManager.updatePlugins();
+					NetworkMonitor.whenOnline("Plugin Updater Thread", PluginManager::updatePlugins);
 				}
-				Platform.runLater(() -> MainController.getController().getPluginListBox().setDisable(false));
 			}, "Plugin Query Thread").start();
 			Timeline timer = new Timeline(new KeyFrame(Duration.ZERO, new EventHandler<>() {
 				Instant last = Instant.now();
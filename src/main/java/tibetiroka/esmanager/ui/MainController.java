@@ -28,6 +28,7 @@ import tibetiroka.esmanager.audio.AudioPlayer;
 import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.instance.SystemUtils;
 import tibetiroka.esmanager.plugin.PluginManager;
+import tibetiroka.esmanager.plugin.RemotePlugin;
 import tibetiroka.esmanager.ui.instance.NewInstanceController;
 
 import java.io.File;
@@ -72,7 +73,9 @@ public class MainController {
 	@FXML
 	protected ScrollPane logScroll;
 	@FXML
-	protected VBox pluginListBox;
+	protected ListView<RemotePlugin> pluginList;
+	@FXML
+	protected TextField pluginSearch;
 	@FXML
 	protected AnchorPane statisticsPane;
 	@FXML
@@ -97,12 +100,21 @@ public class MainController {
 		return instanceListBox;
 	}
 
+	/**
+	 * Shows the remote plugins matching the search query in the plugin list.
+	 *
+	 * @since 1.3.0
+	 */
+	public void filterPlugins() {
+		pluginList.getItems().setAll(PluginManager.getManager().searchRemotePlugins(pluginSearch.getText()));
+	}
+
 	public TextFlow getLogArea() {
 		return logArea;
 	}
 
-	public VBox getPluginListBox() {
-		return pluginListBox;
+	public ListView<RemotePlugin> getPluginList() {
+		return pluginList;
 	}
 
 	public void log(Text text) {
@@ -136,6 +148,8 @@ public class MainController {
 			throw new RuntimeException(e);
 		}
 		instanceListBox.disableProperty().bind(PluginManager.updateInProgressProperty());
+		pluginList.setCellFactory(list -> new PluginCell());
+		pluginSearch.textProperty().addListener((observable, oldValue, query) -> filterPlugins());
 		LAUNCHER.disableLocalization(audioBox);
 		AudioPlayer.PLAYING.addListener((observable, oldValue, newValue) -> audioButton.setGraphic(getAudioButtonIcon(newValue)));
 		audioButton.setGraphic(getAudioButtonIcon(AudioPlayer.PLAYING.get()));
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.ui;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import tibetiroka.esmanager.plugin.RemotePlugin;
+
+import java.io.IOException;
+
+/**
+ * A cell of the plugin list. The row of the cell is loaded once, and its {@link PluginController controller} is reused for every plugin the cell shows, so only the visible plugins have rows.
+ *
+ * @since 1.3.0
+ */
+public class PluginCell extends ListCell<RemotePlugin> {
+	private final PluginController controller;
+	private final Parent row;
+
+	public PluginCell() {
+		try {
+			FXMLLoader loader = new FXMLLoader(PluginController.class.getResource("plugin.fxml"));
+			row = loader.load();
+			controller = loader.getController();
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+	}
+
+	@Override
+	protected void updateItem(RemotePlugin plugin, boolean empty) {
+		super.updateItem(plugin, empty);
+		if(empty || plugin == null) {
+			controller.unbind();
+			setGraphic(null);
+		} else {
+			controller.initialize(plugin);
+			setGraphic(row);
+		}
+	}
+}
@@ -18,18 +18,16 @@ import javafx.scene.CacheHint;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
+import javafx.stage.Screen;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tibetiroka.esmanager.Main;
-import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.config.Launcher;
 import tibetiroka.esmanager.instance.SessionHelper;
 import tibetiroka.esmanager.instance.SystemUtils;
@@ -38,11 +36,13 @@ import tibetiroka.esmanager.plugin.PluginManager;
 import tibetiroka.esmanager.plugin.RemotePlugin;
 
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import static tibetiroka.esmanager.config.Launcher.LAUNCHER;
 import static tibetiroka.esmanager.config.Launcher.localize;
 
 public class PluginController {
+	private static final double ICON_SIZE = 80;
 	private static final Logger log = LoggerFactory.getLogger(PluginController.class);
 	@FXML
 	protected Label authors;
@@ -56,6 +56,7 @@ public class PluginController {
 	protected Label description;
 	@FXML
 	protected Button downloadButton;
+	protected Future<?> iconRequest;
 	@FXML
 	protected BorderPane imagePane;
 	@FXML
@@ -69,42 +70,51 @@ public class PluginController {
 	protected HBox pluginBox;
 	@FXML
 	protected ProgressIndicator progressIndicator;
+	@FXML
+	protected MenuItem rollback;
 
 	@FXML
 	public void initialize(@NotNull RemotePlugin plugin) {
+		unbind();
 		this.plugin = plugin;
-		deleteButton.setDisable(plugin.findLocal() == null);
 		pluginBox.disableProperty().bind(SessionHelper.ANY_RUNNING);
+		downloadButton.disableProperty().bind(plugin.downloadInProgressProperty());
+		deleteButton.disableProperty().bind(plugin.installedProperty().not().or(plugin.downloadInProgressProperty()));
 		name.setText(plugin.getName());
 		progressIndicator.progressProperty().bind(plugin.getProgressTracker().updateProgressProperty());
 		progressIndicator.visibleProperty().bind(plugin.downloadInProgressProperty());
 		LAUNCHER.disableLocalization(progressIndicator);
 		if(plugin.getShortDescription() == null) {
 			description.textProperty().bind(Bindings.createStringBinding(() -> localize("plugin.description.text.missing"), Launcher.getLauncher().localeProperty()));
-			Font f = Font.font(description.getFont().getFamily(), FontWeight.NORMAL, FontPosture.ITALIC, description.getFont().getSize());
-			description.setFont(f);
+			description.setFont(Font.font(description.getFont().getFamily(), FontWeight.NORMAL, FontPosture.ITALIC, description.getFont().getSize()));
 		} else {
 			description.setText(plugin.getShortDescription());
+			description.setFont(Font.font(description.getFont().getFamily(), FontWeight.NORMAL, FontPosture.REGULAR, description.getFont().getSize()));
 		}
 		if(plugin.getAuthors() == null) {
 			authors.textProperty().bind(Bindings.createStringBinding(() -> localize("plugin.author.text.missing"), Launcher.getLauncher().localeProperty()));
-			Font f = Font.font(authors.getFont().getFamily(), FontWeight.NORMAL, FontPosture.ITALIC, authors.getFont().getSize());
-			authors.setFont(f);
+			authors.setFont(Font.font(authors.getFont().getFamily(), FontWeight.NORMAL, FontPosture.ITALIC, authors.getFont().getSize()));
 		} else {
 			authors.textProperty().bind(Bindings.createStringBinding(() -> localize("plugin.author.text", plugin.getAuthors()), Launcher.getLauncher().localeProperty()));
+			authors.setFont(Font.font(authors.getFont().getFamily(), FontWeight.NORMAL, FontPosture.REGULAR, authors.getFont().getSize()));
 		}
 		if(plugin.getIconUrl() != null) {
-			new Thread(() -> {
-				Main.configureThread(Thread.currentThread(), false);
-				ImageView pluginImage = new ImageView(new Image(plugin.getIconUrl().toExternalForm()));
+			//decode at the displayed size, so large icons don't fill the memory
+			double scale = Screen.getPrimary().getOutputScaleX();
+			iconRequest = PluginIconCache.request(plugin.getIconUrl(), ICON_SIZE * scale, ICON_SIZE * scale, image -> {
+				//the row might show a different plugin by now
+				if(this.plugin != plugin) {
+					return;
+				}
+				ImageView pluginImage = new ImageView(image);
 				pluginImage.setCache(true);
 				pluginImage.setCacheHint(CacheHint.SPEED);
 				pluginImage.setSmooth(true);
 				pluginImage.setPreserveRatio(true);
 				pluginImage.fitHeightProperty().bind(imagePane.heightProperty());
 				pluginImage.fitWidthProperty().bind(imagePane.widthProperty());
-				Platform.runLater(() -> imagePane.setCenter(pluginImage));
-			}).start();
+				imagePane.setCenter(pluginImage);
+			});
 		}
 		open.disableProperty().bind(plugin.installedProperty().map(o -> !o));
 		delete.disableProperty().bind(plugin.installedProperty().map(o -> !o));
@@ -116,19 +126,39 @@ public class PluginController {
 		SystemUtils.openDirectory(plugin.findLocal().getInstallLocation());
 	}
 
+	/**
+	 * Detaches this row from its plugin, so it can be reused for another plugin.
+	 *
+	 * @since 1.3.0
+	 */
+	public void unbind() {
+		plugin = null;
+		if(iconRequest != null) {
+			iconRequest.cancel(true);
+			iconRequest = null;
+		}
+		description.textProperty().unbind();
+		authors.textProperty().unbind();
+		progressIndicator.progressProperty().unbind();
+		progressIndicator.visibleProperty().unbind();
+		imagePane.setCenter(null);
+	}
+
 	@FXML
 	protected void delete() {
-		deleteButton.setDisable(true);
+		RemotePlugin plugin = this.plugin;
 		LocalPlugin local = plugin.findLocal();
 		if(local != null) {
+			plugin.downloadInProgressProperty().set(true);
 			new Thread(() -> {
 				log.warn(localize("log.plugin.delete", local.getName()));
 				try {
 					local.remove();
 					log.info(localize("log.plugin.delete.end", local.getName()));
 				} catch(IOException e) {
-					deleteButton.setDisable(false);
 					log.error(localize("log.plugin.delete.fail", e.getMessage(), local.getName()), e);
+				} finally {
+					Platform.runLater(() -> plugin.downloadInProgressProperty().set(false));
 				}
 			}, "Plugin deleter thread for " + plugin.getName()).start();
 		}
@@ -136,28 +166,28 @@ public class PluginController {
 
 	@FXML
 	protected void download() {
+		RemotePlugin plugin = this.plugin;
 		PluginManager.updateInProgressProperty().set(true);
-		downloadButton.setDisable(true);
-		deleteButton.setDisable(true);
+		plugin.downloadInProgressProperty().set(true);
 		new Thread(() -> {
-			if(plugin.findLocal() == null) {
-				log.info(localize("log.plugin.download", plugin.getName()));
-				try {
-					PluginManager.getManager().getInstalledPlugins().add(plugin.install());
-					AppConfiguration.savePluginConfiguration();
-					deleteButton.setDisable(false);
-					log.info(localize("log.plugin.download.done", plugin.getName()));
-				} catch(IOException e) {
-					log.error(localize("log.plugin.download.fail", e.getMessage(), plugin.getName()), e);
-				} finally {
-					downloadButton.setDisable(false);
-					PluginManager.updateInProgressProperty().set(false);
+			try {
+				if(plugin.findLocal() == null) {
+					log.info(localize("log.plugin.download", plugin.getName()));
+					try {
+						plugin.install();
+						log.info(localize("log.plugin.download.done", plugin.getName()));
+						PluginManager.getManager().installIsolatedPlugins();
+					} catch(IOException e) {
+						log.error(localize("log.plugin.download.fail", e.getMessage(), plugin.getName()), e);
+					}
+				} else {
+					plugin.findLocal().updateIfRequired();
 				}
-			} else {
-				plugin.findLocal().updateIfRequired();
-				deleteButton.setDisable(false);
-				downloadButton.setDisable(false);
-				PluginManager.updateInProgressProperty().set(false);
+			} finally {
+				Platform.runLater(() -> {
+					plugin.downloadInProgressProperty().set(false);
+					PluginManager.updateInProgressProperty().set(false);
+				});
 			}
 		}, "Plugin downloader thread for " + plugin.getName()).start();
 	}
@@ -168,6 +198,10 @@ public class PluginController {
 		Launcher.getLauncher().disableLocalization(description);
 		Launcher.getLauncher().disableLocalization(authors);
 		MainApplication.setContextMenu(pluginBox, contextMenu);
+		contextMenu.setOnShowing(event -> {
+			LocalPlugin local = plugin == null ? null : plugin.findLocal();
+			rollback.setDisable(local == null || plugin.downloadInProgressProperty().get() || !local.canRollback());
+		});
 	}
 
 	@FXML
@@ -182,4 +216,22 @@ public class PluginController {
 			throw new RuntimeException(e);
 		}
 	}
-}
\ No newline at end of file
+
+	@FXML
+	protected void rollback() {
+		RemotePlugin plugin = this.plugin;
+		LocalPlugin local = plugin.findLocal();
+		if(local != null) {
+			plugin.downloadInProgressProperty().set(true);
+			new Thread(() -> {
+				try {
+					local.rollback();
+				} catch(RuntimeException e) {
+					log.error(localize("log.plugin.rollback.fail", e.getMessage(), local.getName()), e);
+				} finally {
+					Platform.runLater(() -> plugin.downloadInProgressProperty().set(false));
+				}
+			}, "Plugin rollback thread for " + plugin.getName()).start();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.ui;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.utils.CacheValidators;
+import tibetiroka.esmanager.utils.HttpUtils;
+import tibetiroka.esmanager.utils.NetworkMonitor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Loads the icons of plugins. Icons are downloaded by a small, fixed pool of threads, and stored on disk by their URL. Cached icons are revalidated with a conditional request once per launch, and used as-is while offline.
+ * <p>Icons are decoded at the size they are displayed at, and the most recently used ones are kept in memory. Requests can be cancelled, so rows that are scrolled out of view don't keep the loaders busy.</p>
+ *
+ * @since 1.3.0
+ */
+public class PluginIconCache {
+	/**
+	 * The directory storing the downloaded icons.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File CACHE_DIR = new File(AppConfiguration.DATA_HOME, "plugin-icons");
+	/**
+	 * The maximum number of decoded icons kept in memory.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int MEMORY_SIZE = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.icons.memory")).intValue();
+	/**
+	 * The most recently used decoded icons, by URL and size. Access is guarded by the map itself.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Map<@NotNull String, @NotNull Image> MEMORY = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+			return size() > MEMORY_SIZE;
+		}
+	};
+	/**
+	 * The number of threads loading icons.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int THREADS = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("plugins.icons.threads")).intValue();
+	/**
+	 * The threads loading icons.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ExecutorService LOADERS = Executors.newFixedThreadPool(THREADS, r -> {
+		Thread thread = new Thread(r, "Plugin Icon Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * The cache keys of the icons that have been revalidated since the launcher started.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Set<@NotNull String> VALIDATED = ConcurrentHashMap.newKeySet();
+	private static final Logger log = LoggerFactory.getLogger(PluginIconCache.class);
+
+	/**
+	 * Requests an icon, decoded at the specified size. The aspect ratio of the icon is preserved. If the icon is in memory, the callback is called immediately; otherwise it is loaded in the background, and the callback is called on the JavaFX application thread.
+	 *
+	 * @param url      The location of the icon
+	 * @param width    The width of the displayed icon, in pixels
+	 * @param height   The height of the displayed icon, in pixels
+	 * @param callback Receives the loaded icon; not called if the icon could not be loaded
+	 * @return The pending request that can be cancelled, or null if the icon was in memory
+	 * @since 1.3.0
+	 */
+	public static @Nullable Future<?> request(@NotNull URL url, double width, double height, @NotNull Consumer<@NotNull Image> callback) {
+		String key = url.toExternalForm() + "@" + Math.round(width) + "x" + Math.round(height);
+		Image image;
+		synchronized(MEMORY) {
+			image = MEMORY.get(key);
+		}
+		if(image != null) {
+			callback.accept(image);
+			return null;
+		}
+		return LOADERS.submit(() -> {
+			try {
+				Image loaded;
+				try(InputStream input = new FileInputStream(fetch(url))) {
+					loaded = new Image(input, width, height, true, true);
+				}
+				if(loaded.isError()) {
+					throw new IOException(loaded.getException());
+				}
+				synchronized(MEMORY) {
+					MEMORY.put(key, loaded);
+				}
+				Platform.runLater(() -> callback.accept(loaded));
+			} catch(IOException e) {
+				log.debug(localize("log.plugin.icon.fail", url, e.getMessage()));
+			}
+		});
+	}
+
+	/**
+	 * Gets the cached copy of an icon, downloading or revalidating it if necessary.
+	 *
+	 * @param url The location of the icon
+	 * @return The cached icon file
+	 * @throws IOException If the icon could not be downloaded, and there is no cached copy
+	 * @since 1.3.0
+	 */
+	private static @NotNull File fetch(@NotNull URL url) throws IOException {
+		String key = DigestUtils.sha1Hex(url.toExternalForm());
+		File file = new File(CACHE_DIR, key);
+		File validatorFile = new File(CACHE_DIR, key + ".json");
+		if(file.isFile() && (VALIDATED.contains(key) || !NetworkMonitor.isOnline())) {
+			return file;
+		}
+		CacheValidators validators = file.isFile() ? CacheValidators.load(validatorFile) : new CacheValidators();
+		try {
+			HttpResponse<InputStream> response = HttpUtils.send(validators.apply(HttpUtils.request(url).GET()).build());
+			if(response.statusCode() == 304) {
+				response.body().close();
+			} else {
+				HttpUtils.expectStatus(response, 200);
+				CACHE_DIR.mkdirs();
+				File download = new File(CACHE_DIR, key + ".download");
+				try(InputStream input = response.body()) {
+					Files.copy(input, download.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				try {
+					Files.move(download.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch(AtomicMoveNotSupportedException e) {
+					Files.move(download.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				new CacheValidators(response).save(validatorFile);
+			}
+		} catch(IOException e) {
+			if(!file.isFile()) {
+				throw e;
+			}
+			log.debug(localize("log.plugin.icon.stale", url, e.getMessage()));
+		}
+		VALIDATED.add(key);
+		return file;
+	}
+}
@@ -15,10 +15,12 @@ import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.util.StringConverter;
 import org.controlsfx.control.CheckComboBox;
+import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.config.Launcher;
 import tibetiroka.esmanager.instance.Instance;
 import tibetiroka.esmanager.plugin.LocalPlugin;
+import tibetiroka.esmanager.plugin.PluginManager;
 
 public class PluginManagerController {
 	@FXML
@@ -49,6 +51,10 @@ public class PluginManagerController {
 			}
 		}
 		AppConfiguration.savePluginConfiguration();
+		new Thread(() -> {
+			Main.configureThread(Thread.currentThread(), false);
+			PluginManager.getManager().installIsolatedPlugins();
+		}, "Plugin linker thread for " + plugin.getName()).start();
 	}
 
 	@FXML
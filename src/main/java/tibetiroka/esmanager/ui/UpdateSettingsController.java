@@ -22,12 +22,24 @@ public class UpdateSettingsController {
 	@FXML
 	protected CheckBox launcherUpdate;
 	@FXML
+	protected CheckBox offlineMode;
+	@FXML
 	protected CheckBox pluginUpdate;
+	@FXML
+	protected CheckBox prefetchUpdates;
+	@FXML
+	protected CheckBox throttleDuringSessions;
+	@FXML
+	protected CheckBox watchLocalSources;
 
 	public static void bind() {
 		CONTROLLER.instanceUpdate.selectedProperty().bindBidirectional(Launcher.getLauncher().autoUpdateInstancesProperty());
 		CONTROLLER.pluginUpdate.selectedProperty().bindBidirectional(PluginManager.getManager().getAutoUpdatePlugins());
 		CONTROLLER.launcherUpdate.selectedProperty().bindBidirectional(Launcher.getLauncher().autoUpdateLauncherProperty());
+		CONTROLLER.watchLocalSources.selectedProperty().bindBidirectional(Launcher.getLauncher().watchLocalSourcesProperty());
+		CONTROLLER.offlineMode.selectedProperty().bindBidirectional(Launcher.getLauncher().offlineModeProperty());
+		CONTROLLER.prefetchUpdates.selectedProperty().bindBidirectional(Launcher.getLauncher().prefetchUpdatesProperty());
+		CONTROLLER.throttleDuringSessions.selectedProperty().bindBidirectional(Launcher.getLauncher().throttleDuringSessionsProperty());
 	}
 
 	@FXML
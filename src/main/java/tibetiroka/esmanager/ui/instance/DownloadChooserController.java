@@ -19,10 +19,9 @@ import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import tibetiroka.esmanager.instance.InstanceUtils.InstanceBuilder;
 import tibetiroka.esmanager.ui.MainApplication;
+import tibetiroka.esmanager.utils.HttpUtils;
 
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
 
 public class DownloadChooserController {
 	public Stage stage;
@@ -44,13 +43,7 @@ public class DownloadChooserController {
 				input.pseudoClassStateChanged(MainApplication.TEXT_ERROR_CLASS, true);
 				return;
 			}
-			URLConnection connection = url.openConnection();
-			connection.connect();
-			if(connection instanceof HttpURLConnection c) {
-				if(c.getResponseCode() < 200 || c.getResponseCode() >= 300) {
-					throw new IllegalArgumentException();
-				}
-			}
+			HttpUtils.openStream(url).close();
 			FXMLLoader loader = new FXMLLoader(InstanceNameController.class.getResource("new-instance-name.fxml"));
 			Parent p = loader.load();
 			Scene scene = new Scene(p);
@@ -19,6 +19,7 @@ import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.stage.Stage;
 import tibetiroka.esmanager.instance.InstanceUtils.InstanceBuilder;
+import tibetiroka.esmanager.instance.PrefetchService;
 import tibetiroka.esmanager.instance.source.SourceType;
 import tibetiroka.esmanager.ui.MainApplication;
 
@@ -41,6 +42,7 @@ public class NewInstanceController {
 
 	@FXML
 	protected void initialize() {
+		selectionGroup.selectedToggleProperty().addListener((observable, oldValue, newValue) -> PrefetchService.speculate(newValue == latestRelease ? new InstanceBuilder().withOfficialSource(SourceType.LATEST_RELEASE, null).getSources().get(0) : null));
 	}
 
 	@FXML
@@ -19,14 +19,15 @@ import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
 import javafx.stage.Stage;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import tibetiroka.esmanager.Main;
 import tibetiroka.esmanager.config.AppConfiguration;
 import tibetiroka.esmanager.instance.InstanceUtils.InstanceBuilder;
+import tibetiroka.esmanager.instance.PrefetchService;
 import tibetiroka.esmanager.instance.ReleaseUtils;
 import tibetiroka.esmanager.instance.source.SourceType;
 import tibetiroka.esmanager.ui.MainApplication;
+import tibetiroka.esmanager.utils.RemoteRefCache;
 
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -57,17 +58,25 @@ public class ReleaseVersionChooserController {
 	protected void initialize() {
 		nextButton.setDisable(true);
 		release.setDisable(true);
+		release.valueProperty().addListener((observable, oldValue, newValue) -> {
+			if(newValue == null || newValue.isBlank()) {
+				PrefetchService.speculate(null);
+			} else {
+				try {
+					InstanceBuilder builder = official ? new InstanceBuilder().withOfficialSource(SourceType.RELEASE, newValue) : new InstanceBuilder().withReleaseSource(SourceType.RELEASE, new URI(remoteURI), newValue);
+					PrefetchService.speculate(builder.getSources().get(0));
+				} catch(URISyntaxException e) {
+					PrefetchService.speculate(null);
+				}
+			}
+		});
 	}
 
 	protected void listReleases() {
 		new Thread(() -> {
 			Main.configureThread(Thread.currentThread(), false);
 			try {
-				List<String> refs = Git.lsRemoteRepository()
-				                       .setRemote(remoteURI)
-				                       .setHeads(false)
-				                       .setTags(true)
-				                       .call()
+				List<String> refs = RemoteRefCache.lsRemote(remoteURI, false, true)
 				                       .stream()
 				                       .filter(Objects::nonNull)
 				                       .map(ref -> ref.getName())
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.GensonFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * The validators of a cached HTTP response, used to revalidate the cached copy with a conditional request. If the copy is still valid, the server responds with {@code 304 Not Modified} instead of sending it again.
+ *
+ * @since 1.3.0
+ */
+public class CacheValidators {
+	private static final Logger log = LoggerFactory.getLogger(CacheValidators.class);
+	/**
+	 * The entity tag of the cached copy, or null if unknown.
+	 *
+	 * @since 1.3.0
+	 */
+	private @Nullable String etag;
+	/**
+	 * The modification date of the cached copy, as reported by the server, or null if unknown.
+	 *
+	 * @since 1.3.0
+	 */
+	private @Nullable String lastModified;
+
+	public CacheValidators() {
+	}
+
+	/**
+	 * Reads the validators of a response.
+	 *
+	 * @param response The response
+	 * @since 1.3.0
+	 */
+	public CacheValidators(@NotNull HttpResponse<?> response) {
+		this.etag = response.headers().firstValue("etag").orElse(null);
+		this.lastModified = response.headers().firstValue("last-modified").orElse(null);
+	}
+
+	/**
+	 * Loads validators from a file. Missing or unreadable validators are ignored, causing a full download.
+	 *
+	 * @param file The file storing the validators
+	 * @return The validators
+	 * @since 1.3.0
+	 */
+	public static @NotNull CacheValidators load(@NotNull File file) {
+		if(file.isFile()) {
+			try(InputStream input = new FileInputStream(file)) {
+				return GensonFactory.GENSON.deserialize(input, CacheValidators.class);
+			} catch(Exception e) {
+				log.debug(localize("log.http.validators.fail", file.getName(), e.getMessage()));
+			}
+		}
+		return new CacheValidators();
+	}
+
+	/**
+	 * Adds the conditional headers to a request.
+	 *
+	 * @param builder The request builder
+	 * @return The builder
+	 * @since 1.3.0
+	 */
+	public @NotNull HttpRequest.Builder apply(@NotNull HttpRequest.Builder builder) {
+		if(etag != null) {
+			builder.header("If-None-Match", etag);
+		}
+		if(lastModified != null) {
+			builder.header("If-Modified-Since", lastModified);
+		}
+		return builder;
+	}
+
+	/**
+	 * Saves these validators to a file. Failures are logged, but otherwise ignored.
+	 *
+	 * @param file The file to store the validators in
+	 * @since 1.3.0
+	 */
+	public void save(@NotNull File file) {
+		try {
+			Files.writeString(file.toPath(), GensonFactory.GENSON.serialize(this), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+		} catch(IOException e) {
+			log.debug(localize("log.http.validators.fail", file.getName(), e.getMessage()));
+		}
+	}
+}
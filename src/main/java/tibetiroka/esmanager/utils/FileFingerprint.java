@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes the state of a file at a given point in time using its size, modification time and file key, along with the SHA-256 hash of its contents. As long as the size, modification time and file key of a file are unchanged, the file is assumed to have the same contents, so its hash doesn't have to be recalculated.
+ *
+ * @since 1.3.0
+ */
+public class FileFingerprint {
+	/**
+	 * The cache of the latest known fingerprints, keyed by the real path of the file.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull Path, @NotNull FileFingerprint> CACHE = new ConcurrentHashMap<>();
+	/**
+	 * The size of the regions mapped into memory while hashing.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;//64MB
+	/**
+	 * The {@link String} representation of the file key of the file, if supported by the file system.
+	 *
+	 * @see BasicFileAttributes#fileKey()
+	 * @since 1.3.0
+	 */
+	@Nullable
+	private String fileKey;
+	/**
+	 * The Base64-encoded SHA-256 hash of the file's contents.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private String hash;
+	/**
+	 * The time the file was last modified, in milliseconds since the epoch.
+	 *
+	 * @since 1.3.0
+	 */
+	private long lastModified;
+	/**
+	 * The size of the file in bytes.
+	 *
+	 * @since 1.3.0
+	 */
+	private long size;
+
+	public FileFingerprint() {
+	}
+
+	/**
+	 * Creates a new fingerprint from the specified attributes and hash.
+	 *
+	 * @param attributes The attributes of the file
+	 * @param hash       The hash of the file's contents
+	 * @since 1.3.0
+	 */
+	private FileFingerprint(@NotNull BasicFileAttributes attributes, @NotNull String hash) {
+		this.size = attributes.size();
+		this.lastModified = attributes.lastModifiedTime().toMillis();
+		this.fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+		this.hash = hash;
+	}
+
+	/**
+	 * Calculates the SHA-256 hash of the specified file. The file is mapped into memory region by region, so large files are hashed without copying their contents through intermediate buffers.
+	 *
+	 * @param file The file to hash
+	 * @return The Base64-encoded hash
+	 * @since 1.3.0
+	 */
+	public static @NotNull String computeHash(@NotNull Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			long size = channel.size();
+			for(long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+				digest.update(buffer);
+			}
+			return new String(Base64.getEncoder().encode(digest.digest()));
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates an up-to-date fingerprint of the specified file. Symbolic links are followed. The hash of the file is only recalculated if the file has changed since it was last fingerprinted.
+	 *
+	 * @param file The file to fingerprint
+	 * @return The fingerprint
+	 * @since 1.3.0
+	 */
+	public static @NotNull FileFingerprint of(@NotNull File file) throws IOException {
+		Path path = file.toPath().toRealPath();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		FileFingerprint cached = CACHE.get(path);
+		if(cached != null && cached.matches(attributes)) {
+			return cached;
+		}
+		FileFingerprint fingerprint = new FileFingerprint(attributes, computeHash(path));
+		CACHE.put(path, fingerprint);
+		return fingerprint;
+	}
+
+	/**
+	 * Adds a previously created fingerprint to the cache, so it can be used without rehashing the file if the file hasn't changed. Has no effect if the file doesn't exist.
+	 *
+	 * @param file        The file the fingerprint was created for
+	 * @param fingerprint The fingerprint
+	 * @since 1.3.0
+	 */
+	public static void remember(@NotNull File file, @NotNull FileFingerprint fingerprint) {
+		try {
+			CACHE.putIfAbsent(file.toPath().toRealPath(), fingerprint);
+		} catch(IOException ignored) {
+		}
+	}
+
+	/**
+	 * Gets the {@link String} representation of the file key of the file, if supported by the file system.
+	 *
+	 * @return {@link #fileKey}
+	 * @since 1.3.0
+	 */
+	public @Nullable String getFileKey() {
+		return fileKey;
+	}
+
+	/**
+	 * Gets the Base64-encoded SHA-256 hash of the file's contents.
+	 *
+	 * @return {@link #hash}
+	 * @since 1.3.0
+	 */
+	public @NotNull String getHash() {
+		return hash;
+	}
+
+	/**
+	 * Gets the time the file was last modified.
+	 *
+	 * @return {@link #lastModified}
+	 * @since 1.3.0
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Gets the size of the file.
+	 *
+	 * @return {@link #size}
+	 * @since 1.3.0
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the specified file still matches this fingerprint, without reading its contents. Symbolic links are followed.
+	 *
+	 * @param file The file to check
+	 * @return True if the size, modification time and file key of the file are unchanged
+	 * @since 1.3.0
+	 */
+	public boolean matches(@NotNull File file) {
+		try {
+			return matches(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether the specified attributes match this fingerprint.
+	 *
+	 * @param attributes The attributes of the file
+	 * @return True if the size, modification time and file key are unchanged
+	 * @since 1.3.0
+	 */
+	private boolean matches(@NotNull BasicFileAttributes attributes) {
+		return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis() && Objects.equals(fileKey, attributes.fileKey() == null ? null : attributes.fileKey().toString());
+	}
+}
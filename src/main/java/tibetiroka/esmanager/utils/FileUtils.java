@@ -10,22 +10,42 @@
 
 package tibetiroka.esmanager.utils;
 
+import org.apache.commons.io.file.PathUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
 
 /**
  * Utilities related to {@link File files}, {@link URI URIs} and {@link ZipInputStream zip files}.
@@ -39,6 +59,7 @@ public class FileUtils {
 	 * @since 0.0.1
 	 */
 	private static @Nullable FileSystem JAR_FILE_SYSTEM;
+	private static final Logger log = LoggerFactory.getLogger(FileUtils.class);
 
 	/**
 	 * Copy the file on the specified {@link URL} to the target file. The current task is used to track download progress.
@@ -62,7 +83,7 @@ public class FileUtils {
 		tracker.endTask();
 		tracker.beginTask(0.9);
 		byte[] buffer = new byte[16777216];//16MB
-		try(BufferedInputStream bif = new BufferedInputStream(source.openStream())) {
+		try(BufferedInputStream bif = new BufferedInputStream(HttpUtils.openStream(source))) {
 			try(FileOutputStream fos = new FileOutputStream(target)) {
 				int amount;
 				while((amount = bif.read(buffer)) >= 0) {
@@ -80,6 +101,86 @@ public class FileUtils {
 		tracker.endTask();
 	}
 
+	/**
+	 * Copy the file on the specified {@link URL} to the target file, reusing the unchanged blocks of the seed file where possible. If the file has a zsync control file, only the blocks missing from the seed are downloaded. Otherwise, or if the delta transfer fails, the whole file is downloaded using {@link #copyTracked(URL, File, UpdateProgressTracker)}. Files that are already {@link PeerCache#isCached(URL) cached} are always copied whole, since no download is needed. The current task is used to track download progress.
+	 *
+	 * @param source  The location of the file to copy
+	 * @param seed    The previous version of the file, or null if not available; may be the same as the target
+	 * @param target  The file to copy into
+	 * @param tracker The tracker used to track copy progress
+	 * @see Zsync
+	 * @since 1.3.0
+	 */
+	public static void copyTrackedDelta(@NotNull URL source, @Nullable File seed, @NotNull File target, @NotNull UpdateProgressTracker tracker) throws IOException {
+		if(seed != null && seed.isFile() && !PeerCache.isCached(source)) {
+			File partial = new File(target.getParentFile(), target.getName() + ".part");
+			try {
+				Zsync.download(source, seed, partial, tracker);
+				Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return;
+			} catch(IOException e) {
+				log.info(localize("log.download.delta.fail", source, e.getMessage()));
+			} finally {
+				org.apache.commons.io.FileUtils.deleteQuietly(partial);
+			}
+		}
+		copyTracked(source, target, tracker);
+	}
+
+	/**
+	 * Copy the zip file on the specified {@link URL} to the target file, reusing the unchanged entries of the seed file where possible. The central directory of the remote file is used as a manifest: entries whose name, size and CRC-32 checksum match an entry of the seed are copied from the seed, and only the other entries are downloaded using {@link RemoteZip range requests}. The new file is assembled next to the target, and every entry is verified against the checksum of the remote file. If the delta transfer fails, or the file is already {@link PeerCache#isCached(URL) cached}, the whole file is downloaded using {@link #copyTracked(URL, File, UpdateProgressTracker)}. The current task is used to track download progress.
+	 *
+	 * @param source  The location of the zip file to copy
+	 * @param seed    The previous version of the zip file, or null if not available; may be the same as the target
+	 * @param target  The file to copy into
+	 * @param tracker The tracker used to track copy progress
+	 * @since 1.3.0
+	 */
+	public static void copyTrackedZipDelta(@NotNull URL source, @Nullable File seed, @NotNull File target, @NotNull UpdateProgressTracker tracker) throws IOException {
+		if(seed != null && seed.isFile() && !PeerCache.isCached(source)) {
+			File partial = new File(target.getParentFile(), target.getName() + ".part");
+			File entries = new File(target.getParentFile(), "." + target.getName() + ".entries");
+			try {
+				assembleZip(RemoteZip.open(source), seed, entries, partial, tracker);
+				Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return;
+			} catch(IOException e) {
+				log.info(localize("log.download.delta.fail", source, e.getMessage()));
+			} finally {
+				org.apache.commons.io.FileUtils.deleteQuietly(partial);
+				org.apache.commons.io.FileUtils.deleteQuietly(entries);
+			}
+		}
+		copyTracked(source, target, tracker);
+	}
+
+	/**
+	 * Recreates a directory tree at another location, linking the files of the source instead of copying them where supported. Since the files are shared, they must be replaced instead of modified in place in either tree.
+	 *
+	 * @param source The directory to link
+	 * @param target The directory to create; must not exist
+	 * @throws IOException If the tree could not be linked
+	 * @since 1.3.0
+	 */
+	public static void linkDirectory(@NotNull File source, @NotNull File target) throws IOException {
+		Path sourcePath = source.toPath();
+		Path targetPath = target.toPath();
+		try(Stream<Path> stream = Files.walk(sourcePath)) {
+			for(Path path : (Iterable<Path>) stream::iterator) {
+				Path destination = targetPath.resolve(sourcePath.relativize(path).toString());
+				if(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					Files.createDirectories(destination);
+				} else {
+					try {
+						Files.createLink(destination, path);
+					} catch(IOException | UnsupportedOperationException e) {
+						Files.copy(path, destination, LinkOption.NOFOLLOW_LINKS);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Unpacks a zip file into the specified directory.
 	 *
@@ -90,7 +191,7 @@ public class FileUtils {
 	public static void unpackZip(@NotNull InputStream input, @NotNull File baseDir) throws IOException {
 		try(ZipInputStream zip = new ZipInputStream(input)) {
 			String baseDirPath = baseDir.getCanonicalPath();
-			byte[] buffer = new byte[16777216];//16MB
+			byte[] buffer = new byte[65536];
 			//
 			for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
 				File destFile = new File(baseDir, entry.getName());
@@ -135,10 +236,10 @@ public class FileUtils {
 		long downloaded = 0;
 		tracker.endTask();
 		tracker.beginTask(0.9);
-		try(CountingInputStream input = new CountingInputStream(source.openStream())) {
+		try(CountingInputStream input = new CountingInputStream(HttpUtils.openStream(source))) {
 			try(ZipInputStream zip = new ZipInputStream(input)) {
 				String baseDirPath = baseDir.getCanonicalPath();
-				byte[] buffer = new byte[16777216];//16MB
+				byte[] buffer = new byte[65536];
 				//
 				for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
 					File destFile = new File(baseDir, entry.getName());
@@ -161,6 +262,9 @@ public class FileUtils {
 						try(FileOutputStream fos = new FileOutputStream(destFile)) {
 							int len;
 							while((len = zip.read(buffer)) > 0) {
+								if(Thread.currentThread().isInterrupted()) {
+									throw new InterruptedIOException("Unpacking " + source + " was interrupted");
+								}
 								fos.write(buffer, 0, len);
 								tracker.progressTask(calculateFakeProgressChange(downloaded, input.getByteCount() - downloaded));//The number of compressed and decompressed bytes might differ
 								downloaded = input.getByteCount();
@@ -174,6 +278,230 @@ public class FileUtils {
 		tracker.endTask();
 	}
 
+	/**
+	 * Downloads a zip file and unpacks it into the specified directory, only extracting the entries that have changed since the previous extraction. The zip file is downloaded next to the target directory, so it doesn't have to be kept in memory. The current task is used to track download progress.
+	 *
+	 * @param source       The location of the zip file
+	 * @param baseDir      The base directory to unpack into
+	 * @param previousDir  The directory containing the previously extracted version, or null if there is none; may be the same as the base directory
+	 * @param manifestFile The file storing the {@link ZipManifest manifest} of the previous extraction
+	 * @param tracker      The tracker used to track unpacking progress
+	 * @see #unpackZipIncremental(File, File, File, File, UpdateProgressTracker)
+	 * @since 1.3.0
+	 */
+	public static void unpackZipIncremental(@NotNull URL source, @NotNull File baseDir, @Nullable File previousDir, @NotNull File manifestFile, @NotNull UpdateProgressTracker tracker) throws IOException {
+		baseDir.mkdirs();
+		File zip = new File(baseDir.getParentFile(), "." + baseDir.getName() + ".download.zip");
+		try {
+			tracker.beginTask(0.8);
+			copyTracked(source, zip, tracker);
+			tracker.endTask();
+			tracker.beginTask(0.2);
+			unpackZipIncremental(zip, baseDir, previousDir, manifestFile, tracker);
+			tracker.endTask();
+		} finally {
+			org.apache.commons.io.FileUtils.deleteQuietly(zip);
+		}
+	}
+
+	/**
+	 * Unpacks a zip file into the specified directory, only extracting the entries that have changed since the previous extraction. The CRC-32 checksum and size of each entry are read from the central directory of the zip file, and compared against the {@link ZipManifest manifest} of the previous extraction. Unchanged entries are kept in place, or linked from the previous directory if it is different from the target. Files of the previous extraction that are no longer in the zip file are removed. The current task is used to track unpacking progress.
+	 *
+	 * @param zip          The zip file
+	 * @param baseDir      The base directory to unpack into
+	 * @param previousDir  The directory containing the previously extracted version, or null if there is none; may be the same as the base directory
+	 * @param manifestFile The file storing the manifest of the previous extraction; updated to describe the new extraction
+	 * @param tracker      The tracker used to track unpacking progress
+	 * @since 1.3.0
+	 */
+	public static void unpackZipIncremental(@NotNull File zip, @NotNull File baseDir, @Nullable File previousDir, @NotNull File manifestFile, @NotNull UpdateProgressTracker tracker) throws IOException {
+		ZipManifest previous = ZipManifest.load(manifestFile);
+		if(!previous.describes(previousDir)) {
+			previous = new ZipManifest();
+		}
+		ZipManifest current = new ZipManifest(baseDir);
+		boolean inPlace = previousDir != null && previousDir.getAbsoluteFile().equals(baseDir.getAbsoluteFile());
+		String baseDirPath = baseDir.getCanonicalPath();
+		int extracted = 0, reused = 0, removed = 0;
+		try(ZipFile file = new ZipFile(zip)) {
+			byte[] buffer = new byte[65536];
+			int total = Math.max(1, file.size());
+			for(Enumeration<? extends ZipEntry> entries = file.entries(); entries.hasMoreElements(); ) {
+				ZipEntry entry = entries.nextElement();
+				File destFile = new File(baseDir, entry.getName());
+				String destFilePath = destFile.getCanonicalPath();
+				if(!destFilePath.startsWith(baseDirPath + File.separator)) {
+					throw new IOException("Entry is outside of the target directory: " + entry.getName());
+				}
+				//
+				if(entry.isDirectory()) {
+					if(!destFile.isDirectory() && !destFile.mkdirs()) {
+						throw new IOException("Failed to create directory " + destFile.getAbsolutePath());
+					}
+				} else {
+					//make sure the parent exists
+					File parent = destFile.getParentFile();
+					if(!parent.isDirectory() && !parent.mkdirs()) {
+						throw new IOException("Failed to create directory " + parent);
+					}
+					ZipManifest.Entry old = previous.get(entry.getName());
+					File previousFile = previousDir == null ? null : new File(previousDir, entry.getName());
+					if(old != null && old.matches(entry) && previousFile.isFile() && previousFile.length() == entry.getSize()) {
+						if(!inPlace) {
+							Files.deleteIfExists(destFile.toPath());
+							try {
+								Files.createLink(destFile.toPath(), previousFile.toPath());
+							} catch(IOException | UnsupportedOperationException e) {
+								Files.copy(previousFile.toPath(), destFile.toPath());
+							}
+						}
+						reused++;
+					} else {
+						//deleting first, so files linked from other versions are not modified
+						Files.deleteIfExists(destFile.toPath());
+						try(InputStream input = file.getInputStream(entry); FileOutputStream fos = new FileOutputStream(destFile)) {
+							int len;
+							while((len = input.read(buffer)) > 0) {
+								fos.write(buffer, 0, len);
+							}
+						}
+						extracted++;
+					}
+					current.put(entry);
+				}
+				tracker.progressTask(1. / total);
+			}
+		}
+		if(inPlace) {
+			for(String name : previous.getEntries().keySet()) {
+				if(current.get(name) == null) {
+					File stale = new File(baseDir, name);
+					if(stale.getCanonicalPath().startsWith(baseDirPath + File.separator) && org.apache.commons.io.FileUtils.deleteQuietly(stale)) {
+						removed++;
+					}
+				}
+			}
+		}
+		current.save(manifestFile);
+		log.debug(localize("log.zip.incremental.done", zip.getName(), extracted, reused, removed));
+	}
+
+	/**
+	 * Unpacks a zip file from the specified {@link URL} into the directory, without storing the zip file on disk. See {@link #unpackZipNested(InputStream, File, Predicate, File)} for the handling of nested archives. The current task is used to track download progress.
+	 *
+	 * @param source       The location of the zip file
+	 * @param baseDir      The base directory to unpack into
+	 * @param nested       Accepts the names of the entries that are zip files to unpack in place
+	 * @param manifestFile The file storing the manifest of the previous extraction; updated to describe the new extraction
+	 * @param tracker      The tracker used to track download progress
+	 * @since 1.3.0
+	 */
+	public static void unpackZipNested(@NotNull URL source, @NotNull File baseDir, @NotNull Predicate<@NotNull String> nested, @NotNull File manifestFile, @NotNull UpdateProgressTracker tracker) throws IOException {
+		tracker.beginTask(0.1);
+		final long length = getFileSize(source);
+		tracker.endTask();
+		tracker.beginTask(0.9);
+		try(InputStream input = new ProxyInputStream(HttpUtils.openStream(source)) {
+			private long downloaded = 0;
+
+			@Override
+			protected void afterRead(int n) {
+				if(n > 0) {
+					tracker.progressTask(length > 0 ? n / (double) length : calculateFakeProgressChange(downloaded, n));
+					downloaded += n;
+				}
+			}
+		}) {
+			unpackZipNested(input, baseDir, nested, manifestFile);
+		}
+		tracker.endTask();
+	}
+
+	/**
+	 * Unpacks a zip file from the stream into the specified directory. Entries accepted by the nested archive filter are zip files themselves: instead of being written to disk, their entries are unpacked directly from the stream of the outer zip file, at any depth. The contents of every entry are verified against their CRC-32 checksum while reading.
+	 * <p>Entries whose checksum and size are stored in their local header, and match the {@link ZipManifest manifest} of the previous extraction, are not rewritten. Files of the previous extraction that are no longer in the zip file are removed.</p>
+	 *
+	 * @param input        The stream of the zip file; not closed by this method
+	 * @param baseDir      The base directory to unpack into
+	 * @param nested       Accepts the names of the entries that are zip files to unpack in place
+	 * @param manifestFile The file storing the manifest of the previous extraction; updated to describe the new extraction
+	 * @since 1.3.0
+	 */
+	public static void unpackZipNested(@NotNull InputStream input, @NotNull File baseDir, @NotNull Predicate<@NotNull String> nested, @NotNull File manifestFile) throws IOException {
+		ZipManifest previous = ZipManifest.load(manifestFile);
+		if(!previous.describes(baseDir)) {
+			previous = new ZipManifest();
+		}
+		baseDir.mkdirs();
+		NestedUnpacker unpacker = new NestedUnpacker(baseDir, nested, previous);
+		unpacker.unpack(new ZipInputStream(CloseShieldInputStream.wrap(input)));
+		int removed = 0;
+		for(String name : previous.getEntries().keySet()) {
+			if(unpacker.current.get(name) == null) {
+				File stale = new File(baseDir, name);
+				if(stale.getCanonicalPath().startsWith(unpacker.baseDirPath + File.separator) && org.apache.commons.io.FileUtils.deleteQuietly(stale)) {
+					removed++;
+				}
+			}
+		}
+		unpacker.current.save(manifestFile);
+		log.debug(localize("log.zip.nested.done", baseDir.getName(), unpacker.extracted, unpacker.reused, removed, unpacker.archives));
+	}
+
+	/**
+	 * Updates a previous extraction of a remote zip file by only downloading the entries that have changed, using HTTP range requests. The files of the previous extraction are linked into the base directory, and compared with the central directory of the remote zip file. Changed entries replace the linked files instead of modifying them, so the previous extraction is left intact. Files of the previous extraction that are no longer in the zip file are removed. The current task is used to track download progress.
+	 *
+	 * @param source       The location of the zip file
+	 * @param baseDir      The base directory to unpack into; must not exist
+	 * @param previousDir  The directory containing the previous extraction
+	 * @param manifestFile The file storing the {@link ZipManifest manifest} of the previous extraction; updated to describe the new extraction
+	 * @param destination  The directory the base directory is moved to once complete, which is recorded in the manifest
+	 * @param tracker      The tracker used to track download progress
+	 * @throws IOException If the zip file could not be read, the server doesn't support range requests, or an entry has an invalid checksum
+	 * @since 1.3.0
+	 */
+	public static void unpackZipRemote(@NotNull URL source, @NotNull File baseDir, @NotNull File previousDir, @NotNull File manifestFile, @NotNull File destination, @NotNull UpdateProgressTracker tracker) throws IOException {
+		RemoteZip zip = RemoteZip.open(source);
+		ZipManifest manifest = ZipManifest.load(manifestFile);
+		if(!manifest.describes(previousDir)) {
+			manifest = new ZipManifest();
+		}
+		linkDirectory(previousDir, baseDir);
+		ArrayList<RemoteZip.Entry> changed = new ArrayList<>();
+		HashSet<Path> expected = new HashSet<>();
+		int reused = 0, removed = 0;
+		for(RemoteZip.Entry entry : zip.getEntries()) {
+			File file = new File(baseDir, entry.getName());
+			expected.add(file.toPath().normalize());
+			if(entry.isDirectory()) {
+				continue;
+			}
+			if(isUnchanged(file, entry, manifest)) {
+				reused++;
+			} else {
+				changed.add(entry);
+			}
+		}
+		zip.extract(changed, baseDir, tracker);
+		//removing files that are no longer part of the zip file
+		try(Stream<Path> stream = Files.walk(baseDir.toPath())) {
+			for(Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+				if(!path.equals(baseDir.toPath()) && !expected.contains(path.normalize()) && (!Files.isDirectory(path) || PathUtils.isEmptyDirectory(path))) {
+					Files.delete(path);
+					removed++;
+				}
+			}
+		}
+		ZipManifest current = new ZipManifest(destination);
+		for(RemoteZip.Entry entry : zip.getEntries()) {
+			if(!entry.isDirectory()) {
+				current.put(entry.getName(), entry.getCrc(), entry.getSize());
+			}
+		}
+		current.save(manifestFile);
+		log.debug(localize("log.zip.incremental.done", new File(source.getPath()).getName(), changed.size(), reused, removed));
+	}
+
 	/**
 	 * Walks the file tree of depth 1 in the resource directory.
 	 *
@@ -196,6 +524,66 @@ public class FileUtils {
 		return paths;
 	}
 
+	/**
+	 * Assembles a zip file from the entries of a remote zip file. Changed entries are downloaded into a temporary directory, and the unchanged ones are copied from the seed.
+	 *
+	 * @param remote  The remote zip file
+	 * @param seed    The previous version of the zip file
+	 * @param entries The directory to download the changed entries into
+	 * @param target  The file to assemble the zip file in
+	 * @param tracker The tracker used to track copy progress
+	 * @throws IOException If an entry could not be downloaded or copied, or its checksum doesn't match
+	 * @since 1.3.0
+	 */
+	private static void assembleZip(@NotNull RemoteZip remote, @NotNull File seed, @NotNull File entries, @NotNull File target, @NotNull UpdateProgressTracker tracker) throws IOException {
+		try(ZipFile local = new ZipFile(seed)) {
+			HashSet<String> changed = new HashSet<>();
+			ArrayList<RemoteZip.Entry> download = new ArrayList<>();
+			for(RemoteZip.Entry entry : remote.getEntries()) {
+				ZipEntry previous = local.getEntry(entry.getName());
+				if(!entry.isDirectory() && (previous == null || previous.getCrc() != entry.getCrc() || previous.getSize() != entry.getSize())) {
+					changed.add(entry.getName());
+					download.add(entry);
+				}
+			}
+			tracker.beginTask(0.8);
+			remote.extract(download, entries, tracker);
+			tracker.endTask();
+			tracker.beginTask(0.2);
+			byte[] buffer = new byte[65536];
+			int total = Math.max(1, remote.getEntries().size());
+			try(ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+				for(RemoteZip.Entry entry : remote.getEntries()) {
+					ZipEntry created = new ZipEntry(entry.getName());
+					if(entry.getMethod() == ZipEntry.STORED) {
+						created.setMethod(ZipEntry.STORED);
+						created.setSize(entry.getSize());
+						created.setCompressedSize(entry.getSize());
+						created.setCrc(entry.getCrc());
+					}
+					output.putNextEntry(created);
+					if(!entry.isDirectory()) {
+						CRC32 crc = new CRC32();
+						try(InputStream input = changed.contains(entry.getName()) ? new FileInputStream(new File(entries, entry.getName())) : local.getInputStream(local.getEntry(entry.getName()))) {
+							int read;
+							while((read = input.read(buffer)) >= 0) {
+								crc.update(buffer, 0, read);
+								output.write(buffer, 0, read);
+							}
+						}
+						if(crc.getValue() != entry.getCrc()) {
+							throw new IOException("Checksum mismatch: " + entry.getName());
+						}
+					}
+					output.closeEntry();
+					tracker.progressTask(1. / total);
+				}
+			}
+			tracker.endTask();
+			log.info(localize("log.download.zip.delta", target.getName(), remote.getEntries().size() - download.size(), download.size()));
+		}
+	}
+
 	/**
 	 * Calculates how much a download progress has advanced when there is no clear size given to the downloaded content.
 	 *
@@ -230,28 +618,173 @@ public class FileUtils {
 	 * @since 0.0.1
 	 */
 	private static long getFileSize(@NotNull URL url) throws IOException {
-		HttpURLConnection conn = null;
-		try {
-			conn = (HttpURLConnection) url.openConnection();
-			conn.setRequestMethod("HEAD");
-			conn.setRequestProperty("Accept-Encoding", "None");
-			conn.connect();
-			if(conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
-				throw new IOException("HTTP connection returned " + conn.getResponseCode());
+		if(!url.getProtocol().startsWith("http")) {
+			return -1;
+		}
+		HttpResponse<InputStream> response = HttpUtils.send(HttpUtils.request(url).method("HEAD", BodyPublishers.noBody()).header("Accept-Encoding", "identity").build());
+		try(InputStream ignored = response.body()) {
+			HttpUtils.expectStatus(response, 200);
+			long length = HttpUtils.getContentLength(response);
+			if(length > 0) {
+				return length;
 			}
-			if(conn.getContentLengthLong() > 0) {
-				return conn.getContentLengthLong();
-			} else if(conn.getHeaderField("content-range") != null) {
-				String s = conn.getHeaderField("content-range").split("/")[1];
+			Optional<String> range = response.headers().firstValue("content-range");
+			if(range.isPresent()) {
+				String s = range.get().split("/")[1];
 				if(!s.equals("*")) {
 					return Long.parseLong(s);
 				}
 			}
-			return conn.getContentLengthLong();
-		} finally {
-			if(conn != null) {
-				conn.disconnect();
+			return length;
+		}
+	}
+
+	/**
+	 * Checks whether the local file is the same as the specified remote zip entry. The checksum stored in the manifest is used if available, otherwise the checksum of the file is calculated.
+	 *
+	 * @param file     The local file
+	 * @param entry    The remote zip entry
+	 * @param manifest The manifest of the previous extraction
+	 * @return True if the file doesn't need to be downloaded
+	 * @since 1.3.0
+	 */
+	private static boolean isUnchanged(@NotNull File file, @NotNull RemoteZip.Entry entry, @NotNull ZipManifest manifest) throws IOException {
+		if(!file.isFile() || file.length() != entry.getSize()) {
+			return false;
+		}
+		ZipManifest.Entry stored = manifest.get(entry.getName());
+		if(stored != null) {
+			return stored.getCrc() == entry.getCrc() && stored.getSize() == entry.getSize();
+		}
+		return org.apache.commons.io.FileUtils.checksumCRC32(file) == entry.getCrc();
+	}
+
+	/**
+	 * Unpacks zip files with nested archives from a stream, keeping track of the extracted entries.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class NestedUnpacker {
+		/**
+		 * The directory to unpack into.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull File baseDir;
+		/**
+		 * The canonical path of {@link #baseDir}, used to reject entries outside of it.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull String baseDirPath;
+		/**
+		 * The buffer used for copying the entries.
+		 *
+		 * @since 1.3.0
+		 */
+		private final byte @NotNull [] buffer = new byte[65536];
+		/**
+		 * The manifest of this extraction.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull ZipManifest current;
+		/**
+		 * Accepts the names of the entries that are nested archives.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull Predicate<@NotNull String> nested;
+		/**
+		 * The manifest of the previous extraction.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull ZipManifest previous;
+		/**
+		 * The number of nested archives unpacked in place.
+		 *
+		 * @since 1.3.0
+		 */
+		private int archives = 0;
+		/**
+		 * The number of written entries.
+		 *
+		 * @since 1.3.0
+		 */
+		private int extracted = 0;
+		/**
+		 * The number of entries that were left in place, since they didn't change.
+		 *
+		 * @since 1.3.0
+		 */
+		private int reused = 0;
+
+		/**
+		 * Creates a new unpacker.
+		 *
+		 * @param baseDir  The directory to unpack into
+		 * @param nested   Accepts the names of the entries that are nested archives
+		 * @param previous The manifest of the previous extraction
+		 * @throws IOException If the path of the directory could not be resolved
+		 * @since 1.3.0
+		 */
+		public NestedUnpacker(@NotNull File baseDir, @NotNull Predicate<@NotNull String> nested, @NotNull ZipManifest previous) throws IOException {
+			this.baseDir = baseDir;
+			this.baseDirPath = baseDir.getCanonicalPath();
+			this.nested = nested;
+			this.previous = previous;
+			this.current = new ZipManifest(baseDir);
+		}
+
+		/**
+		 * Unpacks the entries of a zip file, descending into the nested archives.
+		 *
+		 * @param zip The zip file
+		 * @throws IOException If an entry could not be read or written
+		 * @since 1.3.0
+		 */
+		public void unpack(@NotNull ZipInputStream zip) throws IOException {
+			for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				if(!entry.isDirectory() && nested.test(entry.getName())) {
+					archives++;
+					//the shield keeps the outer stream open, so its remaining entries can still be read
+					unpack(new ZipInputStream(CloseShieldInputStream.wrap(zip)));
+					zip.closeEntry();
+					continue;
+				}
+				File destFile = new File(baseDir, entry.getName());
+				if(!destFile.getCanonicalPath().startsWith(baseDirPath + File.separator)) {
+					throw new IOException("Entry is outside of the target directory: " + entry.getName());
+				}
+				if(entry.isDirectory()) {
+					if(!destFile.isDirectory() && !destFile.mkdirs()) {
+						throw new IOException("Failed to create directory " + destFile.getAbsolutePath());
+					}
+				} else {
+					File parent = destFile.getParentFile();
+					if(!parent.isDirectory() && !parent.mkdirs()) {
+						throw new IOException("Failed to create directory " + parent);
+					}
+					ZipManifest.Entry old = previous.get(entry.getName());
+					if(entry.getCrc() != -1 && old != null && old.matches(entry) && destFile.isFile() && destFile.length() == entry.getSize()) {
+						reused++;
+					} else {
+						//deleting first, so files linked from other versions are not modified
+						Files.deleteIfExists(destFile.toPath());
+						try(FileOutputStream fos = new FileOutputStream(destFile)) {
+							int len;
+							while((len = zip.read(buffer)) > 0) {
+								fos.write(buffer, 0, len);
+							}
+						}
+						extracted++;
+					}
+					//reading the whole entry, so the checksum and size are known even if stored after the data
+					zip.closeEntry();
+					current.put(entry);
+				}
 			}
 		}
 	}
-}
\ No newline at end of file
+}
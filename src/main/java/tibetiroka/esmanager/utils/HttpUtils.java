@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import tibetiroka.esmanager.config.AppConfiguration;
+
+import javax.net.ssl.SSLSession;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * The shared HTTP transport of the launcher. All web requests go through a single {@link HttpClient}, so connections are reused, HTTP/2 is used where the server supports it, and the same timeouts apply everywhere. The number of concurrent requests to a single host is limited, so bursts of small requests don't open a connection each when the server only supports HTTP/1.1.
+ *
+ * @since 1.3.0
+ */
+public class HttpUtils {
+	/**
+	 * The maximum time to wait for a connection to be established.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Duration CONNECT_TIMEOUT = Duration.ofMillis(((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.timeout.connect")).longValue());
+	/**
+	 * The executor running the asynchronous parts of the requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "HTTP Client Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * The shared client used for all requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull HttpClient CLIENT = HttpClient.newBuilder().version(Version.HTTP_2).followRedirects(Redirect.NORMAL).connectTimeout(CONNECT_TIMEOUT).executor(EXECUTOR).build();
+	/**
+	 * The limits of concurrent requests, by host name.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull String, @NotNull Semaphore> HOST_LIMITS = new ConcurrentHashMap<>();
+	/**
+	 * The maximum number of concurrent requests to a single host.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int MAX_REQUESTS_PER_HOST = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.connections.host")).intValue();
+	/**
+	 * The maximum time to wait for the response headers after the request is sent, and for each read of the response body.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Duration READ_TIMEOUT = Duration.ofMillis(((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.timeout.read")).longValue());
+	/**
+	 * The number of response body bytes read since the launcher started.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull LongAdder RECEIVED = new LongAdder();
+	/**
+	 * The executor closing the response bodies that don't receive any data for too long.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "HTTP Watchdog Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Checks whether the response has the expected status code. The body of the response is closed if it doesn't.
+	 *
+	 * @param response The response
+	 * @param expected The expected status code
+	 * @throws IOException If the status code is different
+	 * @since 1.3.0
+	 */
+	public static void expectStatus(@NotNull HttpResponse<InputStream> response, int expected) throws IOException {
+		if(response.statusCode() != expected) {
+			String body;
+			try(InputStream input = response.body()) {
+				body = new String(input.readNBytes(1024));
+			}
+			throw new IOException(localize("log.http.status", response.uri(), response.statusCode(), body));
+		}
+	}
+
+	/**
+	 * Gets the length of the response body, as reported by the server.
+	 *
+	 * @param response The response
+	 * @return The length of the body, or -1 if unknown
+	 * @since 1.3.0
+	 */
+	public static long getContentLength(@NotNull HttpResponse<?> response) {
+		return response.headers().firstValueAsLong("content-length").orElse(-1);
+	}
+
+	/**
+	 * Gets the number of response body bytes read since the launcher started. Used for measuring the download throughput.
+	 *
+	 * @return The number of bytes
+	 * @since 1.3.0
+	 */
+	public static long getReceivedBytes() {
+		return RECEIVED.sum();
+	}
+
+	/**
+	 * Downloads the contents of the specified location. The {@link PeerCache peers} are queried first, then the {@link MirrorResolver mirrors} of the location. Locations that are not HTTP(S) URLs are opened using {@link URL#openStream()}.
+	 *
+	 * @param url The location to download
+	 * @return The stream of the contents
+	 * @throws IOException If the request failed or the server didn't respond with {@code 200 OK}
+	 * @since 1.3.0
+	 */
+	public static @NotNull InputStream openStream(@NotNull URL url) throws IOException {
+		InputStream shared = PeerCache.openDownload(url);
+		if(shared != null) {
+			return shared;
+		}
+		return PeerCache.record(url, MirrorResolver.openStream(url));
+	}
+
+	/**
+	 * Requests a range of the specified file from one of its remote {@link MirrorResolver mirrors}. The response body is not compressed, so the requested offsets apply to it.
+	 *
+	 * @param url   The location of the file
+	 * @param range The value of the range header, such as {@code bytes=0-99}
+	 * @return The response, with the {@code 206 Partial Content} status
+	 * @throws IOException If the request failed, or the server doesn't support range requests
+	 * @since 1.3.0
+	 */
+	public static @NotNull HttpResponse<InputStream> openRange(@NotNull URL url, @NotNull String range) throws IOException {
+		return MirrorResolver.withFailover(url.toString(), true, location -> openRangeDirect(new URL(location), range));
+	}
+
+	/**
+	 * Creates a request builder for the specified location with the default timeouts and headers.
+	 *
+	 * @param url The location to request
+	 * @return The request builder
+	 * @throws IOException If the URL is not a valid URI
+	 * @since 1.3.0
+	 */
+	public static @NotNull HttpRequest.Builder request(@NotNull URL url) throws IOException {
+		try {
+			return request(url.toURI());
+		} catch(URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Creates a request builder for the specified location with the default timeouts and headers.
+	 *
+	 * @param uri The location to request
+	 * @return The request builder
+	 * @since 1.3.0
+	 */
+	public static @NotNull HttpRequest.Builder request(@NotNull URI uri) {
+		return HttpRequest.newBuilder(uri).timeout(READ_TIMEOUT).header("User-Agent", "ESManager/" + AppConfiguration.DEFAULT_CONFIGURATION.get("launcher.version"));
+	}
+
+	/**
+	 * Sends the request, waiting for a free slot if too many requests are running to the same host. The slot is held until the returned body is closed, so callers must always close it. Reading the body fails if no data is received for the {@link #READ_TIMEOUT read timeout}, so a stalled download doesn't hold the slot forever.
+	 *
+	 * @param request The request to send
+	 * @return The response
+	 * @throws IOException If the request failed
+	 * @since 1.3.0
+	 */
+	public static @NotNull HttpResponse<InputStream> send(@NotNull HttpRequest request) throws IOException {
+		Semaphore limit = getLimit(request.uri());
+		try {
+			limit.acquire();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		}
+		try {
+			HttpResponse<InputStream> response = CLIENT.send(request, BodyHandlers.ofInputStream());
+			return new ReleasingResponse(response, limit);
+		} catch(InterruptedException e) {
+			limit.release();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch(IOException | RuntimeException e) {
+			limit.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends the request asynchronously. The request waits for a free slot if too many requests are running to the same host; the slot is released when the body has been processed by the handler. Use this method for many small, independent requests so they can overlap.
+	 *
+	 * @param request The request to send
+	 * @param handler The handler of the response body; should not return a lazily read body
+	 * @param <T>     The type of the response body
+	 * @return The future response
+	 * @since 1.3.0
+	 */
+	public static <T> @NotNull CompletableFuture<HttpResponse<T>> sendAsync(@NotNull HttpRequest request, @NotNull BodyHandler<T> handler) {
+		Semaphore limit = getLimit(request.uri());
+		AtomicBoolean acquired = new AtomicBoolean();
+		return CompletableFuture.runAsync(() -> {
+			limit.acquireUninterruptibly();
+			acquired.set(true);
+		}, EXECUTOR).thenCompose(v -> CLIENT.sendAsync(request, handler)).whenComplete((r, e) -> {
+			if(acquired.get()) {
+				limit.release();
+			}
+		});
+	}
+
+	/**
+	 * Downloads the contents of the specified location, without using its mirrors. Locations that are not HTTP(S) URLs are opened using {@link URL#openStream()}.
+	 *
+	 * @param url The location to download
+	 * @return The stream of the contents
+	 * @throws IOException If the request failed or the server didn't respond with {@code 200 OK}
+	 * @since 1.3.0
+	 */
+	static @NotNull InputStream openDirect(@NotNull URL url) throws IOException {
+		if(!isHttp(url)) {
+			return url.openStream();
+		}
+		HttpResponse<InputStream> response = send(request(url).GET().build());
+		expectStatus(response, 200);
+		return response.body();
+	}
+
+	/**
+	 * Gets the limit of concurrent requests to the host of the specified location.
+	 *
+	 * @param uri The location
+	 * @return The semaphore limiting the requests
+	 * @since 1.3.0
+	 */
+	private static @NotNull Semaphore getLimit(@NotNull URI uri) {
+		return HOST_LIMITS.computeIfAbsent(String.valueOf(uri.getHost()), h -> new Semaphore(MAX_REQUESTS_PER_HOST));
+	}
+
+	/**
+	 * Checks whether the location uses the HTTP or HTTPS protocol.
+	 *
+	 * @param url The location
+	 * @return True if HTTP(S)
+	 * @since 1.3.0
+	 */
+	private static boolean isHttp(@NotNull URL url) {
+		return url.getProtocol().equalsIgnoreCase("http") || url.getProtocol().equalsIgnoreCase("https");
+	}
+
+	/**
+	 * Requests a range of the specified file, without using its mirrors. The response body is not compressed, so the requested offsets apply to it.
+	 *
+	 * @param url   The location of the file
+	 * @param range The value of the range header, such as {@code bytes=0-99}
+	 * @return The response, with the {@code 206 Partial Content} status
+	 * @throws IOException If the request failed, or the server doesn't support range requests
+	 * @since 1.3.0
+	 */
+	private static @NotNull HttpResponse<InputStream> openRangeDirect(@NotNull URL url, @NotNull String range) throws IOException {
+		HttpResponse<InputStream> response = send(request(url).GET().header("Range", range).header("Accept-Encoding", "identity").build());
+		expectStatus(response, 206);
+		return response;
+	}
+
+	/**
+	 * A stream that is closed if a read doesn't complete in time. The read then fails with an {@link HttpTimeoutException}. Each stream has a single repeating watchdog task, which checks the time of the last progress; reads only update that time. The task is cancelled once the stream is closed or fully read.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class DeadlineInputStream extends FilterInputStream {
+		/**
+		 * The repeating task checking the deadline of the running read.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull ScheduledFuture<?> watchdog;
+		/**
+		 * Stores whether the stream was closed because a read took too long.
+		 *
+		 * @since 1.3.0
+		 */
+		private volatile boolean expired = false;
+		/**
+		 * The time a read was last started or completed, in nanoseconds, as reported by {@link System#nanoTime()}.
+		 *
+		 * @since 1.3.0
+		 */
+		private volatile long lastProgress = System.nanoTime();
+		/**
+		 * Stores whether a read is running. The deadline only applies while reading, so a slow consumer doesn't cause a timeout.
+		 *
+		 * @since 1.3.0
+		 */
+		private volatile boolean reading = false;
+
+		/**
+		 * Creates a new stream with a deadline for every read.
+		 *
+		 * @param input The stream to read from
+		 * @since 1.3.0
+		 */
+		public DeadlineInputStream(@NotNull InputStream input) {
+			super(input);
+			long period = Math.max(1, READ_TIMEOUT.toMillis() / 4);
+			watchdog = WATCHDOG.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void close() throws IOException {
+			watchdog.cancel(false);
+			super.close();
+		}
+
+		@Override
+		public int read() throws IOException {
+			begin();
+			try {
+				int read = super.read();
+				if(read < 0) {
+					watchdog.cancel(false);
+				}
+				return read;
+			} catch(IOException e) {
+				throw translate(e);
+			} finally {
+				end();
+			}
+		}
+
+		@Override
+		public int read(byte @NotNull [] b, int off, int len) throws IOException {
+			begin();
+			try {
+				int read = super.read(b, off, len);
+				if(read < 0) {
+					watchdog.cancel(false);
+				}
+				return read;
+			} catch(IOException e) {
+				throw translate(e);
+			} finally {
+				end();
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			begin();
+			try {
+				return super.skip(n);
+			} catch(IOException e) {
+				throw translate(e);
+			} finally {
+				end();
+			}
+		}
+
+		/**
+		 * Records the start of a read.
+		 *
+		 * @since 1.3.0
+		 */
+		private void begin() {
+			lastProgress = System.nanoTime();
+			reading = true;
+		}
+
+		/**
+		 * Closes the stream if the running read took too long, which unblocks the read.
+		 *
+		 * @since 1.3.0
+		 */
+		private void check() {
+			if(reading && System.nanoTime() - lastProgress > READ_TIMEOUT.toNanos()) {
+				expired = true;
+				watchdog.cancel(false);
+				try {
+					in.close();
+				} catch(IOException ignored) {
+				}
+			}
+		}
+
+		/**
+		 * Records the end of a read.
+		 *
+		 * @since 1.3.0
+		 */
+		private void end() {
+			reading = false;
+			lastProgress = System.nanoTime();
+		}
+
+		/**
+		 * Replaces the exception of a read that failed because of the deadline.
+		 *
+		 * @param e The exception thrown by the read
+		 * @return The exception to throw
+		 * @since 1.3.0
+		 */
+		private @NotNull IOException translate(@NotNull IOException e) {
+			if(expired) {
+				HttpTimeoutException timeout = new HttpTimeoutException(localize("log.http.timeout.read", READ_TIMEOUT.toSeconds()));
+				timeout.initCause(e);
+				return timeout;
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * A response whose body releases the host's request slot when closed. The body is {@link ResourceGovernor#throttle(InputStream) throttled} while a game session is running, and each read of the body has a {@link DeadlineInputStream deadline}.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class ReleasingResponse implements HttpResponse<InputStream> {
+		/**
+		 * The body of the response.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull InputStream body;
+		/**
+		 * The wrapped response.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull HttpResponse<InputStream> response;
+
+		/**
+		 * Creates a new response that releases the specified slot when its body is closed.
+		 *
+		 * @param response The wrapped response
+		 * @param limit    The limit of the host
+		 * @since 1.3.0
+		 */
+		public ReleasingResponse(@NotNull HttpResponse<InputStream> response, @NotNull Semaphore limit) {
+			this.response = response;
+			AtomicBoolean released = new AtomicBoolean();
+			this.body = new FilterInputStream(ResourceGovernor.throttle(new DeadlineInputStream(response.body()))) {
+				@Override
+				public int read() throws IOException {
+					int read = super.read();
+					if(read >= 0) {
+						RECEIVED.increment();
+					}
+					return read;
+				}
+
+				@Override
+				public int read(byte @NotNull [] b, int off, int len) throws IOException {
+					int read = super.read(b, off, len);
+					if(read > 0) {
+						RECEIVED.add(read);
+					}
+					return read;
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if(released.compareAndSet(false, true)) {
+							limit.release();
+						}
+					}
+				}
+			};
+		}
+
+		@Override
+		public @NotNull InputStream body() {
+			return body;
+		}
+
+		@Override
+		public @NotNull HttpHeaders headers() {
+			return response.headers();
+		}
+
+		@Override
+		public @NotNull HttpRequest request() {
+			return response.request();
+		}
+
+		@Override
+		public @NotNull Optional<HttpResponse<InputStream>> previousResponse() {
+			return response.previousResponse();
+		}
+
+		@Override
+		public @NotNull Optional<SSLSession> sslSession() {
+			return response.sslSession();
+		}
+
+		@Override
+		public int statusCode() {
+			return response.statusCode();
+		}
+
+		@Override
+		public @NotNull URI uri() {
+			return response.uri();
+		}
+
+		@Override
+		public @NotNull Version version() {
+			return response.version();
+		}
+	}
+}
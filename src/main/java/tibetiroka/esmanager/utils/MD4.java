@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implementation of the MD4 message digest algorithm (RFC 1320). MD4 is not available from the default security providers, but it is required to verify the block checksums of zsync control files. It must not be used for anything security-related.
+ *
+ * @since 1.3.0
+ */
+public class MD4 {
+	/**
+	 * Calculates the MD4 digest of the specified data.
+	 *
+	 * @param data   The array containing the data
+	 * @param offset The index of the first byte to digest
+	 * @param length The number of bytes to digest
+	 * @return The 16-byte digest
+	 * @since 1.3.0
+	 */
+	public static byte @NotNull [] digest(byte @NotNull [] data, int offset, int length) {
+		int[] state = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476};
+		int[] x = new int[16];
+		int full = length / 64;
+		for(int i = 0; i < full; i++) {
+			decode(data, offset + i * 64, x);
+			transform(state, x);
+		}
+		//padding: 0x80, zeroes, then the length in bits
+		int remaining = length - full * 64;
+		byte[] tail = new byte[remaining < 56 ? 64 : 128];
+		System.arraycopy(data, offset + full * 64, tail, 0, remaining);
+		tail[remaining] = (byte) 0x80;
+		long bits = (long) length * 8;
+		for(int i = 0; i < 8; i++) {
+			tail[tail.length - 8 + i] = (byte) (bits >>> (8 * i));
+		}
+		for(int i = 0; i < tail.length; i += 64) {
+			decode(tail, i, x);
+			transform(state, x);
+		}
+		byte[] digest = new byte[16];
+		for(int i = 0; i < 4; i++) {
+			for(int j = 0; j < 4; j++) {
+				digest[i * 4 + j] = (byte) (state[i] >>> (8 * j));
+			}
+		}
+		return digest;
+	}
+
+	/**
+	 * Reads 16 little-endian integers from the specified array.
+	 *
+	 * @param data   The source array
+	 * @param offset The index of the first byte
+	 * @param x      The array to store the integers in
+	 * @since 1.3.0
+	 */
+	private static void decode(byte @NotNull [] data, int offset, int @NotNull [] x) {
+		for(int i = 0; i < 16; i++) {
+			int j = offset + i * 4;
+			x[i] = (data[j] & 0xff) | (data[j + 1] & 0xff) << 8 | (data[j + 2] & 0xff) << 16 | (data[j + 3] & 0xff) << 24;
+		}
+	}
+
+	/**
+	 * Processes a single 64-byte block.
+	 *
+	 * @param state The current state of the digest
+	 * @param x     The contents of the block
+	 * @since 1.3.0
+	 */
+	private static void transform(int @NotNull [] state, int @NotNull [] x) {
+		int a = state[0], b = state[1], c = state[2], d = state[3];
+		//round 1
+		for(int i = 0; i < 16; i += 4) {
+			a = Integer.rotateLeft(a + ((b & c) | (~b & d)) + x[i], 3);
+			d = Integer.rotateLeft(d + ((a & b) | (~a & c)) + x[i + 1], 7);
+			c = Integer.rotateLeft(c + ((d & a) | (~d & b)) + x[i + 2], 11);
+			b = Integer.rotateLeft(b + ((c & d) | (~c & a)) + x[i + 3], 19);
+		}
+		//round 2
+		for(int i = 0; i < 4; i++) {
+			a = Integer.rotateLeft(a + ((b & c) | (b & d) | (c & d)) + x[i] + 0x5a827999, 3);
+			d = Integer.rotateLeft(d + ((a & b) | (a & c) | (b & c)) + x[i + 4] + 0x5a827999, 5);
+			c = Integer.rotateLeft(c + ((d & a) | (d & b) | (a & b)) + x[i + 8] + 0x5a827999, 9);
+			b = Integer.rotateLeft(b + ((c & d) | (c & a) | (d & a)) + x[i + 12] + 0x5a827999, 13);
+		}
+		//round 3
+		for(int i : new int[]{0, 2, 1, 3}) {
+			a = Integer.rotateLeft(a + (b ^ c ^ d) + x[i] + 0x6ed9eba1, 3);
+			d = Integer.rotateLeft(d + (a ^ b ^ c) + x[i + 8] + 0x6ed9eba1, 9);
+			c = Integer.rotateLeft(c + (d ^ a ^ b) + x[i + 4] + 0x6ed9eba1, 11);
+			b = Integer.rotateLeft(b + (c ^ d ^ a) + x[i + 12] + 0x6ed9eba1, 15);
+		}
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
+	}
+}
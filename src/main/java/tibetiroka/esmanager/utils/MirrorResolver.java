@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.MirrorSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Rewrites remote locations to their {@link MirrorSettings configured mirrors}. The mirrors of a location are tried in order of their health: mirrors that failed recently are tried last, and mirrors that responded faster are tried first. Downloads are hedged: if the preferred mirror doesn't respond in time, the next one is queried as well, and the first response is used.
+ *
+ * @since 1.3.0
+ */
+public class MirrorResolver {
+	/**
+	 * The time a failed mirror is avoided for, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long COOLDOWN = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.mirrors.cooldown")).longValue();
+	/**
+	 * The executor running the hedged requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "Mirror Request Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * The health of the mirrors, by their prefix.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull String, @NotNull Health> HEALTH = new ConcurrentHashMap<>();
+	/**
+	 * The time to wait for a mirror before querying the next one as well, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long HEDGE_DELAY = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.mirrors.hedge")).longValue();
+	private static final Logger log = LoggerFactory.getLogger(MirrorResolver.class);
+
+	/**
+	 * Gets the mirrors of a location, in the order they should be tried. The original location is always included.
+	 *
+	 * @param location   The original location
+	 * @param remoteOnly True to exclude local mirrors
+	 * @return The mirrors of the location
+	 * @since 1.3.0
+	 */
+	public static @NotNull List<@NotNull Candidate> getCandidates(@NotNull String location, boolean remoteOnly) {
+		MirrorSettings settings = MirrorSettings.getSettings();
+		Entry<String, List<String>> mirrors = settings == null ? null : settings.findMirrors(location);
+		if(mirrors == null) {
+			return List.of(new Candidate(location, location));
+		}
+		String prefix = mirrors.getKey();
+		String rest = location.substring(prefix.length());
+		ArrayList<Candidate> candidates = new ArrayList<>();
+		for(String mirror : mirrors.getValue()) {
+			String base = toBase(mirror, prefix.endsWith("/"));
+			if(!remoteOnly || !base.startsWith("file:")) {
+				candidates.add(new Candidate(base, base + rest));
+			}
+		}
+		candidates.add(new Candidate(prefix, location));
+		long now = System.currentTimeMillis();
+		candidates.sort(Comparator.comparing((Candidate c) -> getHealth(c).isBlocked(now)).thenComparingLong(c -> getHealth(c).getLatency()));
+		return candidates;
+	}
+
+	/**
+	 * Downloads the contents of the specified location from one of its mirrors. If a mirror fails, the next one is tried; if a mirror is slow to respond, the next one is queried as well, and the first successful response is used.
+	 *
+	 * @param url The location to download
+	 * @return The stream of the contents
+	 * @throws IOException If none of the mirrors could be downloaded from
+	 * @since 1.3.0
+	 */
+	public static @NotNull InputStream openStream(@NotNull URL url) throws IOException {
+		List<Candidate> candidates = getCandidates(url.toString(), false);
+		if(candidates.size() == 1) {
+			InputStream input = HttpUtils.openDirect(url);
+			reportSuccess(url.toString());
+			return input;
+		}
+		ExecutorCompletionService<InputStream> service = new ExecutorCompletionService<>(EXECUTOR);
+		int next = 0;
+		int running = 0;
+		IOException failure = null;
+		submit(service, candidates.get(next++));
+		running++;
+		try {
+			while(running > 0) {
+				Future<InputStream> done = next < candidates.size() ? service.poll(HEDGE_DELAY, TimeUnit.MILLISECONDS) : service.take();
+				if(done == null) {
+					log.debug(localize("log.mirror.hedge", candidates.get(next).location()));
+					submit(service, candidates.get(next++));
+					running++;
+					continue;
+				}
+				running--;
+				try {
+					InputStream input = done.get();
+					closeLosers(service, running);
+					return input;
+				} catch(ExecutionException e) {
+					IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+					if(failure == null) {
+						failure = cause;
+					} else {
+						failure.addSuppressed(cause);
+					}
+					if(next < candidates.size() && running == 0) {
+						submit(service, candidates.get(next++));
+						running++;
+					}
+				}
+			}
+		} catch(InterruptedException e) {
+			closeLosers(service, running);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		}
+		throw failure;
+	}
+
+	/**
+	 * Runs an operation on the mirrors of a location, one at a time, until it succeeds. Use this method for operations that can't be hedged, such as git operations or range requests.
+	 *
+	 * @param location   The original location
+	 * @param remoteOnly True to exclude local mirrors
+	 * @param call       The operation to run
+	 * @param <T>        The result of the operation
+	 * @param <E>        The exception thrown by the operation
+	 * @return The result of the first successful operation
+	 * @throws E If the operation failed on all mirrors; the failures of the other mirrors are suppressed
+	 * @since 1.3.0
+	 */
+	public static <T, E extends Exception> T withFailover(@NotNull String location, boolean remoteOnly, @NotNull MirrorCall<T, E> call) throws E {
+		E failure = null;
+		for(Candidate candidate : getCandidates(location, remoteOnly)) {
+			long start = System.currentTimeMillis();
+			try {
+				T result = call.call(candidate.location());
+				succeeded(candidate, start);
+				return result;
+			} catch(Exception e) {
+				getHealth(candidate).failed();
+				log.debug(localize("log.mirror.fail", candidate.location(), e.getMessage()));
+				@SuppressWarnings("unchecked") E cast = (E) e;
+				if(failure == null) {
+					failure = cast;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Closes the streams of the requests that are still running, once they complete.
+	 *
+	 * @param service The service running the requests
+	 * @param running The number of running requests
+	 * @since 1.3.0
+	 */
+	private static void closeLosers(@NotNull ExecutorCompletionService<InputStream> service, int running) {
+		if(running == 0) {
+			return;
+		}
+		EXECUTOR.execute(() -> {
+			for(int i = 0; i < running; i++) {
+				try(InputStream ignored = service.take().get()) {
+				} catch(Exception e) {
+					if(e instanceof InterruptedException) {
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the health of a mirror.
+	 *
+	 * @param candidate The mirror
+	 * @return The health of the mirror
+	 * @since 1.3.0
+	 */
+	private static @NotNull Health getHealth(@NotNull Candidate candidate) {
+		return HEALTH.computeIfAbsent(candidate.base(), b -> new Health());
+	}
+
+	/**
+	 * {@link NetworkMonitor#reportSuccess(String) Reports} a successful request to the network monitor, if the location is remote.
+	 *
+	 * @param location The requested location
+	 * @since 1.3.0
+	 */
+	private static void reportSuccess(@NotNull String location) {
+		try {
+			String host = URI.create(location).getHost();
+			if(host != null) {
+				NetworkMonitor.reportSuccess(host);
+			}
+		} catch(IllegalArgumentException ignored) {
+		}
+	}
+
+	/**
+	 * Starts downloading from a mirror.
+	 *
+	 * @param service   The service running the requests
+	 * @param candidate The mirror
+	 * @since 1.3.0
+	 */
+	private static void submit(@NotNull ExecutorCompletionService<InputStream> service, @NotNull Candidate candidate) {
+		service.submit(() -> {
+			long start = System.currentTimeMillis();
+			try {
+				InputStream input = HttpUtils.openDirect(new URL(candidate.location()));
+				succeeded(candidate, start);
+				return input;
+			} catch(IOException | RuntimeException e) {
+				getHealth(candidate).failed();
+				log.debug(localize("log.mirror.fail", candidate.location(), e.getMessage()));
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * Records a successful request to a mirror.
+	 *
+	 * @param candidate The mirror
+	 * @param start     The time the request was started, in epoch milliseconds
+	 * @since 1.3.0
+	 */
+	private static void succeeded(@NotNull Candidate candidate, long start) {
+		getHealth(candidate).succeeded(System.currentTimeMillis() - start);
+		reportSuccess(candidate.location());
+	}
+
+	/**
+	 * Converts a configured mirror to a URL prefix. Mirrors without a scheme are treated as local directories.
+	 *
+	 * @param mirror        The configured mirror
+	 * @param directoryLike True if the prefix should end with a separator
+	 * @return The prefix of the mirror
+	 * @since 1.3.0
+	 */
+	private static @NotNull String toBase(@NotNull String mirror, boolean directoryLike) {
+		String base;
+		try {
+			URI uri = URI.create(mirror);
+			base = uri.getScheme() != null && uri.getScheme().length() > 1 ? mirror : new File(mirror).toURI().toString();
+		} catch(IllegalArgumentException e) {
+			base = new File(mirror).toURI().toString();
+		}
+		if(directoryLike && !base.endsWith("/")) {
+			base += "/";
+		}
+		return base;
+	}
+
+	/**
+	 * An operation run on a mirror.
+	 *
+	 * @param <T> The result of the operation
+	 * @param <E> The exception thrown by the operation
+	 * @since 1.3.0
+	 */
+	@FunctionalInterface
+	public interface MirrorCall<T, E extends Exception> {
+		/**
+		 * Runs the operation.
+		 *
+		 * @param location The location on the mirror
+		 * @return The result of the operation
+		 * @throws E If the operation failed
+		 * @since 1.3.0
+		 */
+		T call(@NotNull String location) throws E;
+	}
+
+	/**
+	 * A mirror of a location.
+	 *
+	 * @param base     The prefix of the mirror, used to track its health
+	 * @param location The location on the mirror
+	 * @since 1.3.0
+	 */
+	public record Candidate(@NotNull String base, @NotNull String location) {
+	}
+
+	/**
+	 * The health of a mirror.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class Health {
+		/**
+		 * The time until the mirror is avoided, in epoch milliseconds.
+		 *
+		 * @since 1.3.0
+		 */
+		private volatile long blockedUntil = 0;
+		/**
+		 * The smoothed response time of the mirror in milliseconds, or -1 if unknown.
+		 *
+		 * @since 1.3.0
+		 */
+		private volatile long latency = -1;
+
+		/**
+		 * Records a failed request.
+		 *
+		 * @since 1.3.0
+		 */
+		public void failed() {
+			blockedUntil = System.currentTimeMillis() + COOLDOWN;
+		}
+
+		/**
+		 * Gets the response time used for ordering the mirrors. Mirrors with an unknown response time are ordered after the measured ones.
+		 *
+		 * @return The response time
+		 * @since 1.3.0
+		 */
+		public long getLatency() {
+			long latency = this.latency;
+			return latency < 0 ? Long.MAX_VALUE : latency;
+		}
+
+		/**
+		 * Checks whether the mirror should be avoided.
+		 *
+		 * @param now The current time, in epoch milliseconds
+		 * @return True if the mirror failed recently
+		 * @since 1.3.0
+		 */
+		public boolean isBlocked(long now) {
+			return blockedUntil > now;
+		}
+
+		/**
+		 * Records a successful request.
+		 *
+		 * @param time The response time of the request, in milliseconds
+		 * @since 1.3.0
+		 */
+		public synchronized void succeeded(long time) {
+			latency = latency < 0 ? time : (latency * 3 + time) / 4;
+			blockedUntil = 0;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.Launcher;
+import tibetiroka.esmanager.config.MirrorSettings;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Tracks whether the launcher can reach the network. Connectivity is checked by opening a connection to the configured {@link MirrorSettings mirrors} and a well-known host, through the configured proxy if there is one, which fails quickly when the network is down, instead of waiting for the timeouts of the actual requests. Any {@link #reportSuccess(String) successful request} also proves that the network is reachable. Work that requires the network can be {@link #whenOnline(String, Runnable) queued}, and it is started automatically once the network is reachable again.
+ * <p>The user can also enable offline mode, in which case the network is considered unreachable regardless of the connectivity.</p>
+ *
+ * @since 1.3.0
+ */
+public class NetworkMonitor {
+	/**
+	 * The work waiting for the network to become reachable.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentLinkedQueue<@NotNull PendingTask> PENDING = new ConcurrentLinkedQueue<>();
+	/**
+	 * The host used for checking connectivity if none of the mirrors can be reached.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String PROBE_HOST = (String) AppConfiguration.DEFAULT_CONFIGURATION.get("network.probe.host");
+	/**
+	 * The time between connectivity checks while the network is unreachable, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long PROBE_INTERVAL = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.probe.interval")).longValue();
+	/**
+	 * The port used for checking connectivity with hosts that don't specify one.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int PROBE_PORT = 443;
+	/**
+	 * The maximum time to wait for the connectivity check, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int PROBE_TIMEOUT = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.probe.timeout")).intValue();
+	/**
+	 * The time a connectivity check is considered up-to-date, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long PROBE_VALIDITY = 5000;
+	private static final Logger log = LoggerFactory.getLogger(NetworkMonitor.class);
+	/**
+	 * The time of the last connectivity check, in epoch milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static volatile long lastProbe = 0;
+	/**
+	 * Stores whether the network was reachable during the last check.
+	 *
+	 * @since 1.3.0
+	 */
+	private static volatile boolean reachable = true;
+	/**
+	 * The timer running the periodic connectivity checks, or null if there are no pending tasks.
+	 *
+	 * @since 1.3.0
+	 */
+	private static volatile @Nullable Timer timer;
+
+	/**
+	 * Checks whether the network is usable. If offline mode is disabled and the last connectivity check is out of date, the connectivity is checked again.
+	 *
+	 * @return True if online
+	 * @since 1.3.0
+	 */
+	public static boolean isOnline() {
+		if(isOfflineMode()) {
+			return false;
+		}
+		if(System.currentTimeMillis() - lastProbe > PROBE_VALIDITY) {
+			probe();
+		}
+		return reachable;
+	}
+
+	/**
+	 * Checks whether the user has enabled offline mode.
+	 *
+	 * @return True if in offline mode
+	 * @since 1.3.0
+	 */
+	public static boolean isOfflineMode() {
+		return Launcher.getLauncher().offlineModeProperty().get();
+	}
+
+	/**
+	 * Checks the connectivity, and starts the pending tasks if the network is reachable. The remote mirrors are tried first, then the {@link #PROBE_HOST probe host}; the network is reachable if any of them accept a connection.
+	 *
+	 * @return True if the network is reachable and offline mode is disabled
+	 * @since 1.3.0
+	 */
+	public static boolean probe() {
+		String reached = null;
+		for(URI host : getProbeHosts()) {
+			try(Socket socket = new Socket()) {
+				socket.connect(getProbeAddress(host), PROBE_TIMEOUT);
+				reached = host.getHost();
+				break;
+			} catch(IOException | IllegalArgumentException e) {
+				log.debug(localize("log.network.probe.fail", host.getHost(), e.getMessage()));
+			}
+		}
+		lastProbe = System.currentTimeMillis();
+		setReachable(reached != null, reached == null ? PROBE_HOST : reached);
+		return reachable && !isOfflineMode();
+	}
+
+	/**
+	 * Records that a request to a remote host succeeded. This proves that the network is reachable, so the next connectivity check is postponed, and the pending tasks are started.
+	 *
+	 * @param host The host that responded
+	 * @since 1.3.0
+	 */
+	public static void reportSuccess(@NotNull String host) {
+		lastProbe = System.currentTimeMillis();
+		setReachable(true, host);
+	}
+
+	/**
+	 * Runs the task on a new thread once the network is usable. If the network is usable, the task is started immediately. Otherwise, it is started once connectivity returns and offline mode is disabled.
+	 *
+	 * @param name The name of the task, also used as the name of its thread
+	 * @param task The task to run
+	 * @since 1.3.0
+	 */
+	public static void whenOnline(@NotNull String name, @NotNull Runnable task) {
+		new Thread(() -> {
+			Main.configureThread(Thread.currentThread(), false);
+			if(isOnline()) {
+				task.run();
+			} else {
+				log.info(localize("log.network.task.queued", name));
+				PENDING.add(new PendingTask(name, task));
+				schedule();
+			}
+		}, name).start();
+	}
+
+	/**
+	 * Gets the address to connect to for checking the connectivity with a host. If a proxy is configured for the host, the address of the proxy is used instead.
+	 *
+	 * @param host The host to check
+	 * @return The address to connect to
+	 * @since 1.3.0
+	 */
+	private static @NotNull InetSocketAddress getProbeAddress(@NotNull URI host) {
+		int port = host.getPort() == -1 ? (host.getScheme().equalsIgnoreCase("http") ? 80 : PROBE_PORT) : host.getPort();
+		ProxySelector selector = ProxySelector.getDefault();
+		if(selector != null) {
+			for(Proxy proxy : selector.select(host)) {
+				if(proxy.type() != Proxy.Type.DIRECT && proxy.address() instanceof InetSocketAddress address) {
+					return address;
+				}
+			}
+		}
+		return new InetSocketAddress(host.getHost(), port);
+	}
+
+	/**
+	 * Gets the hosts used for checking connectivity: the remote mirrors in the order they are configured, followed by the {@link #PROBE_HOST probe host}.
+	 *
+	 * @return The hosts to check
+	 * @since 1.3.0
+	 */
+	private static @NotNull List<@NotNull URI> getProbeHosts() {
+		LinkedHashSet<URI> hosts = new LinkedHashSet<>();
+		MirrorSettings settings = MirrorSettings.getSettings();
+		if(settings != null) {
+			synchronized(settings) {
+				for(List<String> mirrors : settings.getMirrors().values()) {
+					for(String mirror : mirrors) {
+						try {
+							URI uri = URI.create(mirror);
+							if(uri.getHost() != null && uri.getScheme() != null && uri.getScheme().toLowerCase().startsWith("http")) {
+								hosts.add(URI.create(uri.getScheme().toLowerCase() + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : ":" + uri.getPort())));
+							}
+						} catch(IllegalArgumentException ignored) {
+						}
+					}
+				}
+			}
+		}
+		hosts.add(URI.create("https://" + PROBE_HOST));
+		return new ArrayList<>(hosts);
+	}
+
+	/**
+	 * Starts all pending tasks, and stops the periodic connectivity checks. The tasks wait for the {@link ResourceGovernor#awaitIdle() running game sessions} to end before starting.
+	 *
+	 * @since 1.3.0
+	 */
+	private static synchronized void resume() {
+		if(timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		for(PendingTask pending = PENDING.poll(); pending != null; pending = PENDING.poll()) {
+			log.info(localize("log.network.task.resume", pending.name()));
+			Runnable task = pending.task();
+			new Thread(() -> {
+				Main.configureThread(Thread.currentThread(), false);
+				try {
+					ResourceGovernor.awaitIdle();
+				} catch(InterruptedException e) {
+					return;
+				}
+				task.run();
+			}, pending.name()).start();
+		}
+	}
+
+	/**
+	 * Starts the periodic connectivity checks, if not already running.
+	 *
+	 * @since 1.3.0
+	 */
+	private static synchronized void schedule() {
+		if(timer == null) {
+			timer = new Timer("Network Probe Thread", true);
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					probe();
+				}
+			}, PROBE_INTERVAL, PROBE_INTERVAL);
+		}
+	}
+
+	/**
+	 * Updates the connectivity, and starts the pending tasks if the network is usable.
+	 *
+	 * @param reachable True if the network is reachable
+	 * @param host      The host the connectivity was checked with
+	 * @since 1.3.0
+	 */
+	private static void setReachable(boolean reachable, @NotNull String host) {
+		boolean wasReachable = NetworkMonitor.reachable;
+		NetworkMonitor.reachable = reachable;
+		if(wasReachable != reachable) {
+			log.info(localize(reachable ? "log.network.online" : "log.network.offline", host));
+		}
+		if(reachable && (timer != null || !PENDING.isEmpty()) && !isOfflineMode()) {
+			resume();
+		}
+	}
+
+	/**
+	 * A task waiting for the network.
+	 *
+	 * @param name The name of the task
+	 * @param task The task to run
+	 * @since 1.3.0
+	 */
+	private record PendingTask(@NotNull String name, @NotNull Runnable task) {
+	}
+}
@@ -0,0 +1,805 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.apache.commons.codec.binary.Hex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.GensonFactory;
+import tibetiroka.esmanager.config.PeerSettings;
+import tibetiroka.esmanager.instance.source.GitHubArtifactResolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Shares builds and downloads between launchers on the same network. If {@link PeerSettings#isServing() sharing} is enabled, the builds and downloads of this launcher are stored in a content-addressed cache, which is served to the peers by the {@link PeerServer}.
+ * <p>Artifacts are always transferred by their SHA-256 digest. Downloads are requested by the digest GitHub reports for the release asset, so peers are never trusted to describe them; downloads without such a digest are never requested from peers. Builds are requested by the digest the configured {@link PeerSettings#getPeers() peers} report for the build key, unless a {@link PeerSettings#getBuildDigest(String) pinned digest} is configured for the key, in which case only that digest is accepted. Received files are saved into a temporary file, and only replace the target once they match the digest.</p>
+ * <p>Builds are identified by the hash of the tree they were built from, and downloads by their location. Only downloads from immutable locations, such as release assets, are shared, so peers never serve outdated copies of files that change in place.</p>
+ * <p>Downloads can also be {@link #prefetch(URL) prefetched} into the cache before they are needed, regardless of sharing. Cached downloads are read locally instead of being downloaded again.</p>
+ *
+ * @since 1.3.0
+ */
+public class PeerCache {
+	/**
+	 * The directory of the cache.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File CACHE_HOME = new File(AppConfiguration.DATA_HOME, "peer-cache");
+	/**
+	 * The time a failed peer is avoided for, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long COOLDOWN = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("network.mirrors.cooldown")).longValue();
+	/**
+	 * The maximum number of bytes read when a download is closed before its end, to complete the cached copy.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long DRAIN_LIMIT = 1024 * 1024;
+	/**
+	 * The time of the last failure of the peers, by their base URL.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull String, @NotNull Long> FAILED_PEERS = new ConcurrentHashMap<>();
+	/**
+	 * The file storing the cached artifacts.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File INDEX_FILE = new File(CACHE_HOME, "index.json");
+	/**
+	 * The maximum size of the cached artifacts, in bytes.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAX_SIZE = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("peer.cache.size")).longValue();
+	/**
+	 * The directory of the cached artifacts, named by their digest.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File OBJECTS = new File(CACHE_HOME, "objects");
+	/**
+	 * The downloads that are being prefetched, by location. The futures are completed when the prefetching ends.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull String, @NotNull CompletableFuture<Void>> PREFETCHING = new ConcurrentHashMap<>();
+	/**
+	 * The maximum time to wait for a peer to respond.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Duration TIMEOUT = Duration.ofMillis(((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("peer.timeout")).longValue());
+	/**
+	 * The directory of the partially received artifacts.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File TEMP = new File(CACHE_HOME, "tmp");
+	/**
+	 * The digests of downloads reported by GitHub, by location.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull ConcurrentHashMap<@NotNull String, @NotNull String> TRUSTED_DIGESTS = new ConcurrentHashMap<>();
+	private static final Logger log = LoggerFactory.getLogger(PeerCache.class);
+	/**
+	 * The loaded cache, or null if not yet loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable PeerCache cache;
+	/**
+	 * The digests of the cached builds, by build key.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull String> builds = new HashMap<>();
+	/**
+	 * The digests of the cached downloads, by location.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull String> downloads = new HashMap<>();
+
+	public PeerCache() {
+	}
+
+	/**
+	 * Queries the peers for a build, and saves the first verified copy. Each peer is asked for the digest of its build of the key, unless the digest is {@link PeerSettings#getBuildDigest(String) pinned}; the build is then requested by that digest. The target is only replaced by a copy matching the digest.
+	 *
+	 * @param key    The key of the build
+	 * @param target The file to save the build into
+	 * @return True if a peer had the build
+	 * @since 1.3.0
+	 */
+	public static boolean fetchBuild(@NotNull String key, @NotNull File target) {
+		List<String> peers = getPeers();
+		if(peers.isEmpty() || !isValidBuildKey(key)) {
+			return false;
+		}
+		String pinned = PeerSettings.getSettings().getBuildDigest(key);
+		for(String peer : peers) {
+			String digest = pinned == null ? queryBuildDigest(peer, key) : pinned;
+			if(digest != null && fetch(peer, digest, target)) {
+				log.info(localize("log.peer.build.fetched", key, peer));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a download is stored in the cache.
+	 *
+	 * @param url The location of the download
+	 * @return True if the download can be read locally
+	 * @since 1.3.0
+	 */
+	public static boolean isCached(@NotNull URL url) {
+		return isShareable(url) && findDownload(url.toString()) != null;
+	}
+
+	/**
+	 * Opens a download from the cache, or queries the peers for it. If the download is being {@link #prefetch(URL) prefetched}, the prefetching is waited for first. Copies received from peers are saved into a temporary file, which is deleted when the returned stream is closed.
+	 *
+	 * @param url The location of the download
+	 * @return The stream of the download, or null if it is not cached and no peer had it
+	 * @since 1.3.0
+	 */
+	public static @Nullable InputStream openDownload(@NotNull URL url) {
+		if(!isShareable(url)) {
+			return null;
+		}
+		CompletableFuture<Void> pending = PREFETCHING.get(url.toString());
+		if(pending != null) {
+			log.debug(localize("log.peer.prefetch.wait", url));
+			try {
+				pending.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch(ExecutionException ignored) {
+			}
+		}
+		File cached = findDownload(url.toString());
+		if(cached != null) {
+			try {
+				InputStream input = new FileInputStream(cached);
+				log.info(localize("log.peer.download.local", url));
+				return input;
+			} catch(IOException e) {
+				log.debug(localize("log.peer.download.fail", url, e.getMessage()));
+			}
+		}
+		List<String> peers = getPeers();
+		if(peers.isEmpty()) {
+			return null;
+		}
+		String digest = getTrustedDigest(url);
+		if(digest == null) {
+			return null;
+		}
+		try {
+			TEMP.mkdirs();
+			File temp = File.createTempFile("download", ".part", TEMP);
+			for(String peer : peers) {
+				if(fetch(peer, digest, temp)) {
+					log.info(localize("log.peer.download.fetched", url, peer));
+					return Files.newInputStream(temp.toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+				}
+			}
+			Files.deleteIfExists(temp.toPath());
+		} catch(IOException e) {
+			log.debug(localize("log.peer.download.fail", url, e.getMessage()));
+		}
+		return null;
+	}
+
+	/**
+	 * Downloads a file into the cache before it is needed. The peers are queried first, then the {@link MirrorResolver mirrors} of the location. Downloads that are already cached or can't be shared are skipped. The download stops if the thread is interrupted.
+	 *
+	 * @param url The location of the download
+	 * @return True if the download was stored in the cache
+	 * @throws IOException If the download failed
+	 * @since 1.3.0
+	 */
+	public static boolean prefetch(@NotNull URL url) throws IOException {
+		if(!isShareable(url) || isCached(url)) {
+			return false;
+		}
+		CompletableFuture<Void> pending = new CompletableFuture<>();
+		if(PREFETCHING.putIfAbsent(url.toString(), pending) != null) {
+			return false;
+		}
+		File temp = null;
+		try {
+			List<String> peers = getPeers();
+			String trusted = peers.isEmpty() ? null : getTrustedDigest(url);
+			TEMP.mkdirs();
+			temp = File.createTempFile("prefetch", ".part", TEMP);
+			for(String peer : trusted == null ? List.<String>of() : peers) {
+				if(fetch(peer, trusted, temp)) {
+					getCache().store(url.toString(), temp, trusted, false);
+					log.info(localize("log.peer.prefetch", url, peer));
+					return true;
+				}
+			}
+			MessageDigest digest = createDigest();
+			try(InputStream input = new DigestInputStream(MirrorResolver.openStream(url), digest); OutputStream output = new FileOutputStream(temp)) {
+				byte[] buffer = new byte[65536];
+				int read;
+				while((read = input.read(buffer)) >= 0) {
+					if(Thread.interrupted()) {
+						throw new InterruptedIOException(localize("log.peer.prefetch.cancel", url));
+					}
+					output.write(buffer, 0, read);
+				}
+			}
+			getCache().store(url.toString(), temp, Hex.encodeHexString(digest.digest()), false);
+			log.info(localize("log.peer.prefetch", url, url.getHost()));
+			return true;
+		} finally {
+			PREFETCHING.remove(url.toString());
+			pending.complete(null);
+			if(temp != null) {
+				Files.deleteIfExists(temp.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Stores a download in the cache while it is read, if sharing is enabled. The download is only stored if it is read to the end.
+	 *
+	 * @param url   The location of the download
+	 * @param input The stream of the download
+	 * @return The stream to read the download from
+	 * @since 1.3.0
+	 */
+	public static @NotNull InputStream record(@NotNull URL url, @NotNull InputStream input) {
+		if(!isServing() || !isShareable(url)) {
+			return input;
+		}
+		try {
+			TEMP.mkdirs();
+			return new RecordingInputStream(input, url.toString(), File.createTempFile("download", ".part", TEMP));
+		} catch(IOException e) {
+			log.debug(localize("log.peer.store.fail", url, e.getMessage()));
+			return input;
+		}
+	}
+
+	/**
+	 * Stores a build in the cache, if sharing is enabled.
+	 *
+	 * @param key  The key of the build
+	 * @param file The built file
+	 * @since 1.3.0
+	 */
+	public static void storeBuild(@NotNull String key, @NotNull File file) {
+		if(!isServing() || !file.isFile()) {
+			return;
+		}
+		try {
+			TEMP.mkdirs();
+			File temp = File.createTempFile("build", ".part", TEMP);
+			MessageDigest digest = createDigest();
+			try(InputStream input = new DigestInputStream(new FileInputStream(file), digest)) {
+				Files.copy(input, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			getCache().store(key, temp, Hex.encodeHexString(digest.digest()), true);
+		} catch(IOException e) {
+			log.debug(localize("log.peer.store.fail", key, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Finds a cached build.
+	 *
+	 * @param key The key of the build
+	 * @return The cached file, named by its digest, or null if not cached
+	 * @since 1.3.0
+	 */
+	static @Nullable File findBuild(@NotNull String key) {
+		return isValidBuildKey(key) ? getCache().find(key, true) : null;
+	}
+
+	/**
+	 * Finds a cached download.
+	 *
+	 * @param url The location of the download
+	 * @return The cached file, named by its digest, or null if not cached
+	 * @since 1.3.0
+	 */
+	static @Nullable File findDownload(@NotNull String url) {
+		return getCache().find(url, false);
+	}
+
+	/**
+	 * Finds a cached artifact by its digest, and marks it as recently used.
+	 *
+	 * @param digest The SHA-256 digest of the artifact, as a lowercase hex string
+	 * @return The cached file, or null if not cached
+	 * @since 1.3.0
+	 */
+	static @Nullable File findObject(@NotNull String digest) {
+		if(!digest.matches("[0-9a-f]{64}")) {
+			return null;
+		}
+		File object = new File(OBJECTS, digest);
+		if(!object.isFile()) {
+			return null;
+		}
+		object.setLastModified(System.currentTimeMillis());
+		return object;
+	}
+
+	/**
+	 * Creates a new SHA-256 digest.
+	 *
+	 * @return The digest
+	 * @since 1.3.0
+	 */
+	private static @NotNull MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Requests an artifact from a peer by its digest. The artifact is received into a temporary file, which only replaces the target if it matches the digest; otherwise the target is left untouched.
+	 *
+	 * @param peer     The base URL of the peer
+	 * @param expected The SHA-256 digest of the artifact, known independently of the peer
+	 * @param target   The file to save the artifact into
+	 * @return True if the artifact was received and verified
+	 * @since 1.3.0
+	 */
+	private static boolean fetch(@NotNull String peer, @NotNull String expected, @NotNull File target) {
+		File temp = null;
+		try {
+			URI uri = URI.create(peer + "/objects/" + expected.toLowerCase());
+			HttpResponse<InputStream> response = HttpUtils.send(HttpUtils.request(uri).timeout(TIMEOUT).GET().build());
+			try(InputStream body = response.body()) {
+				if(response.statusCode() != 200) {
+					return false;
+				}
+				MessageDigest digest = createDigest();
+				TEMP.mkdirs();
+				temp = File.createTempFile("peer", ".part", TEMP);
+				Files.copy(new DigestInputStream(body, digest), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				if(!Hex.encodeHexString(digest.digest()).equalsIgnoreCase(expected)) {
+					log.warn(localize("log.peer.digest.mismatch", expected, peer));
+					return false;
+				}
+			}
+			target.getAbsoluteFile().getParentFile().mkdirs();
+			try {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch(IOException | IllegalArgumentException e) {
+			FAILED_PEERS.put(peer, System.currentTimeMillis());
+			log.debug(localize("log.peer.fail", peer, e.getMessage()));
+			return false;
+		} finally {
+			if(temp != null) {
+				try {
+					Files.deleteIfExists(temp.toPath());
+				} catch(IOException ignored) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the loaded cache, loading it from the index file if necessary.
+	 *
+	 * @return The cache
+	 * @since 1.3.0
+	 */
+	private static synchronized @NotNull PeerCache getCache() {
+		if(cache == null) {
+			if(INDEX_FILE.isFile()) {
+				try(InputStream input = new FileInputStream(INDEX_FILE)) {
+					cache = GensonFactory.GENSON.deserialize(input, PeerCache.class);
+				} catch(Exception e) {
+					log.debug(localize("log.peer.index.load.fail", e.getMessage()));
+				}
+			}
+			if(cache == null) {
+				cache = new PeerCache();
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the peers that can be queried. Peers that failed recently are skipped, and no peers are queried in offline mode.
+	 *
+	 * @return The base URLs of the peers
+	 * @since 1.3.0
+	 */
+	private static @NotNull List<@NotNull String> getPeers() {
+		PeerSettings settings = PeerSettings.getSettings();
+		if(settings == null || NetworkMonitor.isOfflineMode()) {
+			return List.of();
+		}
+		long now = System.currentTimeMillis();
+		ArrayList<String> peers = new ArrayList<>();
+		for(String peer : settings.getPeers()) {
+			Long failed = FAILED_PEERS.get(peer);
+			if(failed == null || now - failed > COOLDOWN) {
+				peers.add(peer.endsWith("/") ? peer.substring(0, peer.length() - 1) : peer);
+			}
+		}
+		return peers;
+	}
+
+	/**
+	 * Gets the digest of a download reported by GitHub, which can be used to verify copies received from peers. Successful lookups are remembered, since shared downloads never change.
+	 *
+	 * @param url The location of the download
+	 * @return The SHA-256 digest of the download, or null if it is not known
+	 * @since 1.3.0
+	 */
+	private static @Nullable String getTrustedDigest(@NotNull URL url) {
+		String digest = TRUSTED_DIGESTS.get(url.toString());
+		if(digest != null) {
+			return digest;
+		}
+		try {
+			digest = GitHubArtifactResolver.findReleaseDigest(url);
+		} catch(IOException e) {
+			log.debug(localize("log.peer.download.fail", url, e.getMessage()));
+			return null;
+		}
+		if(digest == null) {
+			log.debug(localize("log.peer.download.untrusted", url));
+			return null;
+		}
+		TRUSTED_DIGESTS.put(url.toString(), digest);
+		return digest;
+	}
+
+	/**
+	 * Checks whether the builds and downloads of this launcher are shared.
+	 *
+	 * @return True if sharing is enabled
+	 * @since 1.3.0
+	 */
+	private static boolean isServing() {
+		PeerSettings settings = PeerSettings.getSettings();
+		return settings != null && settings.isServing();
+	}
+
+	/**
+	 * Checks whether a download can be shared. Only downloads from locations whose contents never change are shared; the assets of the {@code continuous} release are replaced in place, so they are excluded.
+	 *
+	 * @param url The location of the download
+	 * @return True if the download can be shared
+	 * @since 1.3.0
+	 */
+	private static boolean isShareable(@NotNull URL url) {
+		String location = url.toString();
+		if(location.contains("/releases/download/continuous/")) {
+			return false;
+		}
+		for(String key : new String[]{"source.instance.remoteRepositoryDownload", "source.launcher.remoteRepositoryDownload", "source.github.workflow.artifact.download"}) {
+			String prefix = (String) AppConfiguration.DEFAULT_CONFIGURATION.get(key);
+			int variable = prefix.indexOf("${");
+			if(location.startsWith(variable < 0 ? prefix : prefix.substring(0, variable))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a build key can be used in the path of a request.
+	 *
+	 * @param key The key of the build
+	 * @return True if the key only contains letters, digits, dots, underscores and dashes
+	 * @since 1.3.0
+	 */
+	private static boolean isValidBuildKey(@NotNull String key) {
+		return key.matches("[0-9A-Za-z._-]+");
+	}
+
+	/**
+	 * Asks a peer for the digest of its build of the key.
+	 *
+	 * @param peer The base URL of the peer
+	 * @param key  The key of the build
+	 * @return The SHA-256 digest of the build, as a lowercase hex string, or null if the peer doesn't have the build
+	 * @since 1.3.0
+	 */
+	private static @Nullable String queryBuildDigest(@NotNull String peer, @NotNull String key) {
+		try {
+			URI uri = URI.create(peer + "/builds/" + key);
+			HttpResponse<InputStream> response = HttpUtils.send(HttpUtils.request(uri).timeout(TIMEOUT).GET().build());
+			try(InputStream body = response.body()) {
+				if(response.statusCode() != 200) {
+					log.debug(localize("log.peer.build.missing", key, peer));
+					return null;
+				}
+				String digest = new String(body.readNBytes(128), StandardCharsets.US_ASCII).trim().toLowerCase();
+				return digest.matches("[0-9a-f]{64}") ? digest : null;
+			}
+		} catch(IOException | IllegalArgumentException e) {
+			FAILED_PEERS.put(peer, System.currentTimeMillis());
+			log.debug(localize("log.peer.fail", peer, e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the least recently used artifacts until the cache fits into its size limit.
+	 *
+	 * @since 1.3.0
+	 */
+	private synchronized void evict() {
+		File[] objects = OBJECTS.listFiles();
+		if(objects == null) {
+			return;
+		}
+		long size = Arrays.stream(objects).mapToLong(File::length).sum();
+		if(size <= MAX_SIZE) {
+			return;
+		}
+		Arrays.sort(objects, Comparator.comparingLong(File::lastModified));
+		HashSet<String> removed = new HashSet<>();
+		for(File object : objects) {
+			if(size <= MAX_SIZE) {
+				break;
+			}
+			long length = object.length();
+			if(object.delete()) {
+				size -= length;
+				removed.add(object.getName());
+			}
+		}
+		builds.values().removeAll(removed);
+		downloads.values().removeAll(removed);
+		log.debug(localize("log.peer.evict", removed.size()));
+	}
+
+	/**
+	 * Finds a cached artifact, and marks it as recently used.
+	 *
+	 * @param key   The key of the artifact
+	 * @param build True for builds, false for downloads
+	 * @return The cached file, or null if not cached
+	 * @since 1.3.0
+	 */
+	private synchronized @Nullable File find(@NotNull String key, boolean build) {
+		String digest = (build ? builds : downloads).get(key);
+		if(digest == null) {
+			return null;
+		}
+		File object = new File(OBJECTS, digest);
+		if(!object.isFile()) {
+			return null;
+		}
+		object.setLastModified(System.currentTimeMillis());
+		return object;
+	}
+
+	/**
+	 * Saves the index of the cache.
+	 *
+	 * @since 1.3.0
+	 */
+	private synchronized void save() {
+		try {
+			Files.writeString(INDEX_FILE.toPath(), GensonFactory.GENSON.serialize(this), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+		} catch(IOException e) {
+			log.warn(localize("log.peer.index.save.fail", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Moves an artifact into the cache.
+	 *
+	 * @param key    The key of the artifact
+	 * @param temp   The file of the artifact, which is moved into the cache
+	 * @param digest The digest of the artifact
+	 * @param build  True for builds, false for downloads
+	 * @throws IOException If the artifact could not be moved
+	 * @since 1.3.0
+	 */
+	private synchronized void store(@NotNull String key, @NotNull File temp, @NotNull String digest, boolean build) throws IOException {
+		OBJECTS.mkdirs();
+		Files.move(temp.toPath(), new File(OBJECTS, digest).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		(build ? builds : downloads).put(key, digest);
+		evict();
+		save();
+		log.debug(localize("log.peer.store", key, digest));
+	}
+
+	/**
+	 * A stream that copies the read contents into the cache.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class RecordingInputStream extends FilterInputStream {
+		/**
+		 * The digest of the read contents.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull MessageDigest digest = createDigest();
+		/**
+		 * The location of the download.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull String location;
+		/**
+		 * The copy of the read contents.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull OutputStream output;
+		/**
+		 * The file of the copy.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull File temp;
+		/**
+		 * Stores whether the end of the stream was reached.
+		 *
+		 * @since 1.3.0
+		 */
+		private boolean complete = false;
+		/**
+		 * Stores whether the copy is unusable.
+		 *
+		 * @since 1.3.0
+		 */
+		private boolean failed = false;
+
+		/**
+		 * Creates a new recording stream.
+		 *
+		 * @param input    The stream of the download
+		 * @param location The location of the download
+		 * @param temp     The file to copy the contents into
+		 * @throws IOException If the file could not be opened
+		 * @since 1.3.0
+		 */
+		public RecordingInputStream(@NotNull InputStream input, @NotNull String location, @NotNull File temp) throws IOException {
+			super(input);
+			this.location = location;
+			this.temp = temp;
+			this.output = new FileOutputStream(temp);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if(!complete && !failed) {
+					byte[] buffer = new byte[8192];
+					long drained = 0;
+					int read;
+					while(drained < DRAIN_LIMIT && (read = read(buffer)) >= 0) {
+						drained += read;
+					}
+				}
+			} catch(IOException e) {
+				failed = true;
+			}
+			try {
+				super.close();
+			} finally {
+				output.close();
+				if(complete && !failed) {
+					try {
+						getCache().store(location, temp, Hex.encodeHexString(digest.digest()), false);
+					} catch(IOException e) {
+						log.debug(localize("log.peer.store.fail", location, e.getMessage()));
+					}
+				}
+				Files.deleteIfExists(temp.toPath());
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if(read < 0) {
+				complete = true;
+			} else {
+				record(new byte[]{(byte) read}, 0, 1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte @NotNull [] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read < 0) {
+				complete = true;
+			} else {
+				record(b, off, read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			failed = true;
+			return super.skip(n);
+		}
+
+		/**
+		 * Copies the read contents into the cache. Failures only stop the copying, they don't affect the reader.
+		 *
+		 * @param b   The read bytes
+		 * @param off The offset of the read bytes
+		 * @param len The number of read bytes
+		 * @since 1.3.0
+		 */
+		private void record(byte @NotNull [] b, int off, int len) {
+			if(failed) {
+				return;
+			}
+			try {
+				output.write(b, off, len);
+				digest.update(b, off, len);
+			} catch(IOException e) {
+				failed = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.PeerSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Serves the artifacts of the {@link PeerCache} to other launchers. Artifacts are only available by their SHA-256 digest at {@code /objects/<digest>}, so the receiver always knows what it should get, and can verify it. The digests of the shared builds are listed by build key at {@code /builds/<key>}. The server is bound to the {@link PeerSettings#getAddress() configured address}, and only answers the {@link PeerSettings#getClients() allowed clients}.
+ *
+ * @since 1.3.0
+ */
+public class PeerServer {
+	/**
+	 * The number of threads serving requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int THREADS = 4;
+	private static final Logger log = LoggerFactory.getLogger(PeerServer.class);
+	/**
+	 * The running server, or null if not running.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable HttpServer server;
+
+	/**
+	 * Gets the address the server is bound to.
+	 *
+	 * @return The address, or null if the server is not running
+	 * @since 1.3.0
+	 */
+	public static synchronized @Nullable InetSocketAddress getAddress() {
+		return server == null ? null : server.getAddress();
+	}
+
+	/**
+	 * Starts the server, if sharing is enabled and the server is not yet running.
+	 *
+	 * @throws IOException If the server could not be started
+	 * @since 1.3.0
+	 */
+	public static synchronized void start() throws IOException {
+		PeerSettings settings = PeerSettings.getSettings();
+		if(server != null || settings == null || !settings.isServing()) {
+			return;
+		}
+		HttpServer created = HttpServer.create(new InetSocketAddress(settings.getAddress(), settings.getPort()), 0);
+		List<String> clients = settings.getClients();
+		created.createContext("/builds/", exchange -> serve(exchange, clients, PeerCache.findBuild(exchange.getRequestURI().getPath().substring("/builds/".length())), true));
+		created.createContext("/objects/", exchange -> serve(exchange, clients, PeerCache.findObject(exchange.getRequestURI().getPath().substring("/objects/".length())), false));
+		created.setExecutor(Executors.newFixedThreadPool(THREADS, r -> {
+			Thread thread = new Thread(r, "Peer Server Thread");
+			thread.setDaemon(true);
+			return thread;
+		}));
+		created.start();
+		server = created;
+		log.info(localize("log.peer.server.start", created.getAddress().getHostString() + ":" + created.getAddress().getPort()));
+	}
+
+	/**
+	 * Stops the server, if running.
+	 *
+	 * @since 1.3.0
+	 */
+	public static synchronized void stop() {
+		if(server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	/**
+	 * Sends an artifact, or its digest, as the response of the exchange.
+	 *
+	 * @param exchange The exchange to respond to
+	 * @param clients  The addresses of the allowed clients, or empty to allow any client
+	 * @param file     The artifact, named by its digest, or null if not found
+	 * @param digest   True to send the digest of the artifact instead of its contents
+	 * @throws IOException If the response could not be sent
+	 * @since 1.3.0
+	 */
+	private static void serve(@NotNull HttpExchange exchange, @NotNull List<@NotNull String> clients, @Nullable File file, boolean digest) throws IOException {
+		try {
+			if(!clients.isEmpty() && !clients.contains(exchange.getRemoteAddress().getAddress().getHostAddress())) {
+				log.debug(localize("log.peer.server.reject", exchange.getRemoteAddress()));
+				exchange.sendResponseHeaders(403, -1);
+			} else if(!exchange.getRequestMethod().equals("GET")) {
+				exchange.sendResponseHeaders(405, -1);
+			} else if(file == null) {
+				exchange.sendResponseHeaders(404, -1);
+			} else if(digest) {
+				byte[] name = file.getName().getBytes(StandardCharsets.US_ASCII);
+				exchange.sendResponseHeaders(200, name.length);
+				exchange.getResponseBody().write(name);
+			} else {
+				log.debug(localize("log.peer.server.serve", file.getName(), exchange.getRemoteAddress()));
+				exchange.sendResponseHeaders(200, file.length());
+				Files.copy(file.toPath(), exchange.getResponseBody());
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Ref.Storage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.GensonFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Lists the refs of remote git repositories using their {@link MirrorResolver mirrors}, and remembers the last listed refs. When the network is {@link NetworkMonitor#isOnline() unusable}, the remembered refs are returned instead. Only the refs the caller is interested in are remembered: pull request refs are never remembered unless explicitly requested, as a repository can have thousands of them.
+ *
+ * @since 1.3.0
+ */
+public class RemoteRefCache {
+	/**
+	 * The file storing the remembered refs.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull File CACHE_FILE = new File(AppConfiguration.DATA_HOME, "remote-refs.json");
+	/**
+	 * The prefix of the refs of pull requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull String PULL_REQUEST_REFS = "refs/pull/";
+	private static final Logger log = LoggerFactory.getLogger(RemoteRefCache.class);
+	/**
+	 * The loaded cache, or null if not yet loaded.
+	 *
+	 * @since 1.3.0
+	 */
+	private static @Nullable RemoteRefCache cache;
+	/**
+	 * The remembered refs, by remote and listing options. The refs are stored by name, with the name of the object they point to as the value.
+	 *
+	 * @since 1.3.0
+	 */
+	private @NotNull HashMap<@NotNull String, @NotNull HashMap<@NotNull String, @NotNull String>> remotes = new HashMap<>();
+
+	public RemoteRefCache() {
+	}
+
+	/**
+	 * Lists the refs of the remote repository, except for the refs of pull requests. The refs are remembered, and they are returned if the network is unusable later.
+	 *
+	 * @param remote The URI of the remote repository
+	 * @param heads  True to only list branches, see {@link org.eclipse.jgit.api.LsRemoteCommand#setHeads(boolean)}
+	 * @param tags   True to only list tags, see {@link org.eclipse.jgit.api.LsRemoteCommand#setTags(boolean)}
+	 * @return The refs of the repository
+	 * @throws GitAPIException If the remote could not be listed, or the network is unusable and there are no remembered refs
+	 * @since 1.3.0
+	 */
+	public static @NotNull Collection<@NotNull Ref> lsRemote(@NotNull String remote, boolean heads, boolean tags) throws GitAPIException {
+		return lsRemote(remote, heads, tags, null);
+	}
+
+	/**
+	 * Lists the refs of the remote repository whose names match the pattern. The matching refs are remembered, and they are returned if the network is unusable later.
+	 *
+	 * @param remote  The URI of the remote repository
+	 * @param heads   True to only list branches, see {@link org.eclipse.jgit.api.LsRemoteCommand#setHeads(boolean)}
+	 * @param tags    True to only list tags, see {@link org.eclipse.jgit.api.LsRemoteCommand#setTags(boolean)}
+	 * @param pattern The regular expression the names of the refs must match, or null for all refs except the refs of pull requests
+	 * @return The matching refs of the repository
+	 * @throws GitAPIException If the remote could not be listed, or the network is unusable and there are no remembered refs
+	 * @since 1.3.0
+	 */
+	public static @NotNull Collection<@NotNull Ref> lsRemote(@NotNull String remote, boolean heads, boolean tags, @Nullable String pattern) throws GitAPIException {
+		String key = remote + "#" + heads + "," + tags + (pattern == null ? "" : "#" + pattern);
+		Predicate<String> filter = pattern == null ? name -> !name.startsWith(PULL_REQUEST_REFS) : Pattern.compile(pattern).asMatchPredicate();
+		if(NetworkMonitor.isOnline()) {
+			Collection<Ref> refs = MirrorResolver.withFailover(remote, false, location -> Git.lsRemoteRepository().setRemote(location).setHeads(heads).setTags(tags).call());
+			ArrayList<Ref> matching = new ArrayList<>();
+			HashMap<String, String> stored = new HashMap<>();
+			for(Ref ref : refs) {
+				if(filter.test(ref.getName())) {
+					matching.add(ref);
+					if(ref.getObjectId() != null) {
+						stored.put(ref.getName(), ref.getObjectId().getName());
+					}
+				}
+			}
+			getCache().store(key, stored);
+			return matching;
+		}
+		HashMap<String, String> stored = getCache().get(key);
+		if(stored == null) {
+			throw new TransportException(localize("log.network.refs.missing", remote));
+		}
+		log.debug(localize("log.network.refs.cached", remote));
+		return toRefs(stored);
+	}
+
+	/**
+	 * Gets the loaded cache, loading it from the cache file if necessary.
+	 *
+	 * @return The cache
+	 * @since 1.3.0
+	 */
+	private static synchronized @NotNull RemoteRefCache getCache() {
+		if(cache == null) {
+			if(CACHE_FILE.isFile()) {
+				try(InputStream input = new FileInputStream(CACHE_FILE)) {
+					cache = GensonFactory.GENSON.deserialize(input, RemoteRefCache.class);
+				} catch(Exception e) {
+					log.debug(localize("log.network.refs.load.fail", e.getMessage()));
+				}
+			}
+			if(cache == null) {
+				cache = new RemoteRefCache();
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Creates refs from the remembered names and objects.
+	 *
+	 * @param stored The remembered refs
+	 * @return The refs
+	 * @since 1.3.0
+	 */
+	private static @NotNull Collection<@NotNull Ref> toRefs(@NotNull HashMap<@NotNull String, @NotNull String> stored) {
+		ArrayList<Ref> refs = new ArrayList<>();
+		for(Entry<String, String> entry : stored.entrySet()) {
+			refs.add(new ObjectIdRef.Unpeeled(Storage.NETWORK, entry.getKey(), ObjectId.fromString(entry.getValue())));
+		}
+		return refs;
+	}
+
+	/**
+	 * Gets the remembered refs of a listing.
+	 *
+	 * @param key The remote and listing options
+	 * @return The remembered refs, or null if not found
+	 * @since 1.3.0
+	 */
+	private synchronized @Nullable HashMap<@NotNull String, @NotNull String> get(@NotNull String key) {
+		return remotes.get(key);
+	}
+
+	/**
+	 * Remembers the refs of a listing, and saves the cache if they have changed.
+	 *
+	 * @param key  The remote and listing options
+	 * @param refs The refs to remember
+	 * @since 1.3.0
+	 */
+	private synchronized void store(@NotNull String key, @NotNull HashMap<@NotNull String, @NotNull String> refs) {
+		if(refs.equals(remotes.put(key, refs))) {
+			return;
+		}
+		try {
+			CACHE_FILE.getParentFile().mkdirs();
+			Files.writeString(CACHE_FILE.toPath(), GensonFactory.GENSON.serialize(this), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+		} catch(IOException e) {
+			log.warn(localize("log.network.refs.save.fail", e.getMessage()));
+		}
+	}
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A zip file on a remote server that supports HTTP range requests. Only the central directory is downloaded when the zip file is opened, and the contents of individual entries can be downloaded without downloading the rest of the file.
+ *
+ * @since 1.3.0
+ */
+public class RemoteZip {
+	/**
+	 * The signature of the end of central directory record.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int END_SIGNATURE = 0x06054b50;
+	/**
+	 * The signature of a central directory file header.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int ENTRY_SIGNATURE = 0x02014b50;
+	/**
+	 * The signature of a local file header.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	/**
+	 * The largest gap between two entries that is downloaded instead of being split into two requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAX_RANGE_GAP = 64 * 1024;//64KB
+	/**
+	 * The number of bytes requested from the end of the file to find the end of central directory record. This covers the largest possible comment and the ZIP64 locator.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int TAIL_SIZE = 22 + 65535 + 20;
+	/**
+	 * The signature of the ZIP64 end of central directory record.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	/**
+	 * The signature of the ZIP64 end of central directory locator.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	/**
+	 * The offset of the central directory in the zip file.
+	 *
+	 * @since 1.3.0
+	 */
+	private final long centralDirectoryOffset;
+	/**
+	 * The entries of the zip file, in the order they are stored in the file.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull List<@NotNull Entry> entries;
+	/**
+	 * The location of the zip file.
+	 *
+	 * @since 1.3.0
+	 */
+	private final @NotNull URL url;
+
+	/**
+	 * Creates a new remote zip file with the specified entries.
+	 *
+	 * @param url                    The location of the zip file
+	 * @param entries                The entries of the zip file
+	 * @param centralDirectoryOffset The offset of the central directory
+	 * @since 1.3.0
+	 */
+	private RemoteZip(@NotNull URL url, @NotNull List<@NotNull Entry> entries, long centralDirectoryOffset) {
+		this.url = url;
+		this.entries = entries;
+		this.centralDirectoryOffset = centralDirectoryOffset;
+		this.entries.sort(Comparator.comparingLong(Entry::getLocalHeaderOffset));
+	}
+
+	/**
+	 * Opens the specified remote zip file by downloading its central directory.
+	 *
+	 * @param url The location of the zip file
+	 * @return The opened zip file
+	 * @throws IOException If the zip file could not be read, or the server doesn't support range requests
+	 * @since 1.3.0
+	 */
+	public static @NotNull RemoteZip open(@NotNull URL url) throws IOException {
+		Range tail = fetch(url, "bytes=-" + TAIL_SIZE);
+		ByteBuffer buffer = ByteBuffer.wrap(tail.data()).order(ByteOrder.LITTLE_ENDIAN);
+		int end = -1;
+		for(int i = tail.data().length - 22; i >= 0; i--) {
+			if(buffer.getInt(i) == END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		}
+		if(end < 0) {
+			throw new IOException("End of central directory not found: " + url);
+		}
+		long count = buffer.getShort(end + 10) & 0xffff;
+		long size = buffer.getInt(end + 12) & 0xffffffffL;
+		long offset = buffer.getInt(end + 16) & 0xffffffffL;
+		if(count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+			if(end < 20 || buffer.getInt(end - 20) != ZIP64_LOCATOR_SIGNATURE) {
+				throw new IOException("ZIP64 locator not found: " + url);
+			}
+			long recordOffset = buffer.getLong(end - 20 + 8);
+			ByteBuffer record = ByteBuffer.wrap(read(url, tail, recordOffset, 56)).order(ByteOrder.LITTLE_ENDIAN);
+			if(record.getInt(0) != ZIP64_END_SIGNATURE) {
+				throw new IOException("Invalid ZIP64 end of central directory: " + url);
+			}
+			count = record.getLong(32);
+			size = record.getLong(40);
+			offset = record.getLong(48);
+		}
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("Central directory is too large: " + url);
+		}
+		ByteBuffer directory = ByteBuffer.wrap(read(url, tail, offset, (int) size)).order(ByteOrder.LITTLE_ENDIAN);
+		ArrayList<Entry> entries = new ArrayList<>();
+		for(long i = 0; i < count; i++) {
+			entries.add(Entry.parse(directory));
+		}
+		return new RemoteZip(url, entries, offset);
+	}
+
+	/**
+	 * Requests a range of the remote file.
+	 *
+	 * @param url   The location of the file
+	 * @param range The value of the range header
+	 * @return The received range
+	 * @throws IOException If the range could not be downloaded, or the server doesn't support range requests
+	 * @since 1.3.0
+	 */
+	private static @NotNull Range fetch(@NotNull URL url, @NotNull String range) throws IOException {
+		HttpResponse<InputStream> response = HttpUtils.openRange(url, range);
+		try(InputStream input = response.body()) {
+			long start = parseContentRangeStart(response.headers().firstValue("content-range").orElse(null));
+			return new Range(start, input.readAllBytes());
+		}
+	}
+
+	/**
+	 * Parses the start of the range from a content range header.
+	 *
+	 * @param header The value of the header
+	 * @return The offset of the first byte of the range
+	 * @since 1.3.0
+	 */
+	private static long parseContentRangeStart(String header) throws IOException {
+		if(header == null || !header.startsWith("bytes ")) {
+			throw new IOException("Unexpected content range: " + header);
+		}
+		try {
+			return Long.parseLong(header.substring("bytes ".length(), header.indexOf('-')).trim());
+		} catch(NumberFormatException | IndexOutOfBoundsException e) {
+			throw new IOException("Unexpected content range: " + header, e);
+		}
+	}
+
+	/**
+	 * Reads a part of the remote file, using the already downloaded data if possible.
+	 *
+	 * @param url    The location of the file
+	 * @param cached The already downloaded range
+	 * @param offset The offset of the first byte to read
+	 * @param length The number of bytes to read
+	 * @return The read bytes
+	 * @since 1.3.0
+	 */
+	private static byte @NotNull [] read(@NotNull URL url, @NotNull Range cached, long offset, int length) throws IOException {
+		if(offset >= cached.start() && offset + length <= cached.start() + cached.data().length) {
+			byte[] data = new byte[length];
+			System.arraycopy(cached.data(), (int) (offset - cached.start()), data, 0, length);
+			return data;
+		}
+		Range range = fetch(url, "bytes=" + offset + "-" + (offset + length - 1));
+		if(range.start() != offset || range.data().length < length) {
+			throw new IOException("Unexpected range received: " + range.start() + "+" + range.data().length);
+		}
+		return range.data();
+	}
+
+	/**
+	 * Downloads the specified entries, and extracts them into the base directory. The CRC-32 checksum of every extracted entry is verified. Entries that are stored next to each other are downloaded using a single request. The current task is used to track download progress.
+	 *
+	 * @param toExtract The entries to extract; must be entries of this zip file
+	 * @param baseDir   The directory to extract into
+	 * @param tracker   The tracker used to track download progress
+	 * @since 1.3.0
+	 */
+	public void extract(@NotNull Collection<@NotNull Entry> toExtract, @NotNull File baseDir, @NotNull UpdateProgressTracker tracker) throws IOException {
+		String baseDirPath = baseDir.getCanonicalPath();
+		ArrayList<Entry> sorted = new ArrayList<>(toExtract);
+		sorted.removeIf(Entry::isDirectory);
+		sorted.sort(Comparator.comparingLong(Entry::getLocalHeaderOffset));
+		long total = Math.max(1, sorted.stream().mapToLong(Entry::getCompressedSize).sum());
+		byte[] buffer = new byte[65536];
+		int i = 0;
+		while(i < sorted.size()) {
+			//grouping entries that are close to each other
+			int j = i + 1;
+			while(j < sorted.size() && sorted.get(j).getLocalHeaderOffset() - getEnd(sorted.get(j - 1)) <= MAX_RANGE_GAP) {
+				j++;
+			}
+			List<Entry> group = sorted.subList(i, j);
+			long start = group.get(0).getLocalHeaderOffset();
+			long end = getEnd(group.get(group.size() - 1));
+			HttpResponse<InputStream> response = HttpUtils.openRange(url, "bytes=" + start + "-" + (end - 1));
+			try(DataInputStream input = new DataInputStream(new BufferedInputStream(response.body()))) {
+				String range = response.headers().firstValue("content-range").orElse(null);
+				if(parseContentRangeStart(range) != start) {
+					throw new IOException("Unexpected content range: " + range);
+				}
+				long position = start;
+				for(Entry entry : group) {
+					input.skipNBytes(entry.getLocalHeaderOffset() - position);
+					byte[] header = new byte[30];
+					input.readFully(header);
+					ByteBuffer local = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+					if(local.getInt(0) != LOCAL_SIGNATURE) {
+						throw new IOException("Invalid local header: " + entry.getName());
+					}
+					int skip = (local.getShort(26) & 0xffff) + (local.getShort(28) & 0xffff);
+					input.skipNBytes(skip);
+					position = entry.getLocalHeaderOffset() + 30 + skip + entry.getCompressedSize();
+					//
+					File destFile = new File(baseDir, entry.getName());
+					if(!destFile.getCanonicalPath().startsWith(baseDirPath + File.separator)) {
+						throw new IOException("Entry is outside of the target directory: " + entry.getName());
+					}
+					File parent = destFile.getParentFile();
+					if(!parent.isDirectory() && !parent.mkdirs()) {
+						throw new IOException("Failed to create directory " + parent);
+					}
+					BoundedInputStream bounded = BoundedInputStream.builder().setInputStream(input).setMaxCount(entry.getCompressedSize()).setPropagateClose(false).get();
+					Inflater inflater = new Inflater(true);
+					InputStream data;
+					if(entry.getMethod() == 8) {
+						data = new InflaterInputStream(bounded, inflater);
+					} else if(entry.getMethod() == 0) {
+						data = bounded;
+					} else {
+						throw new IOException("Unsupported compression method " + entry.getMethod() + ": " + entry.getName());
+					}
+					CRC32 crc = new CRC32();
+					Files.deleteIfExists(destFile.toPath());
+					try(FileOutputStream fos = new FileOutputStream(destFile)) {
+						int len;
+						while((len = data.read(buffer)) > 0) {
+							crc.update(buffer, 0, len);
+							fos.write(buffer, 0, len);
+						}
+					} finally {
+						inflater.end();
+					}
+					//the inflater might not consume the whole entry
+					bounded.transferTo(OutputStream.nullOutputStream());
+					if(crc.getValue() != entry.getCrc()) {
+						throw new IOException("Checksum mismatch: " + entry.getName());
+					}
+					tracker.progressTask(entry.getCompressedSize() / (double) total);
+				}
+			}
+			i = j;
+		}
+	}
+
+	/**
+	 * Gets the entries of this zip file, in the order they are stored in the file.
+	 *
+	 * @return {@link #entries}
+	 * @since 1.3.0
+	 */
+	public @NotNull List<@NotNull Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Gets the offset where the data of the specified entry ends. This is the start of the next entry, or the start of the central directory for the last entry, so it includes any data descriptor of the entry.
+	 *
+	 * @param entry The entry
+	 * @return The end of the entry, exclusive
+	 * @since 1.3.0
+	 */
+	private long getEnd(@NotNull Entry entry) {
+		int index = Collections.binarySearch(entries, entry, Comparator.comparingLong(Entry::getLocalHeaderOffset));
+		return index + 1 < entries.size() ? entries.get(index + 1).getLocalHeaderOffset() : centralDirectoryOffset;
+	}
+
+	/**
+	 * An entry of a remote zip file, as described by the central directory.
+	 *
+	 * @since 1.3.0
+	 */
+	public static class Entry {
+		/**
+		 * The compressed size of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long compressedSize;
+		/**
+		 * The CRC-32 checksum of the uncompressed entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long crc;
+		/**
+		 * The offset of the local header of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long localHeaderOffset;
+		/**
+		 * The compression method of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private int method;
+		/**
+		 * The name of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private String name;
+		/**
+		 * The uncompressed size of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long size;
+
+		/**
+		 * Parses the next central directory file header.
+		 *
+		 * @param directory The central directory, positioned at the start of the header
+		 * @return The parsed entry
+		 * @since 1.3.0
+		 */
+		private static @NotNull Entry parse(@NotNull ByteBuffer directory) throws IOException {
+			int start = directory.position();
+			if(directory.remaining() < 46 || directory.getInt(start) != ENTRY_SIGNATURE) {
+				throw new IOException("Invalid central directory");
+			}
+			Entry entry = new Entry();
+			int flags = directory.getShort(start + 8) & 0xffff;
+			if((flags & 1) != 0) {
+				throw new IOException("Encrypted entries are not supported");
+			}
+			entry.method = directory.getShort(start + 10) & 0xffff;
+			entry.crc = directory.getInt(start + 16) & 0xffffffffL;
+			entry.compressedSize = directory.getInt(start + 20) & 0xffffffffL;
+			entry.size = directory.getInt(start + 24) & 0xffffffffL;
+			int nameLength = directory.getShort(start + 28) & 0xffff;
+			int extraLength = directory.getShort(start + 30) & 0xffff;
+			int commentLength = directory.getShort(start + 32) & 0xffff;
+			entry.localHeaderOffset = directory.getInt(start + 42) & 0xffffffffL;
+			byte[] name = new byte[nameLength];
+			directory.get(start + 46, name);
+			entry.name = new String(name, (flags & 0x800) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+			//ZIP64 extended information
+			int extra = start + 46 + nameLength;
+			int extraEnd = extra + extraLength;
+			while(extra + 4 <= extraEnd) {
+				int id = directory.getShort(extra) & 0xffff;
+				int length = directory.getShort(extra + 2) & 0xffff;
+				if(id == 1) {
+					int field = extra + 4;
+					if(entry.size == 0xffffffffL) {
+						entry.size = directory.getLong(field);
+						field += 8;
+					}
+					if(entry.compressedSize == 0xffffffffL) {
+						entry.compressedSize = directory.getLong(field);
+						field += 8;
+					}
+					if(entry.localHeaderOffset == 0xffffffffL) {
+						entry.localHeaderOffset = directory.getLong(field);
+					}
+				}
+				extra += 4 + length;
+			}
+			directory.position(extraEnd + commentLength);
+			return entry;
+		}
+
+		/**
+		 * Gets the compressed size of the entry.
+		 *
+		 * @return {@link #compressedSize}
+		 * @since 1.3.0
+		 */
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+
+		/**
+		 * Gets the CRC-32 checksum of the uncompressed entry.
+		 *
+		 * @return {@link #crc}
+		 * @since 1.3.0
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * Gets the offset of the local header of the entry.
+		 *
+		 * @return {@link #localHeaderOffset}
+		 * @since 1.3.0
+		 */
+		public long getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+
+		/**
+		 * Gets the compression method of the entry.
+		 *
+		 * @return {@link #method}
+		 * @since 1.3.0
+		 */
+		public int getMethod() {
+			return method;
+		}
+
+		/**
+		 * Gets the name of the entry.
+		 *
+		 * @return {@link #name}
+		 * @since 1.3.0
+		 */
+		public @NotNull String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the uncompressed size of the entry.
+		 *
+		 * @return {@link #size}
+		 * @since 1.3.0
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Checks whether this entry is a directory.
+		 *
+		 * @return True if directory
+		 * @since 1.3.0
+		 */
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	/**
+	 * A downloaded range of the remote file.
+	 *
+	 * @param start The offset of the first byte of the range
+	 * @param data  The contents of the range
+	 * @since 1.3.0
+	 */
+	private record Range(long start, byte @NotNull [] data) {
+	}
+}
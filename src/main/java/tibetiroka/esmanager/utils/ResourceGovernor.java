@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.Main;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.Launcher;
+import tibetiroka.esmanager.instance.SessionHelper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Slows down background work while a game session is {@link SessionHelper#ANY_RUNNING running}, so the game doesn't stutter. While throttled, downloads share a limited bandwidth, build processes run with a lower CPU and IO priority, and non-urgent work waits until the session ends. When the session ends, the IO priority of the builds is restored; their CPU priority stays lowered, since raising it again requires elevated privileges.
+ * <p>Throttling can be disabled in the {@link Launcher#throttleDuringSessionsProperty() settings}.</p>
+ *
+ * @since 1.3.0
+ */
+public class ResourceGovernor {
+	/**
+	 * The running build processes.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Set<@NotNull Process> BUILDS = ConcurrentHashMap.newKeySet();
+	/**
+	 * The lock guarding the bandwidth limit, also used for waking up the waiting work.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final @NotNull Object LOCK = new Object();
+	/**
+	 * The maximum time to wait for the bandwidth limit at once, in milliseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAX_WAIT = 100;
+	/**
+	 * The niceness of the build processes while throttled.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int NICENESS = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("session.throttle.nice")).intValue();
+	/**
+	 * The bandwidth shared by all downloads while throttled, in bytes per second.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long RATE = ((Number) AppConfiguration.DEFAULT_CONFIGURATION.get("session.throttle.rate")).longValue();
+	private static final Logger log = LoggerFactory.getLogger(ResourceGovernor.class);
+	/**
+	 * The time the bandwidth limit was last refilled, in nanoseconds.
+	 *
+	 * @since 1.3.0
+	 */
+	private static long lastRefill = System.nanoTime();
+	/**
+	 * Stores whether a game session is running.
+	 *
+	 * @since 1.3.0
+	 */
+	private static volatile boolean sessionRunning = false;
+	/**
+	 * The number of bytes that can be downloaded without waiting.
+	 *
+	 * @since 1.3.0
+	 */
+	private static double tokens = RATE;
+
+	/**
+	 * Waits for the bandwidth limit before using the specified amount of bandwidth. Returns immediately if not throttled.
+	 *
+	 * @param bytes The number of bytes to download
+	 * @throws InterruptedException If interrupted while waiting
+	 * @since 1.3.0
+	 */
+	public static void acquire(long bytes) throws InterruptedException {
+		if(!isThrottled()) {
+			return;
+		}
+		synchronized(LOCK) {
+			while(bytes > 0 && isThrottled()) {
+				long now = System.nanoTime();
+				tokens = Math.min(RATE, tokens + (now - lastRefill) * RATE / 1e9);
+				lastRefill = now;
+				if(tokens >= 1) {
+					long used = Math.min(bytes, (long) tokens);
+					tokens -= used;
+					bytes -= used;
+				} else {
+					LOCK.wait(Math.max(1, Math.min(MAX_WAIT, (long) Math.ceil((1 - tokens) * 1000 / RATE))));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until no game session is running, if throttling is enabled. Non-urgent work should call this method before starting.
+	 *
+	 * @throws InterruptedException If interrupted while waiting
+	 * @since 1.3.0
+	 */
+	public static void awaitIdle() throws InterruptedException {
+		if(!isThrottled()) {
+			return;
+		}
+		log.info(localize("log.governor.wait", Thread.currentThread().getName()));
+		synchronized(LOCK) {
+			while(isThrottled()) {
+				LOCK.wait();
+			}
+		}
+	}
+
+	/**
+	 * Starts following the state of the game sessions. Must be called on the JavaFX application thread.
+	 *
+	 * @since 1.3.0
+	 */
+	public static void init() {
+		SessionHelper.ANY_RUNNING.addListener((observable, oldValue, running) -> setSessionRunning(running));
+		Launcher.getLauncher().throttleDuringSessionsProperty().addListener((observable, oldValue, enabled) -> setSessionRunning(sessionRunning));
+	}
+
+	/**
+	 * Checks whether background work is slowed down.
+	 *
+	 * @return True if a session is running and throttling is enabled
+	 * @since 1.3.0
+	 */
+	public static boolean isThrottled() {
+		return sessionRunning && Launcher.getLauncher().throttleDuringSessionsProperty().get();
+	}
+
+	/**
+	 * Registers a build process, lowering its priority while throttled.
+	 *
+	 * @param process The build process
+	 * @since 1.3.0
+	 */
+	public static void register(@NotNull Process process) {
+		BUILDS.add(process);
+		process.onExit().thenRun(() -> BUILDS.remove(process));
+		if(isThrottled()) {
+			lowerPriority(process);
+		}
+	}
+
+	/**
+	 * Limits the bandwidth used by the stream while throttled.
+	 *
+	 * @param input The stream to limit
+	 * @return The limited stream
+	 * @since 1.3.0
+	 */
+	public static @NotNull InputStream throttle(@NotNull InputStream input) {
+		return new ThrottledInputStream(input);
+	}
+
+	/**
+	 * Gets the process IDs of a process and its descendants.
+	 *
+	 * @param process The process
+	 * @return The process IDs
+	 * @since 1.3.0
+	 */
+	private static @NotNull List<@NotNull String> getProcessIds(@NotNull Process process) {
+		List<String> pids = new ArrayList<>();
+		pids.add(String.valueOf(process.pid()));
+		process.descendants().forEach(p -> pids.add(String.valueOf(p.pid())));
+		return pids;
+	}
+
+	/**
+	 * Lowers the CPU and IO priority of a process and its descendants. Not supported on Windows. Only the IO priority is {@link #restorePriority(Process) restored} when throttling ends: an unprivileged user can't lower the niceness of a process again, so the builds keep running with the raised niceness. They still get their full share of an otherwise idle CPU.
+	 *
+	 * @param process The process
+	 * @since 1.3.0
+	 */
+	private static void lowerPriority(@NotNull Process process) {
+		if(AppConfiguration.isWindows()) {
+			return;
+		}
+		List<String> pids = getProcessIds(process);
+		ArrayList<String> renice = new ArrayList<>(List.of("renice", "-n", String.valueOf(NICENESS), "-p"));
+		renice.addAll(pids);
+		run(renice);
+		if(AppConfiguration.isLinux()) {
+			ArrayList<String> ionice = new ArrayList<>(List.of("ionice", "-c", "3", "-p"));
+			ionice.addAll(pids);
+			run(ionice);
+		}
+		log.debug(localize("log.governor.priority", String.join(", ", pids)));
+	}
+
+	/**
+	 * Restores the default best-effort IO priority of a process and its descendants, after it was {@link #lowerPriority(Process) lowered}. Only supported on Linux.
+	 *
+	 * @param process The process
+	 * @since 1.3.0
+	 */
+	private static void restorePriority(@NotNull Process process) {
+		if(!AppConfiguration.isLinux()) {
+			return;
+		}
+		List<String> pids = getProcessIds(process);
+		ArrayList<String> ionice = new ArrayList<>(List.of("ionice", "-c", "2", "-n", "4", "-p"));
+		ionice.addAll(pids);
+		run(ionice);
+		log.debug(localize("log.governor.priority.restore", String.join(", ", pids)));
+	}
+
+	/**
+	 * Runs a command, waiting for it to finish. Failures are logged, but otherwise ignored.
+	 *
+	 * @param command The command to run
+	 * @since 1.3.0
+	 */
+	private static void run(@NotNull List<@NotNull String> command) {
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+			process.waitFor();
+		} catch(IOException e) {
+			log.debug(localize("log.governor.priority.fail", String.join(" ", command), e.getMessage()));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Updates the state of the game sessions, lowering the priority of the running builds, or restoring it and waking up the waiting work.
+	 *
+	 * @param running True if a session is running
+	 * @since 1.3.0
+	 */
+	private static void setSessionRunning(boolean running) {
+		boolean changed = sessionRunning != running;
+		sessionRunning = running;
+		boolean throttled = isThrottled();
+		if(changed) {
+			log.info(localize(throttled ? "log.governor.throttle" : "log.governor.resume"));
+		}
+		synchronized(LOCK) {
+			tokens = RATE;
+			lastRefill = System.nanoTime();
+			LOCK.notifyAll();
+		}
+		if(!BUILDS.isEmpty()) {
+			new Thread(() -> {
+				Main.configureThread(Thread.currentThread(), false);
+				BUILDS.forEach(throttled ? ResourceGovernor::lowerPriority : ResourceGovernor::restorePriority);
+			}, "Build Priority Thread").start();
+		}
+	}
+
+	/**
+	 * A stream that waits for the bandwidth limit while throttled.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class ThrottledInputStream extends FilterInputStream {
+		/**
+		 * Creates a new throttled stream.
+		 *
+		 * @param input The stream to limit
+		 * @since 1.3.0
+		 */
+		public ThrottledInputStream(@NotNull InputStream input) {
+			super(input);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if(read >= 0) {
+				limit(1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte @NotNull [] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0) {
+				limit(read);
+			}
+			return read;
+		}
+
+		/**
+		 * Waits for the bandwidth limit after reading.
+		 *
+		 * @param bytes The number of read bytes
+		 * @throws InterruptedIOException If interrupted while waiting
+		 * @since 1.3.0
+		 */
+		private void limit(long bytes) throws InterruptedIOException {
+			try {
+				acquire(bytes);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tibetiroka.esmanager.config.GensonFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.ZipEntry;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Describes the files extracted from a zip file into a directory, using the CRC-32 checksums and sizes stored in the zip's central directory. Used to skip the extraction of unchanged entries when a newer version of the zip file is extracted.
+ *
+ * @since 1.3.0
+ */
+public class ZipManifest {
+	private static final Logger log = LoggerFactory.getLogger(ZipManifest.class);
+	/**
+	 * The absolute path of the directory the entries were extracted into.
+	 *
+	 * @since 1.3.0
+	 */
+	@Nullable
+	private String directory;
+	/**
+	 * The extracted entries, by their names in the zip file.
+	 *
+	 * @since 1.3.0
+	 */
+	@NotNull
+	private HashMap<@NotNull String, @NotNull Entry> entries = new HashMap<>();
+
+	public ZipManifest() {
+	}
+
+	/**
+	 * Creates a new, empty manifest for the specified directory.
+	 *
+	 * @param directory The directory the entries are extracted into
+	 * @since 1.3.0
+	 */
+	public ZipManifest(@NotNull File directory) {
+		this.directory = directory.getAbsolutePath();
+	}
+
+	/**
+	 * Loads the manifest from the specified file. If the file doesn't exist or cannot be read, an empty manifest is returned.
+	 *
+	 * @param file The file storing the manifest
+	 * @return The manifest
+	 * @since 1.3.0
+	 */
+	public static @NotNull ZipManifest load(@NotNull File file) {
+		if(file.isFile()) {
+			try(InputStream input = new FileInputStream(file)) {
+				ZipManifest manifest = GensonFactory.createGenson().deserialize(input, ZipManifest.class);
+				if(manifest != null) {
+					return manifest;
+				}
+			} catch(Exception e) {
+				log.debug(localize("log.zip.manifest.load.fail", file.getAbsolutePath(), e.getMessage()));
+			}
+		}
+		return new ZipManifest();
+	}
+
+	/**
+	 * Checks whether this manifest describes the specified directory.
+	 *
+	 * @param directory The directory
+	 * @return True if the entries were extracted into the directory
+	 * @since 1.3.0
+	 */
+	public boolean describes(@Nullable File directory) {
+		return directory != null && directory.getAbsolutePath().equals(this.directory);
+	}
+
+	/**
+	 * Sets the directory described by this manifest. Used when the extracted files are moved to a different directory.
+	 *
+	 * @param directory The new directory
+	 * @since 1.3.0
+	 */
+	public void setDirectory(@NotNull File directory) {
+		this.directory = directory.getAbsolutePath();
+	}
+
+	/**
+	 * Gets the stored entry with the specified name.
+	 *
+	 * @param name The name of the entry in the zip file
+	 * @return The entry, or null if not stored
+	 * @since 1.3.0
+	 */
+	public @Nullable Entry get(@NotNull String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * Gets the stored entries.
+	 *
+	 * @return {@link #entries}
+	 * @since 1.3.0
+	 */
+	public @NotNull HashMap<@NotNull String, @NotNull Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Stores the specified entry of the zip file.
+	 *
+	 * @param entry The entry
+	 * @since 1.3.0
+	 */
+	public void put(@NotNull ZipEntry entry) {
+		put(entry.getName(), entry.getCrc(), entry.getSize());
+	}
+
+	/**
+	 * Stores an entry with the specified name, checksum and size.
+	 *
+	 * @param name The name of the entry in the zip file
+	 * @param crc  The CRC-32 checksum of the entry
+	 * @param size The uncompressed size of the entry
+	 * @since 1.3.0
+	 */
+	public void put(@NotNull String name, long crc, long size) {
+		entries.put(name, new Entry(crc, size));
+	}
+
+	/**
+	 * Saves this manifest into the specified file.
+	 *
+	 * @param file The file to save into
+	 * @since 1.3.0
+	 */
+	public void save(@NotNull File file) throws IOException {
+		Files.writeString(file.toPath(), GensonFactory.createGenson().serialize(this), StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+	}
+
+	/**
+	 * The stored properties of a single zip entry.
+	 *
+	 * @since 1.3.0
+	 */
+	public static class Entry {
+		/**
+		 * The CRC-32 checksum of the uncompressed entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long crc;
+		/**
+		 * The uncompressed size of the entry.
+		 *
+		 * @since 1.3.0
+		 */
+		private long size;
+
+		public Entry() {
+		}
+
+		/**
+		 * Creates a new entry with the specified checksum and size.
+		 *
+		 * @param crc  The CRC-32 checksum
+		 * @param size The uncompressed size
+		 * @since 1.3.0
+		 */
+		public Entry(long crc, long size) {
+			this.crc = crc;
+			this.size = size;
+		}
+
+		/**
+		 * Checks whether the specified zip entry has the same checksum and size as this entry.
+		 *
+		 * @param entry The zip entry
+		 * @return True if unchanged
+		 * @since 1.3.0
+		 */
+		public boolean matches(@NotNull ZipEntry entry) {
+			return crc == entry.getCrc() && size == entry.getSize();
+		}
+
+		/**
+		 * Gets the CRC-32 checksum of the uncompressed entry.
+		 *
+		 * @return {@link #crc}
+		 * @since 1.3.0
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * Gets the uncompressed size of the entry.
+		 *
+		 * @return {@link #size}
+		 * @since 1.3.0
+		 */
+		public long getSize() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.apache.commons.codec.binary.Hex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import static tibetiroka.esmanager.config.Launcher.localize;
+
+/**
+ * Delta downloads using zsync control files. The blocks of the remote file that can be found in a local seed file (usually the previous version of the same file) are copied from the seed, and only the missing blocks are downloaded using HTTP range requests. Only uncompressed targets are supported, which is what AppImages publish.
+ *
+ * @since 1.3.0
+ */
+public class Zsync {
+	/**
+	 * The largest gap between two missing ranges that is downloaded instead of being split into two requests.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final long MAX_RANGE_GAP = 64 * 1024;//64KB
+	/**
+	 * The number of bits used by the filters of the block lookup tables.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final int FILTER_BITS = 20;
+	private static final Logger log = LoggerFactory.getLogger(Zsync.class);
+
+	/**
+	 * Downloads the specified file using its zsync control file, which must be available at the same location with the {@code .zsync} extension.
+	 *
+	 * @param source  The location of the file to download
+	 * @param seed    The local file that is likely to contain some of the blocks of the remote file
+	 * @param target  The file to download into; must not be the seed file
+	 * @param tracker The tracker used to track download progress
+	 * @throws IOException If the file could not be downloaded using delta transfer
+	 * @since 1.3.0
+	 */
+	public static void download(@NotNull URL source, @NotNull File seed, @NotNull File target, @NotNull UpdateProgressTracker tracker) throws IOException {
+		URL controlURL = new URL(source + ".zsync");
+		ControlFile control = readControlFile(controlURL);
+		URL data = control.getURL() == null ? source : new URL(controlURL, control.getURL());
+		//
+		long fetched = 0;
+		int reused = 0;
+		try(FileChannel channel = FileChannel.open(seed.toPath(), StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Seed file is too large: " + seed.getAbsolutePath());
+			}
+			MappedByteBuffer seedBuffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			long[] offsets = match(control, seedBuffer);
+			try(RandomAccessFile output = new RandomAccessFile(target, "rw")) {
+				output.setLength(control.getLength());
+				byte[] block = new byte[control.getBlockSize()];
+				ArrayList<long[]> missing = new ArrayList<>();
+				for(int i = 0; i < offsets.length; i++) {
+					long start = (long) i * control.getBlockSize();
+					int size = (int) Math.min(control.getBlockSize(), control.getLength() - start);
+					if(offsets[i] >= 0) {
+						read(seedBuffer, (int) offsets[i], block);
+						output.seek(start);
+						output.write(block, 0, size);
+						tracker.progressTask(size / (double) control.getLength());
+						reused++;
+					} else if(!missing.isEmpty() && start - missing.get(missing.size() - 1)[1] <= MAX_RANGE_GAP) {
+						missing.get(missing.size() - 1)[1] = start + size;
+					} else {
+						missing.add(new long[]{start, start + size});
+					}
+				}
+				log.debug(localize("log.download.delta.start", target.getName(), reused, offsets.length, seed.getName()));
+				byte[] buffer = new byte[65536];
+				for(long[] range : missing) {
+					fetchRange(data, range[0], range[1], output, buffer, control.getLength(), tracker);
+					fetched += range[1] - range[0];
+				}
+			}
+		}
+		if(control.getSHA1() != null) {
+			verify(control, target);
+		}
+		log.info(localize("log.download.delta.done", target.getName(), fetched, control.getLength()));
+	}
+
+	/**
+	 * Verifies a downloaded file against the length and SHA-1 hash listed in its zsync control file, which must be available at the same location with the {@code .zsync} extension.
+	 *
+	 * @param source The location the file was downloaded from
+	 * @param file   The downloaded file
+	 * @throws IOException If the control file could not be read or doesn't list a SHA-1 hash, or the file doesn't match it
+	 * @since 1.3.0
+	 */
+	public static void verify(@NotNull URL source, @NotNull File file) throws IOException {
+		ControlFile control = readControlFile(new URL(source + ".zsync"));
+		if(control.getSHA1() == null) {
+			throw new IOException("The zsync control file doesn't list a SHA-1 hash: " + source + ".zsync");
+		}
+		verify(control, file);
+	}
+
+	/**
+	 * Finds the blocks of the file described by the control file in the seed. The seed is treated as if it was padded with zeroes at its end, the same way the last block of the remote file is.
+	 *
+	 * @param control The control file
+	 * @param seed    The contents of the seed
+	 * @return The offset of each block in the seed, or -1 for blocks that were not found
+	 * @since 1.3.0
+	 */
+	static long @NotNull [] match(@NotNull ControlFile control, @NotNull ByteBuffer seed) {
+		int blockSize = control.getBlockSize();
+		int blocks = control.getBlockCount();
+		boolean pairs = control.getSeqMatches() > 1;
+		long[] offsets = new long[blocks];
+		Arrays.fill(offsets, -1);
+		//blocks are looked up by their own checksum, or by the checksums of them and their successor if sequential matches are required
+		HashMap<Long, List<Integer>> singles = new HashMap<>();
+		HashMap<Long, List<Integer>> sequences = new HashMap<>();
+		BitSet singleFilter = new BitSet(1 << FILTER_BITS);
+		BitSet sequenceFilter = new BitSet(1 << FILTER_BITS);
+		for(int i = 0; i < blocks; i++) {
+			if(pairs && i + 1 < blocks) {
+				long key = pairKey(control.getRsum(i), control.getRsum(i + 1));
+				sequences.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+				sequenceFilter.set(filterIndex(key));
+			} else {
+				long key = control.getRsum(i) & 0xffffffffL;
+				singles.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+				singleFilter.set(filterIndex(key));
+			}
+		}
+		//
+		int length = seed.limit();
+		int mask = control.getRsumMask();
+		byte[] window = new byte[blockSize];
+		Rsum first = new Rsum(seed, 0, blockSize);
+		Rsum second = pairs ? new Rsum(seed, blockSize, blockSize) : null;
+		int position = 0;
+		while(position < length) {
+			boolean matched = false;
+			byte[] checksum = null;
+			long key = first.value() & mask & 0xffffffffL;
+			if(singleFilter.get(filterIndex(key))) {
+				List<Integer> candidates = singles.get(key);
+				if(candidates != null) {
+					checksum = checksum(seed, position, window);
+					for(int candidate : candidates) {
+						if(control.checksumMatches(candidate, checksum)) {
+							matched = true;
+							if(offsets[candidate] < 0) {
+								offsets[candidate] = position;
+							}
+						}
+					}
+				}
+			}
+			if(pairs) {
+				long pair = pairKey(first.value() & mask, second.value() & mask);
+				if(sequenceFilter.get(filterIndex(pair))) {
+					List<Integer> candidates = sequences.get(pair);
+					if(candidates != null) {
+						if(checksum == null) {
+							checksum = checksum(seed, position, window);
+						}
+						byte[] next = null;
+						for(int candidate : candidates) {
+							if(control.checksumMatches(candidate, checksum)) {
+								if(next == null) {
+									next = checksum(seed, position + blockSize, window);
+								}
+								if(control.checksumMatches(candidate + 1, next)) {
+									matched = true;
+									if(offsets[candidate] < 0) {
+										offsets[candidate] = position;
+									}
+									if(offsets[candidate + 1] < 0) {
+										offsets[candidate + 1] = position + blockSize;
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+			if(matched) {
+				position += blockSize;
+				first = new Rsum(seed, position, blockSize);
+				if(pairs) {
+					second = new Rsum(seed, position + blockSize, blockSize);
+				}
+			} else {
+				first.roll();
+				if(pairs) {
+					second.roll();
+				}
+				position++;
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Calculates the rolling checksum of a block, in the format used by zsync: the upper 16 bits are the sum of the bytes, and the lower 16 bits are the sum of the bytes weighted by their distance from the end of the block.
+	 *
+	 * @param data      The data
+	 * @param offset    The start of the block
+	 * @param blockSize The size of the block; bytes beyond the end of the data are treated as zeroes
+	 * @return The checksum
+	 * @since 1.3.0
+	 */
+	static int rsum(@NotNull ByteBuffer data, int offset, int blockSize) {
+		return new Rsum(data, offset, blockSize).value();
+	}
+
+	/**
+	 * Calculates the MD4 checksum of a block of the seed.
+	 *
+	 * @param seed     The seed
+	 * @param position The start of the block
+	 * @param window   The buffer used for storing the block; its length is the block size
+	 * @return The checksum
+	 * @since 1.3.0
+	 */
+	private static byte @NotNull [] checksum(@NotNull ByteBuffer seed, int position, byte @NotNull [] window) {
+		read(seed, position, window);
+		return MD4.digest(window, 0, window.length);
+	}
+
+	/**
+	 * Downloads the specified range of the remote file.
+	 *
+	 * @param source  The location of the remote file
+	 * @param start   The first byte of the range
+	 * @param end     The end of the range, exclusive
+	 * @param output  The file to write the range into
+	 * @param buffer  The buffer used for copying
+	 * @param length  The length of the whole file
+	 * @param tracker The tracker used to track download progress
+	 * @since 1.3.0
+	 */
+	private static void fetchRange(@NotNull URL source, long start, long end, @NotNull RandomAccessFile output, byte @NotNull [] buffer, long length, @NotNull UpdateProgressTracker tracker) throws IOException {
+		HttpResponse<InputStream> response = HttpUtils.openRange(source, "bytes=" + start + "-" + (end - 1));
+		try(InputStream input = response.body()) {
+			String range = response.headers().firstValue("content-range").orElse(null);
+			if(range == null || !range.startsWith("bytes " + start + "-")) {
+				throw new IOException("Unexpected content range: " + range);
+			}
+			output.seek(start);
+			long remaining = end - start;
+			while(remaining > 0) {
+				int amount = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if(amount < 0) {
+					throw new IOException("Range ended early: " + start + "-" + end);
+				}
+				output.write(buffer, 0, amount);
+				remaining -= amount;
+				tracker.progressTask(amount / (double) length);
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of a lookup key in the filter of the lookup tables.
+	 *
+	 * @param key The key
+	 * @return The index
+	 * @since 1.3.0
+	 */
+	private static int filterIndex(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - FILTER_BITS));
+	}
+
+	/**
+	 * Creates the lookup key of two consecutive blocks.
+	 *
+	 * @param first  The rolling checksum of the first block
+	 * @param second The rolling checksum of the second block
+	 * @return The key
+	 * @since 1.3.0
+	 */
+	private static long pairKey(int first, int second) {
+		return (long) first << 32 | (second & 0xffffffffL);
+	}
+
+	/**
+	 * Copies a block of data into the specified array, padding it with zeroes if it extends beyond the end of the data.
+	 *
+	 * @param data     The data
+	 * @param position The start of the block
+	 * @param target   The array to copy into
+	 * @since 1.3.0
+	 */
+	private static void read(@NotNull ByteBuffer data, int position, byte @NotNull [] target) {
+		int available = Math.max(0, Math.min(target.length, data.limit() - position));
+		if(available > 0) {
+			data.get(position, target, 0, available);
+		}
+		Arrays.fill(target, available, target.length, (byte) 0);
+	}
+
+	/**
+	 * Downloads and parses a zsync control file.
+	 *
+	 * @param controlURL The location of the control file
+	 * @return The parsed control file
+	 * @since 1.3.0
+	 */
+	private static @NotNull ControlFile readControlFile(@NotNull URL controlURL) throws IOException {
+		try(InputStream input = new BufferedInputStream(HttpUtils.openStream(controlURL))) {
+			return ControlFile.parse(input);
+		}
+	}
+
+	/**
+	 * Calculates the SHA-1 hash of the specified file.
+	 *
+	 * @param file The file
+	 * @return The hexadecimal hash
+	 * @since 1.3.0
+	 */
+	private static @NotNull String sha1(@NotNull File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			long size = channel.size();
+			for(long position = 0; position < size; position += Integer.MAX_VALUE) {
+				digest.update(channel.map(MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+			}
+			return Hex.encodeHexString(digest.digest());
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Verifies a file against the length and SHA-1 hash listed in the control file.
+	 *
+	 * @param control The control file; must list a SHA-1 hash
+	 * @param file    The file to verify
+	 * @throws IOException If the file doesn't match the control file
+	 * @since 1.3.0
+	 */
+	private static void verify(@NotNull ControlFile control, @NotNull File file) throws IOException {
+		if(file.length() != control.getLength()) {
+			throw new IOException("Length mismatch: expected " + control.getLength() + ", got " + file.length());
+		}
+		String actual = sha1(file);
+		if(!actual.equalsIgnoreCase(control.getSHA1())) {
+			throw new IOException("Checksum mismatch: expected " + control.getSHA1() + ", got " + actual);
+		}
+	}
+
+	/**
+	 * The parsed contents of a zsync control file.
+	 *
+	 * @since 1.3.0
+	 */
+	public static class ControlFile {
+		/**
+		 * The size of the blocks of the file.
+		 *
+		 * @since 1.3.0
+		 */
+		private int blockSize;
+		/**
+		 * The number of bytes stored from the MD4 checksum of each block.
+		 *
+		 * @since 1.3.0
+		 */
+		private int checksumBytes;
+		/**
+		 * The stored part of the MD4 checksum of each block.
+		 *
+		 * @since 1.3.0
+		 */
+		private byte[][] checksums;
+		/**
+		 * The length of the file.
+		 *
+		 * @since 1.3.0
+		 */
+		private long length;
+		/**
+		 * The number of bytes stored from the rolling checksum of each block.
+		 *
+		 * @since 1.3.0
+		 */
+		private int rsumBytes;
+		/**
+		 * The stored part of the rolling checksum of each block.
+		 *
+		 * @since 1.3.0
+		 */
+		private int[] rsums;
+		/**
+		 * The hexadecimal SHA-1 hash of the whole file, if specified.
+		 *
+		 * @since 1.3.0
+		 */
+		private @Nullable String sha1;
+		/**
+		 * The number of consecutive blocks that must match for a match to be accepted.
+		 *
+		 * @since 1.3.0
+		 */
+		private int seqMatches;
+		/**
+		 * The location of the file relative to the control file, if specified.
+		 *
+		 * @since 1.3.0
+		 */
+		private @Nullable String url;
+
+		/**
+		 * Parses a zsync control file.
+		 *
+		 * @param input The contents of the control file
+		 * @return The parsed control file
+		 * @since 1.3.0
+		 */
+		public static @NotNull ControlFile parse(@NotNull InputStream input) throws IOException {
+			ControlFile control = new ControlFile();
+			control.seqMatches = 1;
+			control.rsumBytes = 4;
+			control.checksumBytes = 16;
+			boolean compressed = false;
+			for(String line = readLine(input); !line.isEmpty(); line = readLine(input)) {
+				int separator = line.indexOf(": ");
+				if(separator < 0) {
+					throw new IOException("Invalid zsync header: " + line);
+				}
+				String key = line.substring(0, separator);
+				String value = line.substring(separator + 2).trim();
+				try {
+					switch(key) {
+						case "Blocksize" -> control.blockSize = Integer.parseInt(value);
+						case "Length" -> control.length = Long.parseLong(value);
+						case "Hash-Lengths" -> {
+							String[] parts = value.split(",");
+							control.seqMatches = Integer.parseInt(parts[0]);
+							control.rsumBytes = Integer.parseInt(parts[1]);
+							control.checksumBytes = Integer.parseInt(parts[2]);
+						}
+						case "URL" -> control.url = value;
+						case "SHA-1" -> control.sha1 = value;
+						case "Z-URL", "Z-Map2" -> compressed = true;
+					}
+				} catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IOException("Invalid zsync header: " + line, e);
+				}
+			}
+			if(control.url == null && compressed) {
+				throw new IOException("Compressed zsync targets are not supported");
+			}
+			if(control.blockSize <= 0 || control.length < 0 || control.seqMatches < 1 || control.seqMatches > 2 || control.rsumBytes < 1 || control.rsumBytes > 4 || control.checksumBytes < 1 || control.checksumBytes > 16) {
+				throw new IOException("Invalid zsync parameters");
+			}
+			//
+			int blocks = control.getBlockCount();
+			control.rsums = new int[blocks];
+			control.checksums = new byte[blocks][control.checksumBytes];
+			DataInputStream data = new DataInputStream(input);
+			byte[] rsum = new byte[4];
+			for(int i = 0; i < blocks; i++) {
+				//only the last bytes of the big-endian checksum are stored
+				Arrays.fill(rsum, (byte) 0);
+				data.readFully(rsum, 4 - control.rsumBytes, control.rsumBytes);
+				control.rsums[i] = ByteBuffer.wrap(rsum).getInt();
+				data.readFully(control.checksums[i]);
+			}
+			return control;
+		}
+
+		/**
+		 * Reads a single line of the header.
+		 *
+		 * @param input The input to read from
+		 * @return The line, without the line terminator
+		 * @since 1.3.0
+		 */
+		private static @NotNull String readLine(@NotNull InputStream input) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int c;
+			while((c = input.read()) != '\n') {
+				if(c < 0) {
+					throw new IOException("Unexpected end of zsync header");
+				}
+				if(c != '\r') {
+					line.write(c);
+				}
+			}
+			return line.toString(StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Gets the number of blocks in the file.
+		 *
+		 * @return The number of blocks
+		 * @since 1.3.0
+		 */
+		public int getBlockCount() {
+			return (int) ((length + blockSize - 1) / blockSize);
+		}
+
+		/**
+		 * Gets the size of the blocks of the file.
+		 *
+		 * @return {@link #blockSize}
+		 * @since 1.3.0
+		 */
+		public int getBlockSize() {
+			return blockSize;
+		}
+
+		/**
+		 * Gets the length of the file.
+		 *
+		 * @return {@link #length}
+		 * @since 1.3.0
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Gets the stored part of the rolling checksum of the specified block.
+		 *
+		 * @param block The index of the block
+		 * @return The checksum
+		 * @since 1.3.0
+		 */
+		public int getRsum(int block) {
+			return rsums[block];
+		}
+
+		/**
+		 * Gets the mask of the stored bits of the rolling checksums.
+		 *
+		 * @return The mask
+		 * @since 1.3.0
+		 */
+		public int getRsumMask() {
+			return rsumBytes == 4 ? -1 : (1 << (8 * rsumBytes)) - 1;
+		}
+
+		/**
+		 * Gets the hexadecimal SHA-1 hash of the whole file.
+		 *
+		 * @return {@link #sha1}
+		 * @since 1.3.0
+		 */
+		public @Nullable String getSHA1() {
+			return sha1;
+		}
+
+		/**
+		 * Gets the number of consecutive blocks that must match for a match to be accepted.
+		 *
+		 * @return {@link #seqMatches}
+		 * @since 1.3.0
+		 */
+		public int getSeqMatches() {
+			return seqMatches;
+		}
+
+		/**
+		 * Gets the location of the file relative to the control file.
+		 *
+		 * @return {@link #url}
+		 * @since 1.3.0
+		 */
+		public @Nullable String getURL() {
+			return url;
+		}
+
+		/**
+		 * Checks whether the stored checksum of the specified block matches the specified MD4 checksum.
+		 *
+		 * @param block    The index of the block
+		 * @param checksum The full MD4 checksum
+		 * @return True if the stored bytes match
+		 * @since 1.3.0
+		 */
+		public boolean checksumMatches(int block, byte @NotNull [] checksum) {
+			return Arrays.equals(checksums[block], 0, checksumBytes, checksum, 0, checksumBytes);
+		}
+	}
+
+	/**
+	 * The rolling checksum of a window of data, which can be moved forward one byte at a time.
+	 *
+	 * @since 1.3.0
+	 */
+	private static class Rsum {
+		/**
+		 * The data the window is over.
+		 *
+		 * @since 1.3.0
+		 */
+		private final @NotNull ByteBuffer data;
+		/**
+		 * The size of the window.
+		 *
+		 * @since 1.3.0
+		 */
+		private final int size;
+		/**
+		 * The sum of the bytes in the window.
+		 *
+		 * @since 1.3.0
+		 */
+		private int a;
+		/**
+		 * The sum of the bytes in the window, weighted by their distance from the end of the window.
+		 *
+		 * @since 1.3.0
+		 */
+		private int b;
+		/**
+		 * The start of the window.
+		 *
+		 * @since 1.3.0
+		 */
+		private int start;
+
+		/**
+		 * Calculates the checksum of the specified window.
+		 *
+		 * @param data  The data
+		 * @param start The start of the window
+		 * @param size  The size of the window
+		 * @since 1.3.0
+		 */
+		public Rsum(@NotNull ByteBuffer data, int start, int size) {
+			this.data = data;
+			this.start = start;
+			this.size = size;
+			for(int i = 0; i < size; i++) {
+				int c = get(start + i);
+				a += c;
+				b += (size - i) * c;
+			}
+		}
+
+		/**
+		 * Moves the window forward by one byte.
+		 *
+		 * @since 1.3.0
+		 */
+		public void roll() {
+			int removed = get(start);
+			a += get(start + size) - removed;
+			b += a - size * removed;
+			start++;
+		}
+
+		/**
+		 * Gets the checksum of the current window.
+		 *
+		 * @return The checksum
+		 * @since 1.3.0
+		 */
+		public int value() {
+			return (a & 0xffff) << 16 | (b & 0xffff);
+		}
+
+		/**
+		 * Gets a byte of the data, treating bytes beyond its end as zeroes.
+		 *
+		 * @param index The index of the byte
+		 * @return The unsigned value of the byte
+		 * @since 1.3.0
+		 */
+		private int get(int index) {
+			return index < data.limit() ? data.get(index) & 0xff : 0;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.config.AppConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalPluginTest {
+	@TempDir
+	File configDirectory;
+
+	@BeforeAll
+	static void setup() {
+		AppConfiguration.loadLauncherConfiguration();
+	}
+
+	@Test
+	void setLinkedTwice() throws IOException {
+		LocalPlugin plugin = install("link-test");
+		assertTrue(plugin.setLinked(configDirectory, true));
+		Path link = plugin.getSymlink(configDirectory).toPath();
+		assertTrue(Files.isSymbolicLink(link));
+		Path target = Files.readSymbolicLink(link);
+		Object key = fileKey(link);
+		//the second call is answered from the cache, without replacing the link
+		assertFalse(plugin.setLinked(configDirectory, true));
+		assertEquals(target, Files.readSymbolicLink(link));
+		assertEquals(key, fileKey(link));
+		//a new launcher session finds the existing link correct
+		LocalPlugin restarted = new LocalPlugin("link-test");
+		restarted.setVersion("1.0");
+		assertFalse(restarted.setLinked(configDirectory, true));
+		assertEquals(key, fileKey(link));
+		//unlinking
+		assertTrue(plugin.setLinked(configDirectory, false));
+		assertFalse(Files.exists(link, LinkOption.NOFOLLOW_LINKS));
+		assertFalse(plugin.setLinked(configDirectory, false));
+	}
+
+	private Object fileKey(Path link) throws IOException {
+		return Files.readAttributes(link, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+	}
+
+	/**
+	 * Creates the files of version 1.0 of a plugin, without downloading anything.
+	 */
+	private LocalPlugin install(String name) throws IOException {
+		LocalPlugin plugin = new LocalPlugin(name);
+		plugin.setVersion("1.0");
+		FileUtils.deleteDirectory(plugin.getInstallLocation());
+		File files = new File(plugin.getVersionLocation("1.0"), name);
+		files.mkdirs();
+		Files.writeString(new File(files, "data.txt").toPath(), "mission");
+		return plugin;
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginSearchIndexTest {
+	/**
+	 * A query typed one character at a time, and a few others.
+	 */
+	private static final String[] QUERIES = {"k", "ko", "kor", "kora", "korath", "korath s", "korath sh", "korath shi", "korath ship", "author4", "author42", "pirate engine ca", "xyz"};
+	private static final String[] WORDS = {"ship", "outfit", "fleet", "mission", "pirate", "korath", "hai", "remnant", "wanderer", "coalition", "quarg", "drak", "engine", "weapon", "shield", "cargo", "trade", "escort", "station", "planet", "system", "galaxy", "jump", "drive", "laser", "torpedo", "sprite", "sound", "music", "interface", "balance", "story", "campaign", "faction", "event", "government"};
+
+	/**
+	 * Measures the filtering of 5000 plugins while a query is typed one character at a time. Excluded from the default test run; run it with {@code mvn test -Dbenchmark}.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmark(TestReporter reporter) {
+		List<Plugin> plugins = createPlugins();
+		PluginSearchIndex<Plugin> index = createIndex();
+		long start = System.nanoTime();
+		plugins.forEach(index::add);
+		reporter.publishEntry("index time (ms)", String.valueOf((System.nanoTime() - start) / 1e6));
+		//warming up
+		for(int round = 0; round < 200; round++) {
+			for(String query : QUERIES) {
+				index.filter(plugins, query);
+			}
+		}
+		int rounds = 200;
+		start = System.nanoTime();
+		for(int round = 0; round < rounds; round++) {
+			for(String query : QUERIES) {
+				index.filter(plugins, query);
+			}
+		}
+		double average = (System.nanoTime() - start) / 1e6 / rounds / QUERIES.length;
+		reporter.publishEntry("average query time (ms)", String.valueOf(average));
+		assertTrue(average < 1, "Average query time was " + average + " ms, above the 1 ms goal");
+	}
+
+	@Test
+	void filterMatchesLinearScan() {
+		List<Plugin> plugins = createPlugins();
+		PluginSearchIndex<Plugin> index = createIndex();
+		plugins.forEach(index::add);
+		for(String query : QUERIES) {
+			List<Plugin> expected = plugins.stream().filter(p -> scan(p, query)).toList();
+			assertEquals(expected, index.filter(plugins, query), query);
+		}
+	}
+
+	@Test
+	void searchAndUpdate() {
+		Plugin warships = new Plugin("Korath Warships", "New ships for the Kor Efreti.", null, "tibetiroka");
+		Plugin music = new Plugin("Extra-Music", null, "Adds more tracks.", "someone else");
+		PluginSearchIndex<Plugin> index = createIndex();
+		index.add(warships);
+		index.add(music);
+		List<Plugin> all = List.of(warships, music);
+		assertEquals(all, index.filter(all, "  "));
+		assertEquals(List.of(warships), index.filter(all, "kor"));
+		assertEquals(List.of(warships), index.filter(all, "KORATH efr"));
+		assertEquals(List.of(music), index.filter(all, "music, tracks"));
+		assertEquals(List.of(), index.filter(all, "korath music"));
+		assertEquals(List.of(), index.filter(all, "orath"));
+		assertEquals(Set.of(warships, music), index.search("e"));
+		//re-indexing after a change
+		warships.description = "Adds drones.";
+		warships.shortDescription = null;
+		index.add(warships);
+		assertEquals(List.of(), index.filter(all, "efreti"));
+		assertEquals(List.of(warships), index.filter(all, "drones"));
+		index.remove(music);
+		assertEquals(List.of(), index.filter(all, "music"));
+		assertEquals(1, index.size());
+	}
+
+	private PluginSearchIndex<Plugin> createIndex() {
+		return new PluginSearchIndex<>(p -> Arrays.asList(p.name, p.shortDescription, p.description, p.authors));
+	}
+
+	private List<Plugin> createPlugins() {
+		Random random = new Random(5000);
+		List<Plugin> plugins = new ArrayList<>();
+		for(int i = 0; i < 5000; i++) {
+			plugins.add(new Plugin("Plugin " + i + " " + words(random, 2), words(random, 8), words(random, 40), "author" + random.nextInt(500)));
+		}
+		return plugins;
+	}
+
+	private boolean scan(Plugin plugin, String query) {
+		Set<String> words = PluginSearchIndex.tokenize(String.join(" ", plugin.name, plugin.shortDescription, plugin.description, plugin.authors));
+		return PluginSearchIndex.tokenize(query).stream().allMatch(token -> words.stream().anyMatch(word -> word.startsWith(token)));
+	}
+
+	private String words(Random random, int count) {
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < count; i++) {
+			builder.append(WORDS[random.nextInt(WORDS.length)]).append(i % 5 == 4 ? ". " : " ");
+		}
+		return builder.toString();
+	}
+
+	private static class Plugin {
+		private final String authors;
+		private final String name;
+		private String description;
+		private String shortDescription;
+
+		public Plugin(String name, String shortDescription, String description, String authors) {
+			this.name = name;
+			this.shortDescription = shortDescription;
+			this.description = description;
+			this.authors = authors;
+		}
+	}
+}
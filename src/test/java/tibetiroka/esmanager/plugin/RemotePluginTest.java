@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.plugin;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.config.AppConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemotePluginTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeAll
+	static void setup() {
+		AppConfiguration.loadLauncherConfiguration();
+	}
+
+	@Test
+	void checkoutCommit() throws IOException, GitAPIException {
+		File source = new File(tempDir, "source");
+		String indexed = commit(source, "first");
+		commit(source, "second");
+		try(Git git = Git.open(source)) {
+			StoredConfig config = git.getRepository().getConfig();
+			config.setBoolean("uploadpack", null, "allowReachableSHA1InWant", true);
+			config.save();
+		}
+		try(Git git = Git.init().setDirectory(new File(tempDir, "plugin")).call()) {
+			ObjectId checkedOut = RemotePlugin.checkoutCommit(git, source.toURI().toString(), "test", indexed, Constants.R_HEADS + "master");
+			assertEquals(indexed, checkedOut.getName());
+			assertEquals("first", Files.readString(new File(tempDir, "plugin/data.txt").toPath()));
+		}
+	}
+
+	@Test
+	void checkoutCommitFallsBackToBranch() throws IOException, GitAPIException {
+		File source = new File(tempDir, "source");
+		String indexed = commit(source, "first");
+		String tip = commit(source, "second");
+		//the source doesn't allow fetching commits that are not the tip of a reference
+		try(Git git = Git.init().setDirectory(new File(tempDir, "plugin")).call()) {
+			ObjectId checkedOut = RemotePlugin.checkoutCommit(git, source.toURI().toString(), "test", indexed, Constants.R_HEADS + "master");
+			assertEquals(tip, checkedOut.getName());
+			assertEquals("second", Files.readString(new File(tempDir, "plugin/data.txt").toPath()));
+		}
+	}
+
+	/**
+	 * Commits the specified contents into the repository, creating it if necessary.
+	 *
+	 * @return The hash of the commit
+	 */
+	private String commit(File repository, String contents) throws IOException, GitAPIException {
+		try(Git git = repository.isDirectory() ? Git.open(repository) : Git.init().setInitialBranch("master").setDirectory(repository).call()) {
+			Files.writeString(new File(repository, "data.txt").toPath(), contents);
+			git.add().addFilepattern("data.txt").call();
+			return git.commit().setMessage(contents).setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").setSign(false).call().getName();
+		}
+	}
+}
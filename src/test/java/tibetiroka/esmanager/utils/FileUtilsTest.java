@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.config.AppConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUtilsTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeAll
+	static void setup() {
+		AppConfiguration.loadLauncherConfiguration();
+	}
+
+	@Test
+	void unpackZipIncrementalRemovesStale() throws IOException {
+		File baseDir = new File(tempDir, "release");
+		File manifest = new File(tempDir, "manifest.json");
+		File zip = new File(tempDir, "release.zip");
+		Files.write(zip.toPath(), zip(entries("Endless Sky.exe", "binary", "changelog", "old")));
+		FileUtils.unpackZipIncremental(zip, baseDir, baseDir, manifest, RangeServer.tracker());
+		Files.writeString(new File(baseDir, "notes.txt").toPath(), "user file");
+		//the changelog is no longer part of the release
+		Files.write(zip.toPath(), zip(entries("Endless Sky.exe", "patched")));
+		FileUtils.unpackZipIncremental(zip, baseDir, baseDir, manifest, RangeServer.tracker());
+		assertEquals("patched", read(new File(baseDir, "Endless Sky.exe")));
+		assertFalse(new File(baseDir, "changelog").exists());
+		//files that were not extracted are kept
+		assertEquals("user file", read(new File(baseDir, "notes.txt")));
+		assertNull(ZipManifest.load(manifest).get("changelog"));
+	}
+
+	@Test
+	void unpackZipNested() throws IOException {
+		File baseDir = new File(tempDir, "instance");
+		File manifest = new File(tempDir, "manifest.json");
+		//an artifact zip, containing a release zip, containing a data zip
+		byte[] data = zip(Map.of("data/ships.txt", "ship \"Bactrian\""));
+		byte[] release = zip(entries("Endless Sky.exe", "binary", "data.zip", data, "changelog", "old"));
+		byte[] artifact = zip(entries("release.zip", release, "readme.txt", "artifact"));
+		FileUtils.unpackZipNested(new ByteArrayInputStream(artifact), baseDir, name -> name.endsWith(".zip"), manifest);
+		assertEquals("binary", read(new File(baseDir, "Endless Sky.exe")));
+		assertEquals("ship \"Bactrian\"", read(new File(baseDir, "data/ships.txt")));
+		assertEquals("old", read(new File(baseDir, "changelog")));
+		assertEquals("artifact", read(new File(baseDir, "readme.txt")));
+		assertFalse(new File(baseDir, "release.zip").exists());
+		assertFalse(new File(baseDir, "data.zip").exists());
+		//the changelog is removed, and the executable is updated
+		release = zip(entries("Endless Sky.exe", "patched", "data.zip", data));
+		artifact = zip(entries("release.zip", release, "readme.txt", "artifact"));
+		FileUtils.unpackZipNested(new ByteArrayInputStream(artifact), baseDir, name -> name.endsWith(".zip"), manifest);
+		assertEquals("patched", read(new File(baseDir, "Endless Sky.exe")));
+		assertEquals("ship \"Bactrian\"", read(new File(baseDir, "data/ships.txt")));
+		assertFalse(new File(baseDir, "changelog").exists());
+	}
+
+	@Test
+	void unpackZipNestedRejectsTraversal() throws IOException {
+		File baseDir = new File(tempDir, "instance");
+		byte[] inner = zip(Map.of("../escaped.txt", "outside"));
+		byte[] artifact = zip(Map.of("release.zip", inner));
+		assertThrows(IOException.class, () -> FileUtils.unpackZipNested(new ByteArrayInputStream(artifact), baseDir, name -> name.endsWith(".zip"), new File(tempDir, "manifest.json")));
+		assertFalse(new File(tempDir, "escaped.txt").exists());
+	}
+
+	@Test
+	void unpackZipRemote() throws IOException {
+		File previous = new File(tempDir, "1.0");
+		File manifest = new File(tempDir, "manifest.json");
+		write(new File(previous, "plugin/data.txt"), "unchanged");
+		write(new File(previous, "plugin/ships.txt"), "ship \"Old\"");
+		write(new File(previous, "plugin/removed.txt"), "removed");
+		try(RangeServer server = new RangeServer(RemoteZipTest.zip("plugin/data.txt", RemoteZipTest.text("unchanged"), "plugin/ships.txt", RemoteZipTest.text("ship \"New\""), "plugin/outfits.txt", RemoteZipTest.text("outfit")))) {
+			File staging = new File(tempDir, "staging");
+			File target = new File(tempDir, "2.0");
+			FileUtils.unpackZipRemote(server.url("plugin.zip"), staging, previous, manifest, target, RangeServer.tracker());
+			//the end of the file, and the changed entries next to each other
+			assertEquals(2, server.ranges.size());
+			assertEquals("unchanged", read(new File(staging, "plugin/data.txt")));
+			assertEquals("ship \"New\"", read(new File(staging, "plugin/ships.txt")));
+			assertEquals("outfit", read(new File(staging, "plugin/outfits.txt")));
+			assertFalse(new File(staging, "plugin/removed.txt").exists());
+			assertTrue(ZipManifest.load(manifest).describes(target));
+			//the previous version is left intact
+			assertEquals("ship \"Old\"", read(new File(previous, "plugin/ships.txt")));
+			assertEquals("removed", read(new File(previous, "plugin/removed.txt")));
+		}
+	}
+
+	@Test
+	void unpackZipRemoteChecksumMismatch() throws IOException {
+		File previous = new File(tempDir, "1.0");
+		File manifest = new File(tempDir, "manifest.json");
+		write(new File(previous, "ships.txt"), "ship \"Old\"");
+		byte[] corrupted = RemoteZipTest.zip("ships.txt", RemoteZipTest.text("ship \"New\""));
+		RemoteZipTest.corrupt(corrupted, "New");
+		try(RangeServer server = new RangeServer(corrupted)) {
+			//the plugin falls back to a full download, which is only safe if the previous version is untouched
+			assertThrows(IOException.class, () -> FileUtils.unpackZipRemote(server.url("plugin.zip"), new File(tempDir, "staging"), previous, manifest, new File(tempDir, "2.0"), RangeServer.tracker()));
+			assertEquals("ship \"Old\"", read(new File(previous, "ships.txt")));
+		}
+	}
+
+	private static Map<String, Object> entries(Object... entries) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		for(int i = 0; i < entries.length; i += 2) {
+			map.put((String) entries[i], entries[i + 1]);
+		}
+		return map;
+	}
+
+	private static String read(File file) throws IOException {
+		return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	private static void write(File file, String text) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.writeString(file.toPath(), text, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] zip(Map<String, ?> entries) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(ZipOutputStream zip = new ZipOutputStream(out)) {
+			for(Map.Entry<String, ?> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				zip.write(entry.getValue() instanceof byte[] bytes ? bytes : ((String) entry.getValue()).getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
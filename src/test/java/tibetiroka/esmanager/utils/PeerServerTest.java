@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.config.AppConfiguration;
+import tibetiroka.esmanager.config.GensonFactory;
+import tibetiroka.esmanager.config.PeerSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerServerTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeAll
+	static void setup() {
+		AppConfiguration.loadLauncherConfiguration();
+	}
+
+	@AfterEach
+	void stop() {
+		PeerServer.stop();
+		PeerSettings.SETTINGS = null;
+	}
+
+	@Test
+	void fetchBuild() throws IOException {
+		share("peer-test-fetch", "shared build");
+		connect(null, null);
+		File target = new File(tempDir, "endless-sky");
+		assertTrue(PeerCache.fetchBuild("peer-test-fetch", target));
+		assertEquals("shared build", Files.readString(target.toPath()));
+	}
+
+	@Test
+	void fetchBuildRejectsPinnedMismatch() throws IOException {
+		share("peer-test-pinned", "shared build");
+		//the pinned digest describes a different build than the one the peer has
+		connect("peer-test-pinned", DigestUtils.sha256Hex("pinned build"));
+		File target = new File(tempDir, "endless-sky");
+		assertFalse(PeerCache.fetchBuild("peer-test-pinned", target));
+		assertFalse(target.exists());
+	}
+
+	@Test
+	void fetchBuildRejectsWrongDigest() throws IOException {
+		String digest = share("peer-test-tampered", "original build");
+		//the peer serves different contents than the digest it reports
+		Files.writeString(PeerCache.findObject(digest).toPath(), "tampered build");
+		connect(null, null);
+		File target = new File(tempDir, "endless-sky");
+		Files.writeString(target.toPath(), "local build");
+		assertFalse(PeerCache.fetchBuild("peer-test-tampered", target));
+		assertEquals("local build", Files.readString(target.toPath()));
+	}
+
+	@Test
+	void fetchMissingBuild() throws IOException {
+		share("peer-test-shared", "shared build");
+		connect(null, null);
+		File target = new File(tempDir, "endless-sky");
+		assertFalse(PeerCache.fetchBuild("peer-test-missing", target));
+		assertFalse(target.exists());
+	}
+
+	/**
+	 * Starts the server on an ephemeral loopback port, and shares a build with it.
+	 *
+	 * @return The digest of the build
+	 */
+	private String share(String key, String contents) throws IOException {
+		GensonFactory.GENSON.deserialize("{\"serve\": true, \"address\": \"127.0.0.1\", \"port\": 0}", PeerSettings.class);
+		PeerServer.start();
+		File build = new File(tempDir, key);
+		Files.writeString(build.toPath(), contents);
+		PeerCache.storeBuild(key, build);
+		String digest = DigestUtils.sha256Hex(contents);
+		assertNotNull(PeerCache.findObject(digest));
+		return digest;
+	}
+
+	/**
+	 * Replaces the settings with ones querying the running server, optionally pinning the digest of a build.
+	 */
+	private void connect(String key, String digest) {
+		InetSocketAddress address = PeerServer.getAddress();
+		assertNotNull(address);
+		String peer = "http://" + address.getHostString() + ":" + address.getPort();
+		String builds = key == null ? "" : ", \"builds\": {\"" + key + "\": \"" + digest + "\"}";
+		GensonFactory.GENSON.deserialize("{\"peers\": [\"" + peer + "\"]" + builds + "}", PeerSettings.class);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A local HTTP server serving a single file with support for range requests, recording the requested ranges.
+ */
+class RangeServer implements AutoCloseable {
+	final List<String> ranges = new CopyOnWriteArrayList<>();
+	private final byte[] data;
+	private final HttpServer server;
+
+	RangeServer(byte[] data) throws IOException {
+		this.data = data;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::serve);
+		server.start();
+	}
+
+	/**
+	 * Creates a progress tracker that ignores all progress, since the JavaFX toolkit is not running in tests.
+	 */
+	static UpdateProgressTracker tracker() {
+		return new UpdateProgressTracker() {
+			@Override
+			public void beginTask(double share) {
+			}
+
+			@Override
+			public void endTask() {
+			}
+
+			@Override
+			public void progressTask(double delta) {
+			}
+
+			@Override
+			public void reset() {
+			}
+
+			@Override
+			public void setProgress(double value) {
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	URL url(String name) throws IOException {
+		return new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/" + name);
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		try(exchange) {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			if(range == null || !range.startsWith("bytes=")) {
+				exchange.sendResponseHeaders(200, data.length);
+				exchange.getResponseBody().write(data);
+				return;
+			}
+			ranges.add(range);
+			String[] bounds = range.substring("bytes=".length()).split("-", -1);
+			long start, end;
+			if(bounds[0].isEmpty()) {
+				start = Math.max(0, data.length - Long.parseLong(bounds[1]));
+				end = data.length - 1;
+			} else {
+				start = Long.parseLong(bounds[0]);
+				end = bounds[1].isEmpty() ? data.length - 1 : Math.min(data.length - 1, Long.parseLong(bounds[1]));
+			}
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+			exchange.sendResponseHeaders(206, end - start + 1);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(data, (int) start, (int) (end - start + 1));
+			}
+		}
+	}
+}
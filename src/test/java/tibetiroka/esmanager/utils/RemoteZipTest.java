@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.config.AppConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteZipTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeAll
+	static void setup() {
+		AppConfiguration.loadLauncherConfiguration();
+	}
+
+	@Test
+	void extractGroupsRanges() throws IOException {
+		byte[] padding = new byte[200 * 1024];
+		new Random(0).nextBytes(padding);
+		byte[] zip = zip("a.txt", text("first"), "b.txt", text("second"), "padding.bin", padding, "c.txt", text("third"));
+		try(RangeServer server = new RangeServer(zip)) {
+			RemoteZip remote = RemoteZip.open(server.url("plugin.zip"));
+			//the central directory is found with a single request for the end of the file
+			assertEquals(List.of("bytes=-" + (22 + 65535 + 20)), server.ranges);
+			assertEquals(List.of("a.txt", "b.txt", "padding.bin", "c.txt"), remote.getEntries().stream().map(RemoteZip.Entry::getName).toList());
+			server.ranges.clear();
+			List<RemoteZip.Entry> wanted = remote.getEntries().stream().filter(e -> e.getName().endsWith(".txt")).toList();
+			remote.extract(wanted, tempDir, RangeServer.tracker());
+			//neighbouring entries share a request, but the large gap before the last entry is skipped
+			assertEquals(2, server.ranges.size());
+			assertEquals("first", read(new File(tempDir, "a.txt")));
+			assertEquals("second", read(new File(tempDir, "b.txt")));
+			assertEquals("third", read(new File(tempDir, "c.txt")));
+			assertFalse(new File(tempDir, "padding.bin").exists());
+		}
+	}
+
+	@Test
+	void extractRejectsChecksumMismatch() throws IOException {
+		byte[] zip = zip("a.txt", text("original contents"));
+		corrupt(zip, "original");
+		try(RangeServer server = new RangeServer(zip)) {
+			RemoteZip remote = RemoteZip.open(server.url("plugin.zip"));
+			IOException e = assertThrows(IOException.class, () -> remote.extract(remote.getEntries(), tempDir, RangeServer.tracker()));
+			assertTrue(e.getMessage().contains("Checksum mismatch"), e.getMessage());
+		}
+	}
+
+	/**
+	 * Changes the first byte of the specified text in the data.
+	 */
+	static void corrupt(byte[] data, String text) {
+		byte[] needle = text(text);
+		outer:
+		for(int i = 0; i <= data.length - needle.length; i++) {
+			for(int j = 0; j < needle.length; j++) {
+				if(data[i + j] != needle[j]) {
+					continue outer;
+				}
+			}
+			data[i] ^= 0x20;
+			return;
+		}
+		fail("Text not found: " + text);
+	}
+
+	static String read(File file) throws IOException {
+		return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	static byte[] text(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a zip file with uncompressed entries, so their contents can be found in the data.
+	 */
+	static byte[] zip(Object... entries) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(ZipOutputStream zip = new ZipOutputStream(out)) {
+			for(int i = 0; i < entries.length; i += 2) {
+				byte[] data = (byte[]) entries[i + 1];
+				ZipEntry entry = new ZipEntry((String) entries[i]);
+				CRC32 crc = new CRC32();
+				crc.update(data);
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(data.length);
+				entry.setCompressedSize(data.length);
+				entry.setCrc(crc.getValue());
+				zip.putNextEntry(entry);
+				zip.write(data);
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
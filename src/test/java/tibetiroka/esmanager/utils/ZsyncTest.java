@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 by tibetiroka.
+ *
+ * ESManager is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * ESManager is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tibetiroka.esmanager.utils;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import tibetiroka.esmanager.utils.Zsync.ControlFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZsyncTest {
+	private static final int BLOCK_SIZE = 512;
+
+	@Test
+	void md4() {
+		assertEquals("31d6cfe0d16ae931b73c59d7e0c089c0", md4Hex(""));
+		assertEquals("a448017aaf21d8525fc10ae87aa6729d", md4Hex("abc"));
+		assertEquals("d9130a8164549fe818874806e1c7014b", md4Hex("message digest"));
+		assertEquals("e33b4ddc9c38f2199c3e7b164fcc0536", md4Hex("12345678901234567890123456789012345678901234567890123456789012345678901234567890"));
+	}
+
+	@Test
+	void matchShiftedAndModified() throws IOException {
+		for(int seqMatches = 1; seqMatches <= 2; seqMatches++) {
+			Random random = new Random(seqMatches);
+			byte[] target = new byte[BLOCK_SIZE * 64 + 100];
+			random.nextBytes(target);
+			//the seed has extra data at the start, and a modified block in the middle
+			byte[] seed = new byte[target.length + 37];
+			random.nextBytes(seed);
+			System.arraycopy(target, 0, seed, 37, target.length);
+			seed[37 + BLOCK_SIZE * 20 + 5] ^= 0x55;
+			//
+			ControlFile control = ControlFile.parse(new ByteArrayInputStream(createControlFile(target, seqMatches, seqMatches == 1 ? 4 : 3, seqMatches == 1 ? 16 : 8)));
+			assertEquals(65, control.getBlockCount());
+			long[] offsets = Zsync.match(control, ByteBuffer.wrap(seed));
+			int found = 0;
+			for(int i = 0; i < offsets.length; i++) {
+				if(offsets[i] >= 0) {
+					found++;
+					int size = Math.min(BLOCK_SIZE, target.length - i * BLOCK_SIZE);
+					assertArrayEquals(Arrays.copyOfRange(target, i * BLOCK_SIZE, i * BLOCK_SIZE + size), Arrays.copyOfRange(seed, (int) offsets[i], (int) offsets[i] + size));
+				}
+			}
+			assertTrue(offsets[20] < 0);
+			assertTrue(found >= 62, "Found only " + found + " blocks");
+		}
+	}
+
+	@Test
+	void verify(@TempDir File directory) throws IOException {
+		byte[] data = new byte[BLOCK_SIZE * 4 + 10];
+		new Random(3).nextBytes(data);
+		File file = new File(directory, "test.AppImage");
+		Files.write(file.toPath(), data);
+		byte[] control = createControlFile(data, 1, 4, 16);
+		Files.write(new File(directory, "test.AppImage.zsync").toPath(), control);
+		//without a SHA-1 hash, the file can't be verified
+		assertThrows(IOException.class, () -> Zsync.verify(file.toURI().toURL(), file));
+		Files.write(new File(directory, "test.AppImage.zsync").toPath(), concat(("SHA-1: " + DigestUtils.sha1Hex(data) + "\n").getBytes(StandardCharsets.UTF_8), control));
+		Zsync.verify(file.toURI().toURL(), file);
+		data[BLOCK_SIZE] ^= 0x55;
+		Files.write(file.toPath(), data);
+		assertThrows(IOException.class, () -> Zsync.verify(file.toURI().toURL(), file));
+	}
+
+	private byte[] concat(byte[] first, byte[] second) {
+		byte[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+
+	private byte[] createControlFile(byte[] data, int seqMatches, int rsumBytes, int checksumBytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(("zsync: 0.6.2\nFilename: test\nBlocksize: " + BLOCK_SIZE + "\nLength: " + data.length + "\nHash-Lengths: " + seqMatches + "," + rsumBytes + "," + checksumBytes + "\nURL: test\n\n").getBytes(StandardCharsets.UTF_8));
+		for(int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+			byte[] block = Arrays.copyOfRange(data, offset, offset + BLOCK_SIZE);
+			byte[] rsum = ByteBuffer.allocate(4).putInt(Zsync.rsum(ByteBuffer.wrap(block), 0, BLOCK_SIZE)).array();
+			out.write(rsum, 4 - rsumBytes, rsumBytes);
+			out.write(MD4.digest(block, 0, block.length), 0, checksumBytes);
+		}
+		return out.toByteArray();
+	}
+
+	private String md4Hex(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		return Hex.encodeHexString(MD4.digest(bytes, 0, bytes.length));
+	}
+}